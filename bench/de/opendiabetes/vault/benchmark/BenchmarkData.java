@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.benchmark;
+
+import com.google.gson.stream.JsonWriter;
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.data.container.VaultEntryType;
+import de.opendiabetes.vault.examples.SyntheticDataGenerator;
+import de.opendiabetes.vault.examples.SyntheticDataOptions;
+import de.opendiabetes.vault.importer.json.nightscout.NightscoutBasalProfile;
+import de.opendiabetes.vault.importer.json.nightscout.NightscoutBasalProfilesContainer;
+import de.opendiabetes.vault.util.EasyFormatter;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Test data for the benchmarks. The data is generated with a fixed seed, so
+ * runs with the same parameters work on the same data.
+ *
+ * @author juehv
+ */
+public final class BenchmarkData {
+
+    // dataset sizes of all benchmarks, override with -p size=...
+    public static final String SIZE_10K = "10000";
+    public static final String SIZE_100K = "100000";
+    public static final String SIZE_1M = "1000000";
+    public static final String SIZE_10M = "10000000";
+
+    private static final long SEED = 4711;
+    // 2019-01-01 00:00 UTC
+    private static final long START_EPOCH = 1546300800000L;
+    private static final String ORIGIN = "Benchmark";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Generates sorted entries of one patient, see
+     * {@link SyntheticDataGenerator}: CGM readings every 5 minutes, heart rate
+     * every 5 minutes, boluses, meals, basal rates and pump events.
+     *
+     * @param size number of entries
+     * @return sorted entries
+     */
+    public static List<VaultEntry> generate(int size) {
+        SyntheticDataOptions options = new SyntheticDataOptions();
+        options.seed = SEED;
+        options.startDate = new Date(START_EPOCH);
+        // a day has about 600 entries
+        options.days = size / 500 + 1;
+        options.heartRate = true;
+        options.heartRateIntervalInSeconds = 300;
+        return SyntheticDataGenerator.generateVaultEntries(options, size);
+    }
+
+    /**
+     * Cuts sorted data into slices which overlap their neighbours by a tenth
+     * of the slice size, like the slices of a filter result.
+     *
+     * @param data sorted entries
+     * @param sliceSize entries per slice
+     * @return slices
+     */
+    public static List<List<VaultEntry>> overlappingSlices(List<VaultEntry> data, int sliceSize) {
+        List<List<VaultEntry>> result = new ArrayList<>();
+        int step = Math.max(1, sliceSize - sliceSize / 10);
+        for (int start = 0; start < data.size(); start += step) {
+            result.add(new ArrayList<>(data.subList(start, Math.min(data.size(), start + sliceSize))));
+        }
+        return result;
+    }
+
+    /**
+     * @param suffix file name suffix
+     * @return temporary file, deleted when the JVM exits
+     * @throws IOException if the file can't be created
+     */
+    public static File tempFile(String suffix) throws IOException {
+        File file = File.createTempFile("odv-benchmark-", suffix);
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * @return basal profile for the data written by
+     * {@link #writeNightscout(java.util.List, java.io.File)}
+     */
+    public static NightscoutBasalProfilesContainer nightscoutProfiles() {
+        NightscoutBasalProfilesContainer result = new NightscoutBasalProfilesContainer();
+        result.records.put(new Date(START_EPOCH), Collections.singletonList(
+                new NightscoutBasalProfile(Collections.nCopies(24, 0.8))));
+        return result;
+    }
+
+    /**
+     * Writes the entries as Nightscout JSON array, as read by the
+     * NightscoutImporter.
+     *
+     * @param data entries of types supported by the Nightscout importer
+     * @param file target file
+     * @throws IOException if the file can't be written
+     */
+    public static void writeNightscout(List<VaultEntry> data, File file) throws IOException {
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8)))) {
+            writer.beginArray();
+            for (VaultEntry item : data) {
+                String time = EasyFormatter.formatTimestampToIso8601(item.getTimestamp());
+                switch (item.getType()) {
+                    case GLUCOSE_CGM:
+                        writer.beginObject().name("type").value("sgv").name("device").value(ORIGIN)
+                                .name("dateString").value(time).name("sgv").value(item.getValue()).endObject();
+                        break;
+                    case BOLUS_NORMAL:
+                        writer.beginObject().name("created_at").value(time)
+                                .name("insulin").value(item.getValue()).endObject();
+                        break;
+                    case MEAL_MANUAL:
+                    case MEAL_BOLUS_CALCULATOR:
+                        writer.beginObject().name("created_at").value(time)
+                                .name("carbs").value(item.getValue()).endObject();
+                        break;
+                    case BASAL_TEMP:
+                        writer.beginObject().name("eventType").value("Temp Basal").name("created_at").value(time)
+                                .name("duration").value((Double) item.getValueExtension())
+                                .name("absolute").value(item.getValue()).endObject();
+                        break;
+                    default:
+                        // not supported by Nightscout
+                        break;
+                }
+            }
+            writer.endArray();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.benchmark;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.exporter.ExporterOptions;
+import de.opendiabetes.vault.exporter.FileExporter;
+import de.opendiabetes.vault.exporter.csv.VaultEntryCsvFileExporter;
+import de.opendiabetes.vault.exporter.json.VaultEntryJsonFileExporter;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writes generated data in the supported formats.
+ *
+ * @author juehv
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ExporterBenchmark {
+
+    @Param({BenchmarkData.SIZE_10K, BenchmarkData.SIZE_100K, BenchmarkData.SIZE_1M, BenchmarkData.SIZE_10M})
+    public int size;
+
+    @Param({"ODV_JSON", "ODV_JSON_GZ", "ODV_CSV"})
+    public String format;
+
+    private List<VaultEntry> data;
+    private File file;
+
+    @Setup
+    public void generate() throws IOException {
+        data = BenchmarkData.generate(size);
+        file = BenchmarkData.tempFile(format.equals("ODV_CSV") ? ".csv" : ".json");
+    }
+
+    @Benchmark
+    public int exportFile() {
+        // the exporters sort the data, which is sorted already
+        FileExporter<VaultEntry> exporter = format.equals("ODV_CSV")
+                ? new VaultEntryCsvFileExporter(new ExporterOptions())
+                : new VaultEntryJsonFileExporter(new ExporterOptions());
+        return exporter.exportDataToFile(file.getAbsolutePath(), data, format.equals("ODV_JSON_GZ"));
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.benchmark;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.processing.filter.Filter;
+import de.opendiabetes.vault.processing.filter.FilterDefinition;
+import de.opendiabetes.vault.processing.filter.FilterOptimizer;
+import de.opendiabetes.vault.processing.filter.FilterResult;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Applies each filter of the processing.filter package to generated data.
+ * The filters are defined like in filter files, see {@link FilterDefinition}.
+ * Composite filters wrap cheap type and threshold filters, so they mostly
+ * measure their own overhead. Filters which accept or reject a dataset as a
+ * whole get parameters the generated data fulfils at every size, so no
+ * benchmark measures an empty result only.
+ * <p>
+ * ContinuousWrapper and DatasetMarker need data of a previous run and are not
+ * covered.
+ *
+ * @author juehv
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class FilterBenchmark {
+
+    private static final String TYPE = "{\"filter\": \"VaultEntryTypeFilter\", \"args\": [\"GLUCOSE_CGM\"]}";
+    private static final String THRESHOLD = "{\"filter\": \"ThresholdFilter\", \"args\": [180, \"OVER\"]}";
+    static final Map<String, String> DEFINITIONS = new HashMap<>();
+
+    static {
+        DEFINITIONS.put("AndFilter", "{\"filter\": \"AndFilter\", \"args\": [" + TYPE + ", " + THRESHOLD + "]}");
+        DEFINITIONS.put("ClusterFilter", "{\"filter\": \"ClusterFilter\", \"args\": [\"BOLUS_NORMAL\"]}");
+        DEFINITIONS.put("CombinationFilter", "{\"filter\": \"CombinationFilter\", \"args\": [" + TYPE + ", " + THRESHOLD + "]}");
+        DEFINITIONS.put("CompactQueryFilter", "{\"filter\": \"CompactQueryFilter\", \"args\": [[" + TYPE + ", " + THRESHOLD + "]]}");
+        DEFINITIONS.put("CounterFilter", "{\"filter\": \"CounterFilter\", \"args\": [" + THRESHOLD + ", 3, false]}");
+        DEFINITIONS.put("DateTimePointFilter", "{\"filter\": \"DateTimePointFilter\", \"args\": [\"2019.01.02-12:00\", 60]}");
+        DEFINITIONS.put("DateTimeSpanFilter", "{\"filter\": \"DateTimeSpanFilter\", \"args\": [\"2019.01.02-00:00\", \"2019.02.01-00:00\"]}");
+        DEFINITIONS.put("ElevationFilter", "{\"filter\": \"ElevationFilter\", \"args\": [\"GLUCOSE_CGM\", 0.1, 10]}");
+        DEFINITIONS.put("ElevationPointFilter", "{\"filter\": \"ElevationPointFilter\", \"args\": [\"GLUCOSE_CGM\", 0.1, 10]}");
+        DEFINITIONS.put("FilterHitCounterFilter", "{\"filter\": \"FilterHitCounterFilter\", \"args\": [" + THRESHOLD + ", 1, " + Integer.MAX_VALUE + ", false]}");
+        DEFINITIONS.put("GapRemoverFilter", "{\"filter\": \"GapRemoverFilter\", \"args\": [\"GLUCOSE_CGM\", 30]}");
+        DEFINITIONS.put("InBetweenFilter", "{\"filter\": \"InBetweenFilter\", \"args\": [\"GLUCOSE_CGM\", 40, 400, false]}");
+        DEFINITIONS.put("InterpolationFilter", "{\"filter\": \"InterpolationFilter\", \"args\": [\"GLUCOSE_CGM\", 2]}");
+        DEFINITIONS.put("LogicFilter", "{\"filter\": \"LogicFilter\", \"args\": [[" + TYPE + ", " + THRESHOLD + "], false]}");
+        DEFINITIONS.put("NegateFilter", "{\"filter\": \"NegateFilter\", \"args\": [" + THRESHOLD + "]}");
+        DEFINITIONS.put("NoneFilter", "{\"filter\": \"NoneFilter\"}");
+        DEFINITIONS.put("NoneTypeFilter", "{\"filter\": \"NoneTypeFilter\", \"args\": [\"KETONES_BLOOD\"]}");
+        DEFINITIONS.put("OrFilter", "{\"filter\": \"OrFilter\", \"args\": [" + TYPE + ", " + THRESHOLD + "]}");
+        DEFINITIONS.put("PositionFilter", "{\"filter\": \"PositionFilter\", \"args\": [" + TYPE + ", \"MIDDLE\"]}");
+        DEFINITIONS.put("QueryFilter", "{\"filter\": \"QueryFilter\", \"args\": [" + THRESHOLD + ", 1, -1]}");
+        DEFINITIONS.put("StandardizeFilter", "{\"filter\": \"StandardizeFilter\", \"args\": [\"GLUCOSE_CGM\", true]}");
+        DEFINITIONS.put("ThresholdFilter", THRESHOLD);
+        DEFINITIONS.put("TimeClusterFilter", "{\"filter\": \"TimeClusterFilter\", \"args\": [" + THRESHOLD + ", \"06:00\", 120, 1440]}");
+        DEFINITIONS.put("TimePointFilter", "{\"filter\": \"TimePointFilter\", \"args\": [\"12:00\", 60]}");
+        DEFINITIONS.put("TimeSpanFilter", "{\"filter\": \"TimeSpanFilter\", \"args\": [\"22:00\", \"06:00\"]}");
+        DEFINITIONS.put("TypeAbsenceFilter", "{\"filter\": \"TypeAbsenceFilter\", \"args\": [\"MEAL_MANUAL\", 120]}");
+        DEFINITIONS.put("ValueMoverFilter", "{\"filter\": \"ValueMoverFilter\", \"args\": [\"GLUCOSE_CGM\", 10.0, true]}");
+        DEFINITIONS.put("VaultEntryTypeCounterFilter", "{\"filter\": \"VaultEntryTypeCounterFilter\", \"args\": [\"BOLUS_NORMAL\", 1, " + Integer.MAX_VALUE + ", false]}");
+        DEFINITIONS.put("VaultEntryTypeFilter", TYPE);
+    }
+
+    @Param({BenchmarkData.SIZE_10K, BenchmarkData.SIZE_100K, BenchmarkData.SIZE_1M, BenchmarkData.SIZE_10M})
+    public int size;
+
+    @Param({"AndFilter", "ClusterFilter", "CombinationFilter", "CompactQueryFilter", "CounterFilter",
+        "DateTimePointFilter", "DateTimeSpanFilter", "ElevationFilter", "ElevationPointFilter",
+        "FilterHitCounterFilter", "GapRemoverFilter", "InBetweenFilter", "InterpolationFilter",
+        "LogicFilter", "NegateFilter", "NoneFilter", "NoneTypeFilter", "OrFilter", "PositionFilter",
+        "QueryFilter", "StandardizeFilter", "ThresholdFilter", "TimeClusterFilter", "TimePointFilter",
+        "TimeSpanFilter", "TypeAbsenceFilter", "ValueMoverFilter", "VaultEntryTypeCounterFilter",
+        "VaultEntryTypeFilter"})
+    public String filter;
+
+    private Filter filterTree;
+    private List<VaultEntry> data;
+
+    @Setup
+    public void prepare() {
+        // optimized like in FilterDefinitionContainer, the run state is kept
+        // in the context of each run, so the tree is reused
+        filterTree = FilterOptimizer.optimize(FilterDefinition.parse(DEFINITIONS.get(filter)).getFilter());
+        data = BenchmarkData.generate(size);
+        if (filter().filteredData.isEmpty()) {
+            throw new IllegalStateException(filter + " returns no entries on the generated data.");
+        }
+    }
+
+    @Benchmark
+    public FilterResult filter() {
+        return filterTree.filter(data);
+    }
+}
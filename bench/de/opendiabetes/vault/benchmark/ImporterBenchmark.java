@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.benchmark;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.exporter.ExporterOptions;
+import de.opendiabetes.vault.exporter.csv.VaultEntryCsvFileExporter;
+import de.opendiabetes.vault.exporter.json.VaultEntryJsonFileExporter;
+import de.opendiabetes.vault.importer.FileImporter;
+import de.opendiabetes.vault.importer.ImporterOptions;
+import de.opendiabetes.vault.importer.csv.VaultEntryCsvFileImporter;
+import de.opendiabetes.vault.importer.json.VaultEntryJsonFileImporter;
+import de.opendiabetes.vault.importer.json.nightscout.NightscoutImporter;
+import de.opendiabetes.vault.importer.json.nightscout.NightscoutImporterOptions;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads files of the supported formats. The files are written once per
+ * trial from generated data.
+ *
+ * @author juehv
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ImporterBenchmark {
+
+    @Param({BenchmarkData.SIZE_10K, BenchmarkData.SIZE_100K, BenchmarkData.SIZE_1M, BenchmarkData.SIZE_10M})
+    public int size;
+
+    @Param({"ODV_JSON", "ODV_JSON_GZ", "ODV_CSV", "NIGHTSCOUT"})
+    public String format;
+
+    private File file;
+
+    @Setup
+    public void writeFile() throws IOException {
+        List<VaultEntry> data = BenchmarkData.generate(size);
+        switch (format) {
+            case "ODV_JSON":
+                file = BenchmarkData.tempFile(".json");
+                new VaultEntryJsonFileExporter(new ExporterOptions()).exportDataToFile(file.getAbsolutePath(), data, false);
+                break;
+            case "ODV_JSON_GZ":
+                file = BenchmarkData.tempFile(".json.gz");
+                new VaultEntryJsonFileExporter(new ExporterOptions()).exportDataToFile(file.getAbsolutePath(), data, true);
+                break;
+            case "ODV_CSV":
+                file = BenchmarkData.tempFile(".csv");
+                new VaultEntryCsvFileExporter(new ExporterOptions()).exportDataToFile(file.getAbsolutePath(), data, false);
+                break;
+            case "NIGHTSCOUT":
+                file = BenchmarkData.tempFile(".json");
+                BenchmarkData.writeNightscout(data, file);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown format " + format);
+        }
+    }
+
+    @Benchmark
+    public List<VaultEntry> importFile() throws IllegalAccessException {
+        FileImporter<VaultEntry> importer;
+        switch (format) {
+            case "ODV_CSV":
+                importer = new VaultEntryCsvFileImporter(new ImporterOptions());
+                break;
+            case "NIGHTSCOUT":
+                importer = new NightscoutImporter(new NightscoutImporterOptions(BenchmarkData.nightscoutProfiles()));
+                break;
+            default:
+                importer = new VaultEntryJsonFileImporter(new ImporterOptions());
+                break;
+        }
+        return importer.importDataFromFile(file.getAbsolutePath());
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.benchmark;
+
+import de.opendiabetes.vault.data.container.SliceEntry;
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.util.VaultEntryUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sorting, deduplication and slicing as done for every import, tag and
+ * processing run.
+ *
+ * @author juehv
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class VaultEntryUtilsBenchmark {
+
+    private static final int SLICE_SIZE = 288;
+    private static final int SLICE_FILE_SIZE = 100;
+
+    @Param({BenchmarkData.SIZE_10K, BenchmarkData.SIZE_100K, BenchmarkData.SIZE_1M, BenchmarkData.SIZE_10M})
+    public int size;
+
+    private List<VaultEntry> data;
+    private List<VaultEntry> shuffled;
+    private List<List<VaultEntry>> slices;
+    private List<SliceEntry> sliceEntries;
+
+    @Setup
+    public void generate() {
+        data = BenchmarkData.generate(size);
+        shuffled = new ArrayList<>(data);
+        Collections.shuffle(shuffled, new Random(size));
+        slices = BenchmarkData.overlappingSlices(data, SLICE_SIZE);
+        // slice() scans all data per slice, so it gets a fixed number of
+        // slices like from a slice file
+        List<List<VaultEntry>> someSlices = new ArrayList<>();
+        for (int i = 0; i < slices.size(); i += Math.max(1, slices.size() / SLICE_FILE_SIZE)) {
+            someSlices.add(slices.get(i));
+        }
+        sliceEntries = VaultEntryUtils.computeSlicesEntries(someSlices);
+    }
+
+    @Benchmark
+    public List<VaultEntry> sort() {
+        // includes copying the list, the sort works in place
+        List<VaultEntry> result = new ArrayList<>(shuffled);
+        result.sort(new VaultEntryUtils());
+        return result;
+    }
+
+    @Benchmark
+    public List<VaultEntry> removeDublicates() {
+        return VaultEntryUtils.removeDublicates(shuffled);
+    }
+
+    @Benchmark
+    public List<VaultEntry> mergeSlices() {
+        return VaultEntryUtils.mergeSlices(slices);
+    }
+
+    @Benchmark
+    public List<SliceEntry> computeSlicesEntries() {
+        return VaultEntryUtils.computeSlicesEntries(slices);
+    }
+
+    @Benchmark
+    public List<List<VaultEntry>> slice() {
+        return VaultEntryUtils.slice(data, sliceEntries);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.util.jfr;
+
+import de.opendiabetes.vault.util.PipelineEvent;
+import de.opendiabetes.vault.util.PipelineEvents;
+import de.opendiabetes.vault.util.PipelineStage;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Creates the Java Flight Recorder events of the pipeline stages. Loaded by
+ * {@link PipelineEvents} if the JVM provides jdk.jfr.
+ * <p>
+ * Watching the recordings needs an initialized Flight Recorder, which takes
+ * a while. So the listener is registered only after a recording was started,
+ * either on the command line (-XX:StartFlightRecording) or later (jcmd
+ * JFR.start). Until then only a flag is checked.
+ *
+ * @author juehv
+ */
+public final class FlightRecorderBackend implements PipelineEvents.Backend {
+
+    private volatile boolean listening;
+    private volatile boolean recording;
+
+    @Override
+    public boolean isRecording() {
+        if (!listening) {
+            if (!FlightRecorder.isInitialized()) {
+                return false;
+            }
+            listen();
+        }
+        return recording;
+    }
+
+    @Override
+    public PipelineEvent begin(PipelineStage stage, Object subject, Object detail) {
+        StageEvent event = StageEventFactory.newEvent(stage);
+        event.describe(toText(subject), toText(detail));
+        event.start();
+        return event;
+    }
+
+    private synchronized void listen() {
+        if (listening) {
+            return;
+        }
+        // calls recorderInitialized right away
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recorderInitialized(FlightRecorder recorder) {
+                update(recorder);
+            }
+
+            @Override
+            public void recordingStateChanged(Recording changed) {
+                update(FlightRecorder.getFlightRecorder());
+            }
+        });
+        listening = true;
+    }
+
+    private void update(FlightRecorder recorder) {
+        boolean running = false;
+        for (Recording item : recorder.getRecordings()) {
+            running |= item.getState() == RecordingState.RUNNING;
+        }
+        recording = running;
+    }
+
+    private static String toText(Object value) {
+        if (value == null) {
+            return null;
+        } else if (value instanceof Class) {
+            return ((Class<?>) value).getSimpleName();
+        } else if (value instanceof String[]) {
+            return String.join(" ", (String[]) value);
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.util.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Import of a file or stream.
+ *
+ * @author juehv
+ */
+@Name("de.opendiabetes.vault.ImportFile")
+@Label("Import File")
+@Description("Import of a file or stream.")
+final class ImportFileEvent extends StageEvent {
+
+    @Label("Importer")
+    String importer;
+
+    @Label("File")
+    String file;
+
+    @Override
+    void describe(String subject, String detail) {
+        importer = subject;
+        file = detail;
+    }
+}
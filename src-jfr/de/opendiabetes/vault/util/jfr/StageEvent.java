@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.util.jfr;
+
+import de.opendiabetes.vault.util.PipelineEvent;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Common fields of the pipeline stage events. Counts which don't apply to a
+ * stage are -1.
+ *
+ * @author juehv
+ */
+@Category("OpenDiabetesVault")
+abstract class StageEvent extends Event implements PipelineEvent {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    @Label("Entries In")
+    @Description("Number of input entries")
+    long entriesIn;
+
+    @Label("Entries Out")
+    @Description("Number of output entries")
+    long entriesOut;
+
+    @Label("Bytes")
+    @Description("Bytes read or written")
+    @DataAmount
+    long bytes;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the thread during the stage")
+    @DataAmount
+    long allocated;
+
+    // not recorded
+    private transient long allocatedAtBegin;
+
+    /**
+     * Sets the stage specific fields.
+     *
+     * @param subject subject as text, may be null
+     * @param detail detail as text, may be null
+     */
+    abstract void describe(String subject, String detail);
+
+    /**
+     * Starts timing and allocation tracking.
+     */
+    void start() {
+        allocatedAtBegin = allocatedBytes();
+        begin();
+    }
+
+    @Override
+    public boolean isRecording() {
+        return true;
+    }
+
+    @Override
+    public void commit(long entriesIn, long entriesOut, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.entriesIn = entriesIn;
+            this.entriesOut = entriesOut;
+            this.bytes = bytes;
+            long allocatedAtEnd = allocatedBytes();
+            this.allocated = allocatedAtBegin >= 0 && allocatedAtEnd >= 0
+                    ? allocatedAtEnd - allocatedAtBegin : -1;
+            commit();
+        }
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far or -1 if the JVM
+     * doesn't track it
+     */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
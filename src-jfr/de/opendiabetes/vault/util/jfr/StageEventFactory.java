@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.util.jfr;
+
+import de.opendiabetes.vault.util.PipelineStage;
+import java.util.logging.Logger;
+
+/**
+ * Creates the events of the stages. Kept apart from {@link StageEvent}, since
+ * Flight Recorder instruments the event classes while they are loaded, which
+ * fails if the base class loads its subclasses.
+ *
+ * @author juehv
+ */
+final class StageEventFactory {
+
+    private static final Logger LOG = Logger.getLogger(StageEventFactory.class.getName());
+
+    private StageEventFactory() {
+    }
+
+    /**
+     * Creates the event of a stage. Loads the event classes, so it is called
+     * on the first recorded event only.
+     *
+     * @param stage stage of the event
+     * @return new event
+     */
+    static StageEvent newEvent(PipelineStage stage) {
+        switch (stage) {
+            case COMMAND:
+                return new CommandEvent();
+            case IMPORT_FILE:
+                return new ImportFileEvent();
+            case MERGE:
+                return new MergeEvent();
+            case DEDUP:
+                return new DedupEvent();
+            case SORT:
+                return new SortEvent();
+            case TAG_READ:
+                return new TagReadEvent();
+            case TAG_WRITE:
+                return new TagWriteEvent();
+            case FILTER:
+                return new FilterEvent();
+            case EXPORT:
+                return new ExportEvent();
+            default:
+                String msg = "PROGRAMMING ERROR: NO EVENT FOR STAGE " + stage;
+                LOG.severe(msg);
+                throw new Error(msg);
+        }
+    }
+}
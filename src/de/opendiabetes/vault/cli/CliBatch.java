@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.cli;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import picocli.CommandLine;
+
+/**
+ * CLI class for batch scripts. Executes the odv commands of a script file one
+ * after another within this JVM. The commands share the repository and keep
+ * the data they read or write decoded in memory, so following commands don't
+ * read it from disk again.
+ * <p>
+ * A script contains one command per line, with or without the leading "odv".
+ * Arguments are separated by whitespace and may be quoted with single or
+ * double quotes. Empty lines and lines starting with # are ignored.
+ *
+ * @author juehv
+ */
+@CommandLine.Command(description = "Executes the odv commands of a script file within one process.",
+        name = "batch", mixinStandardHelpOptions = true, version = "odv batch 0.1")
+public class CliBatch implements Callable<Void> {
+
+    public static final String COMMAND = "batch";
+
+    @CommandLine.Parameters(index = "0", paramLabel = "SCRIPT", description = "Script with one odv command per line.")
+    private File script;
+
+    @CommandLine.Option(names = {"-k", "--keep-going"}, description = "Executes the remaining commands after a command failed.")
+    private boolean keepGoing;
+
+    @CommandLine.Option(names = {"-v", "--verbose"}, description = "Prints each command before executing it.")
+    private boolean verbose;
+
+    @CommandLine.Option(names = {"--cache-entries"}, paramLabel = "N",
+            description = "Maximum number of decoded entries kept in memory. Default is 5000000. Ignored if the batch is run by odv server, which keeps its own cache.")
+    private long cacheEntries = 5000000;
+
+    @Override
+    public Void call() throws Exception {
+        if (!script.isFile() || !script.canRead()) {
+            CliManager.exitWithError("Can't read script " + script + ". Exit.", null);
+        }
+        List<String> lines = Files.readAllLines(script.toPath(), StandardCharsets.UTF_8);
+
+        // parse the whole script first, so syntax errors don't leave half
+        // executed scripts
+        List<String[]> commands = new ArrayList<>();
+        List<Integer> lineNumbers = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            List<String> args;
+            try {
+                args = tokenize(lines.get(i));
+            } catch (IllegalArgumentException ex) {
+                CliManager.exitWithError(script.getName() + ":" + (i + 1) + ": " + ex.getMessage() + " Exit.", null);
+                return null;
+            }
+            if (!args.isEmpty() && args.get(0).equals("odv")) {
+                args.remove(0);
+            }
+            if (args.isEmpty()) {
+                continue;
+            }
+            if (args.get(0).equals(COMMAND) || args.get(0).equals(CliServer.COMMAND)) {
+                CliManager.exitWithError(script.getName() + ":" + (i + 1) + ": "
+                        + args.get(0) + " is not allowed in scripts. Exit.", null);
+            }
+            commands.add(args.toArray(new String[args.size()]));
+            lineNumbers.add(i + 1);
+        }
+
+        // a batch run by the server shares the cache of the server
+        CliRepositoryManager.enableDatasetCache(cacheEntries);
+        File workingDir = CliManager.resolveFile(".").getAbsoluteFile();
+        int failedStatus = 0;
+        for (int i = 0; i < commands.size(); i++) {
+            if (verbose) {
+                System.out.println("+ odv " + String.join(" ", commands.get(i)));
+            }
+            int status = CliManager.execute(commands.get(i), workingDir);
+            if (status != 0) {
+                System.err.println(script.getName() + ":" + lineNumbers.get(i)
+                        + ": Command failed with status " + status + ".");
+                if (!keepGoing) {
+                    CliManager.exit(status);
+                }
+                failedStatus = status;
+            }
+        }
+        if (failedStatus != 0) {
+            CliManager.exit(failedStatus);
+        }
+        return null;
+    }
+
+    /**
+     * Splits a script line into arguments like a shell does. Supports single
+     * quotes, double quotes and backslash escapes.
+     *
+     * @param line line of the script
+     * @return arguments, empty for empty lines and comments
+     * @throws IllegalArgumentException if a quote is not closed
+     */
+    static List<String> tokenize(String line) {
+        List<String> result = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inToken = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else if (c == '\\' && quote == '"' && i + 1 < line.length()) {
+                    current.append(line.charAt(++i));
+                } else {
+                    current.append(c);
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (inToken) {
+                    result.add(current.toString());
+                    current.setLength(0);
+                    inToken = false;
+                }
+            } else if (c == '#' && !inToken) {
+                break;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                inToken = true;
+            } else if (c == '\\' && i + 1 < line.length()) {
+                current.append(line.charAt(++i));
+                inToken = true;
+            } else {
+                current.append(c);
+                inToken = true;
+            }
+        }
+        if (quote != 0) {
+            throw new IllegalArgumentException("Missing closing quote.");
+        }
+        if (inToken) {
+            result.add(current.toString());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * Thin client for the server mode, see {@link CliServer}. Sends the command
+ * line and the working directory to a running server and prints the output of
+ * the command. Needs neither picocli nor any repository code, so it starts
+ * quickly. If no server is running, the command is executed in this JVM.
+ * <p>
+ * Usage: java -cp OpenDiabetesVault.jar de.opendiabetes.vault.cli.CliClient
+ * [odv arguments]
+ *
+ * @author juehv
+ */
+public class CliClient {
+
+    static final String FILE_SERVER = ".odv" + File.separator + "server.properties";
+    static final byte FRAME_EXIT = 0;
+    static final byte FRAME_OUT = 1;
+    static final byte FRAME_ERR = 2;
+
+    public static void main(String[] args) throws Exception {
+        Integer status = send(args, new File(".").getAbsoluteFile());
+        if (status == null) {
+            // no server, run as usual
+            CliManager.main(args);
+            return;
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Sends a command line to the running server.
+     *
+     * @param args command line arguments
+     * @param workingDir working directory of the command
+     * @return exit status of the command or null if no server is running
+     * @throws IOException if the connection breaks during the command
+     */
+    static Integer send(String[] args, File workingDir) throws IOException {
+        Properties server = readServerFile();
+        if (server == null) {
+            return null;
+        }
+        Socket socket;
+        try {
+            socket = new Socket(InetAddress.getLoopbackAddress(),
+                    Integer.parseInt(server.getProperty("port", "")));
+        } catch (IOException | NumberFormatException ex) {
+            // outdated server file
+            return null;
+        }
+
+        try (Socket connection = socket;
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()))) {
+            out.writeUTF(server.getProperty("token", ""));
+            out.writeUTF(workingDir.getAbsolutePath());
+            out.writeInt(args.length);
+            for (String item : args) {
+                out.writeUTF(item);
+            }
+            out.flush();
+
+            while (true) {
+                byte type = in.readByte();
+                if (type == FRAME_EXIT) {
+                    return in.readInt();
+                }
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                PrintStream target = type == FRAME_ERR ? System.err : System.out;
+                target.write(data);
+                target.flush();
+            }
+        } catch (EOFException ex) {
+            throw new IOException("Server closed the connection.", ex);
+        }
+    }
+
+    /**
+     * @return file announcing the port and token of the running server
+     */
+    static File serverFile() {
+        return new File(System.getProperty("user.home"), FILE_SERVER);
+    }
+
+    private static Properties readServerFile() {
+        File file = serverFile();
+        if (!file.exists()) {
+            return null;
+        }
+        Properties result = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            result.load(in);
+        } catch (IOException ex) {
+            return null;
+        }
+        return result;
+    }
+}
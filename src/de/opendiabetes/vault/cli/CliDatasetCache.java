@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.cli;
+
+import de.opendiabetes.vault.data.adapter.VaultEntryJsonAdapter;
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.data.container.VaultEntryDataset;
+import de.opendiabetes.vault.importer.ReadPredicate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * In memory cache for decoded datasets of long running processes, so repeated
+ * commands on the same data don't decode the same files again. Entries are
+ * keyed by the data file and the read predicate and remember the snapshot
+ * fingerprint of the data files. If the files changed on disk since, the
+ * entry is dropped on access.
+ * <p>
+ * Data which is read with a predicate is cut out of the complete dataset if
+ * that is cached. Commands which write data hand it in directly, so following
+ * commands don't have to read it back from disk.
+ * <p>
+ * Callers get and hand in copies, so commands may modify the returned data.
+ * The cache holds at most the given number of VaultEntries and evicts the
+ * least recently used datasets first. Not threadsafe.
+ *
+ * @author juehv
+ */
+class CliDatasetCache {
+
+    private final long maxEntries;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param maxEntries upper bound for the number of cached VaultEntries
+     */
+    CliDatasetCache(long maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param file absolute path of the data file
+     * @param predicate predicate the data was read with
+     * @param fingerprint current snapshot fingerprint of the data files
+     * @return copy of the cached slices or null
+     */
+    List<List<VaultEntry>> get(String file, ReadPredicate predicate, String fingerprint) {
+        Entry entry = lookup(new Key(file, predicate), fingerprint);
+        if (entry != null) {
+            hits++;
+            return copyOf(entry.slices);
+        }
+        if (!predicate.isAll()) {
+            entry = lookup(new Key(file, ReadPredicate.all()), fingerprint);
+            if (entry != null) {
+                hits++;
+                return filteredCopyOf(entry.slices, predicate);
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Stores a copy of the slices. Datasets larger than the cache are not
+     * stored.
+     *
+     * @param file absolute path of the data file
+     * @param predicate predicate the data was read with
+     * @param fingerprint snapshot fingerprint of the data files
+     * @param slices decoded data
+     */
+    void put(String file, ReadPredicate predicate, String fingerprint, List<List<VaultEntry>> slices) {
+        if (fingerprint == null || slices == null) {
+            return;
+        }
+        Key key = new Key(file, predicate);
+        remove(key);
+        long entrySize = sizeOf(slices);
+        if (entrySize > maxEntries) {
+            return;
+        }
+        entries.put(key, new Entry(fingerprint, copyOf(slices), entrySize));
+        size += entrySize;
+
+        Iterator<Entry> lru = entries.values().iterator();
+        while (size > maxEntries && lru.hasNext()) {
+            size -= lru.next().size;
+            lru.remove();
+        }
+    }
+
+    /**
+     * Stores data which was just written to the data file. The entries are
+     * converted like a write and read of the file would do, so the cached
+     * data equals the data read from disk.
+     *
+     * @param file absolute path of the data file
+     * @param fingerprint snapshot fingerprint of the written data files
+     * @param slices written data, sliced like a read of the file would do
+     */
+    void putWritten(String file, String fingerprint, List<List<VaultEntry>> slices) {
+        if (fingerprint == null || slices == null || sizeOf(slices) > maxEntries) {
+            return;
+        }
+        VaultEntryJsonAdapter adapter = new VaultEntryJsonAdapter();
+        List<List<VaultEntry>> written = new ArrayList<>(slices.size());
+        for (List<VaultEntry> slice : slices) {
+            VaultEntryDataset copy = new VaultEntryDataset(slice.size());
+            for (VaultEntry item : slice) {
+                copy.add(adapter.deserialize(adapter.serialize(item, VaultEntry.class, null),
+                        VaultEntry.class, null));
+            }
+            written.add(copy);
+        }
+        put(file, ReadPredicate.all(), fingerprint, written);
+    }
+
+    /**
+     * Makes the complete data of a file available for a copy of the file.
+     *
+     * @param sourceFile absolute path of the copied data file
+     * @param sourceFingerprint snapshot fingerprint of the copied data files
+     * @param targetFile absolute path of the copy
+     * @param targetFingerprint snapshot fingerprint of the copy
+     */
+    void copy(String sourceFile, String sourceFingerprint, String targetFile, String targetFingerprint) {
+        Entry entry = lookup(new Key(sourceFile, ReadPredicate.all()), sourceFingerprint);
+        remove(new Key(targetFile, ReadPredicate.all()));
+        if (entry != null) {
+            put(targetFile, ReadPredicate.all(), targetFingerprint, entry.slices);
+        }
+    }
+
+    /**
+     * @return human readable size and hit statistics
+     */
+    String describe() {
+        return String.format("Dataset cache: %d datasets, %d of %d entries, %d hits, %d misses",
+                entries.size(), size, maxEntries, hits, misses);
+    }
+
+    private Entry lookup(Key key, String fingerprint) {
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.fingerprint.equals(fingerprint)) {
+            // data changed on disk
+            remove(key);
+            entry = null;
+        }
+        return entry;
+    }
+
+    private void remove(Key key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            size -= old.size;
+        }
+    }
+
+    private static long sizeOf(List<List<VaultEntry>> slices) {
+        long result = 0;
+        for (List<VaultEntry> slice : slices) {
+            result += slice.size();
+        }
+        return result;
+    }
+
+    /**
+     * Copies the slices and their entries. The type index of a slice is
+     * shared, it only holds positions.
+     */
+    private static List<List<VaultEntry>> copyOf(List<List<VaultEntry>> slices) {
+        List<List<VaultEntry>> result = new ArrayList<>(slices.size());
+        for (List<VaultEntry> slice : slices) {
+            VaultEntryDataset copy = new VaultEntryDataset(slice.size());
+            for (VaultEntry item : slice) {
+                copy.add(new VaultEntry(item));
+            }
+            if (slice instanceof VaultEntryDataset) {
+                copy.attachTypeIndex(((VaultEntryDataset) slice).getTypeIndex());
+            }
+            result.add(copy);
+        }
+        return result;
+    }
+
+    /**
+     * Copies the entries of the slices which match the predicate. Slices
+     * outside of the predicate's time range stay empty like on a read.
+     */
+    private static List<List<VaultEntry>> filteredCopyOf(List<List<VaultEntry>> slices, ReadPredicate predicate) {
+        List<List<VaultEntry>> result = new ArrayList<>(slices.size());
+        for (List<VaultEntry> slice : slices) {
+            VaultEntryDataset copy = new VaultEntryDataset();
+            for (VaultEntry item : slice) {
+                if (predicate.matches(item)) {
+                    copy.add(new VaultEntry(item));
+                }
+            }
+            result.add(copy);
+        }
+        return result;
+    }
+
+    private static final class Key {
+
+        private final String file;
+        private final ReadPredicate predicate;
+
+        Key(String file, ReadPredicate predicate) {
+            this.file = file;
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return file.equals(other.file) && predicate.equals(other.predicate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, predicate);
+        }
+    }
+
+    private static final class Entry {
+
+        private final String fingerprint;
+        private final List<List<VaultEntry>> slices;
+        private final long size;
+
+        Entry(String fingerprint, List<List<VaultEntry>> slices, long size) {
+            this.fingerprint = fingerprint;
+            this.slices = slices;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.cli;
+
+/**
+ * Thrown instead of exiting the JVM if commands are executed within a long
+ * running process, see {@link CliManager#exit(int)}.
+ *
+ * @author juehv
+ */
+class CliExitException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    /**
+     * @param status exit status the command wanted to exit with
+     */
+    CliExitException(int status) {
+        super("Command exited with status " + status);
+        this.status = status;
+    }
+
+    int getStatus() {
+        return status;
+    }
+}
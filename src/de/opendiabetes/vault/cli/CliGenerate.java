@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.cli;
+
+import de.opendiabetes.vault.examples.SyntheticDataGenerator;
+import de.opendiabetes.vault.examples.SyntheticDataOptions;
+import de.opendiabetes.vault.exporter.ExporterOptions;
+import de.opendiabetes.vault.exporter.StreamExporter;
+import de.opendiabetes.vault.exporter.csv.VaultEntryCsvStreamExporter;
+import de.opendiabetes.vault.exporter.json.VaultEntryJsonStreamExporter;
+import de.opendiabetes.vault.util.TimestampUtils;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+import picocli.CommandLine;
+
+/**
+ * CLI class for generating synthetic data for benchmarks and stress tests,
+ * see {@link SyntheticDataGenerator}. The data is streamed into a file or an
+ * empty repository, so it may be larger than the heap.
+ *
+ * @author juehv
+ */
+@CommandLine.Command(description = "Generates synthetic data of insulin pump and CGM patients into a file or an empty repository.",
+        name = "generate", mixinStandardHelpOptions = true, version = "odv generate 0.1")
+public class CliGenerate implements Callable<Void> {
+
+    public static final String COMMAND = "generate";
+
+    private static final Logger LOG = Logger.getLogger(CliGenerate.class.getName());
+
+    @CommandLine.Option(names = {"-o", "--output"}, paramLabel = "FILE",
+            description = "Writes the data to the file. Writes into the complete dataset of the current repository if not set. The repository must be empty.")
+    private File output;
+
+    @CommandLine.Option(names = {"-t", "--type"}, paramLabel = "EXPORT-TYPE",
+            description = "Format of the output file. Valid values: ODV_CSV, ODV_JSON. Default is ODV_JSON.")
+    private CliExportType exportType = CliExportType.ODV_JSON;
+
+    @CommandLine.Option(names = {"-c", "--compress"}, description = "Compresses the output file.")
+    private boolean deflate;
+
+    @CommandLine.Option(names = {"-s", "--seed"}, paramLabel = "SEED",
+            description = "Seed of the generator. The same options generate the same data. Default is 4711.")
+    private long seed = 4711;
+
+    @CommandLine.Option(names = {"-p", "--patients"}, paramLabel = "N",
+            description = "Number of patients. Default is 1.")
+    private int patients = 1;
+
+    @CommandLine.Option(names = {"--first-patient"}, paramLabel = "N",
+            description = "Number of the first patient, e.g. to generate one patient per repository. Default is 1.")
+    private int firstPatient = 1;
+
+    @CommandLine.Option(names = {"-d", "--days"}, paramLabel = "DAYS",
+            description = "Number of days per patient. Default is 365.")
+    private int days = 365;
+
+    @CommandLine.Option(names = {"--start"}, paramLabel = "yyyy.MM.dd-HH:mm",
+            description = "Start of the data. Default is 2019.01.01-00:00 UTC.")
+    private String start;
+
+    @CommandLine.Option(names = {"--heart-rate"}, description = "Generates heart rate values too.")
+    private boolean heartRate;
+
+    @CommandLine.Option(names = {"--heart-rate-interval"}, paramLabel = "SECONDS",
+            description = "Distance of heart rate values. Default is 60.")
+    private int heartRateInterval = 60;
+
+    @Override
+    public Void call() throws Exception {
+        SyntheticDataOptions options = new SyntheticDataOptions();
+        options.seed = seed;
+        options.patients = patients;
+        options.firstPatient = firstPatient;
+        options.days = days;
+        options.heartRate = heartRate;
+        options.heartRateIntervalInSeconds = heartRateInterval;
+        if (start != null) {
+            try {
+                options.startDate = TimestampUtils.createCleanTimestamp(start);
+            } catch (ParseException ex) {
+                CliManager.exitWithError("Can't parse start. Use format yyyy.MM.dd-HH:mm. Exit.", null);
+            }
+        }
+        if (patients < 1 || days < 0 || heartRateInterval < 1) {
+            CliManager.exitWithError("Invalid number of patients, days or heart rate interval. Exit.", null);
+        }
+
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(options);
+        long entryCount = 0;
+        if (output != null) {
+            if (exportType == CliExportType.CUSTOM_CSV) {
+                CliManager.exitWithError("Not supported yet. Exit.", null);
+            }
+            try (StreamExporter exporter = openExporter()) {
+                while (generator.hasNext()) {
+                    exporter.write(generator.next());
+                }
+                entryCount = exporter.getEntryCount();
+            } catch (IOException ex) {
+                LOG.log(Level.SEVERE, "Error writing generated data.", ex);
+                CliManager.exitWithError("Error while writing data. See log.", null);
+            }
+            System.out.println("Generated " + entryCount + " entries to file: " + output.getPath());
+        } else {
+            CliRepositoryManager repMan = CliManager.openRepository();
+            if (repMan.hasMasterData()) {
+                CliManager.exitWithError("Repository already contains data. "
+                        + "Generate into a file with --output and import it instead. Exit.", repMan);
+            }
+            try {
+                entryCount = repMan.streamDataIntoEmptyMaster(generator);
+            } catch (IOException ex) {
+                LOG.log(Level.SEVERE, "Error writing generated data.", ex);
+                CliManager.exitWithError("Error while writing data. See log.", repMan);
+            }
+            repMan.writeLineToJournal("Generated synthetic data: " + patients + " patients, "
+                    + days + " days, seed " + seed + ".");
+            repMan.closeJournal();
+            System.out.println("Generated " + entryCount + " entries into the repository.");
+        }
+        System.out.println("Finished successfully.");
+        return null;
+    }
+
+    private StreamExporter openExporter() throws IOException {
+        OutputStream sink = new BufferedOutputStream(new FileOutputStream(output));
+        if (deflate) {
+            sink = new GZIPOutputStream(sink);
+        }
+        if (exportType == CliExportType.ODV_CSV) {
+            return new VaultEntryCsvStreamExporter(new ExporterOptions(), sink);
+        }
+        return new VaultEntryJsonStreamExporter(new ExporterOptions(), sink);
+    }
+}
@@ -16,7 +16,18 @@
  */
 package de.opendiabetes.vault.cli;
 
+import de.opendiabetes.vault.util.MetricsRegistry;
+import de.opendiabetes.vault.util.PipelineEvent;
+import de.opendiabetes.vault.util.PipelineEvents;
+import de.opendiabetes.vault.util.PipelineStage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import picocli.CommandLine;
 
@@ -25,23 +36,201 @@ import picocli.CommandLine;
  *
  * @author juehv
  */
-@CommandLine.Command(description = "OpenDiabetesVault Commandline Interface. Manages a git-like data vault for diabetes data processing.",
-        name = "odv", mixinStandardHelpOptions = true, version = "odv 0.1",
-        subcommands = {CliVaultInit.class, CliVaultImport.class, CliVaultExport.class,
-            CliVaultTag.class, CliProcessing.class, CliVaultStatus.class})
+@CommandLine.Command(description = "OpenDiabetesVault Commandline Interface. Manages a git-like data vault for diabetes data processing. "
+        + "Add --metrics to any command to print the time spent in each processing stage.",
+        name = "odv", mixinStandardHelpOptions = true, version = "odv " + CliManager.VERSION)
 public class CliManager implements Callable<Void> {
 
     private static final Logger LOG = Logger.getLogger(CliManager.class.getName());
+    static final String VERSION = "0.1";
+    static final String OPTION_METRICS = "--metrics";
+
+    // subcommands by name. Only the called subcommand is registered, since
+    // building the command model loads the classes of all options.
+    static final Map<String, Class<?>> SUBCOMMANDS = new LinkedHashMap<>();
+
+    static {
+        SUBCOMMANDS.put("init", CliVaultInit.class);
+        SUBCOMMANDS.put("import", CliVaultImport.class);
+        SUBCOMMANDS.put("export", CliVaultExport.class);
+        SUBCOMMANDS.put("tag", CliVaultTag.class);
+        SUBCOMMANDS.put("process", CliProcessing.class);
+        SUBCOMMANDS.put("status", CliVaultStatus.class);
+        SUBCOMMANDS.put(CliGenerate.COMMAND, CliGenerate.class);
+        SUBCOMMANDS.put(CliServer.COMMAND, CliServer.class);
+        SUBCOMMANDS.put(CliBatch.COMMAND, CliBatch.class);
+        SUBCOMMANDS.put(CliStartup.COMMAND, CliStartup.class);
+    }
+
+    // set while commands run within a long running process, which executes
+    // one command at a time
+    private static boolean embedded;
+    private static File workingDirectory;
+    // command line whose metrics are recorded
+    private static String metricsCommand;
 
     public static void main(String[] args) throws Exception {
-        CommandLine commandLine = new CommandLine(new CliManager());
+        args = parseMetricsOption(args);
+        PipelineEvent event = PipelineEvents.begin(PipelineStage.COMMAND, args, null);
+        CommandLine commandLine = newCommandLine(args);
         commandLine.parseWithHandler(new CommandLine.RunLast(), args);
+        event.commit(-1, -1, -1);
+        reportMetrics();
+    }
+
+    /**
+     * Removes the --metrics option, which is accepted by every subcommand,
+     * and starts recording metrics if it is given. Metrics which are already
+     * recorded, e.g. for a batch script, are kept.
+     *
+     * @param args command line arguments
+     * @return arguments without the option
+     */
+    static String[] parseMetricsOption(String[] args) {
+        List<String> result = new ArrayList<>(Arrays.asList(args));
+        if (result.removeIf(OPTION_METRICS::equals) && metricsCommand == null) {
+            metricsCommand = String.join(" ", result);
+            MetricsRegistry.enable();
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * Prints the recorded metrics and appends them to the journal of the
+     * repository, if the command used one. Stops recording.
+     */
+    static void reportMetrics() {
+        if (metricsCommand == null) {
+            return;
+        }
+        String summary = MetricsRegistry.summary();
+        if (summary != null) {
+            String header = "Metrics of: odv " + metricsCommand;
+            System.out.println(header);
+            System.out.print(summary);
+            CliRepositoryManager repMan = CliRepositoryManager.getOpenedRepository();
+            if (repMan != null) {
+                repMan.writeLineToJournal(header);
+                for (String line : MetricsRegistry.structuredLines()) {
+                    repMan.writeLineToJournal(line);
+                }
+                repMan.closeJournal();
+            }
+        }
+        metricsCommand = null;
+        MetricsRegistry.reset();
+    }
+
+    /**
+     * Relative file arguments are resolved against the current working
+     * directory of the command.
+     *
+     * @param args command line arguments
+     * @return command line with the subcommand called by the arguments or
+     * with all subcommands, e.g. for the help page
+     */
+    static CommandLine newCommandLine(String[] args) {
+        CommandLine commandLine = new CommandLine(new CliManager());
+        String name = null;
+        for (String item : args) {
+            if (!item.startsWith("-")) {
+                // odv itself has no options with values
+                name = item;
+                break;
+            }
+        }
+        if (SUBCOMMANDS.containsKey(name)) {
+            commandLine.addSubcommand(name, SUBCOMMANDS.get(name));
+        } else {
+            for (Map.Entry<String, Class<?>> item : SUBCOMMANDS.entrySet()) {
+                commandLine.addSubcommand(item.getKey(), item.getValue());
+            }
+        }
+        // converters apply to the subcommands added before
+        commandLine.registerConverter(File.class, CliManager::resolveFile);
+        return commandLine;
+    }
+
+    /**
+     * Executes a command line within this JVM, e.g. for a client of the
+     * server mode. Calls to {@link #exit(int)} end the command instead of the
+     * JVM. Commands must not be executed concurrently.
+     *
+     * @param commandArgs command line arguments
+     * @param workingDir directory to resolve relative paths and to search
+     * the repository in
+     * @return exit status of the command
+     */
+    static int execute(String[] commandArgs, File workingDir) {
+        boolean wasEmbedded = embedded;
+        File previousWorkingDirectory = workingDirectory;
+        embedded = true;
+        workingDirectory = workingDir;
+        boolean recordsMetrics = metricsCommand == null;
+        String[] args = parseMetricsOption(commandArgs);
+        recordsMetrics &= metricsCommand != null;
+        PipelineEvent event = PipelineEvents.begin(PipelineStage.COMMAND, args, null);
+        try {
+            final int[] status = {0};
+            newCommandLine(args).parseWithHandlers(new CommandLine.RunLast(),
+                    new CommandLine.DefaultExceptionHandler<List<Object>>() {
+                @Override
+                public List<Object> handleParseException(CommandLine.ParameterException ex, String[] args) {
+                    status[0] = 2;
+                    return super.handleParseException(ex, args);
+                }
+            }, args);
+            return status[0];
+        } catch (CommandLine.ExecutionException ex) {
+            if (ex.getCause() instanceof CliExitException) {
+                return ((CliExitException) ex.getCause()).getStatus();
+            }
+            LOG.log(Level.SEVERE, "Error while executing command.", ex);
+            System.err.println(ex.getMessage());
+            return 1;
+        } catch (CliExitException ex) {
+            return ex.getStatus();
+        } finally {
+            event.commit(-1, -1, -1);
+            if (recordsMetrics) {
+                reportMetrics();
+            }
+            embedded = wasEmbedded;
+            workingDirectory = previousWorkingDirectory;
+        }
+    }
+
+    /**
+     * @param path absolute path or path relative to the working directory of
+     * the current command
+     * @return resolved file
+     */
+    static File resolveFile(String path) {
+        File file = new File(path);
+        if (workingDirectory == null || file.isAbsolute()) {
+            return file;
+        }
+        return new File(workingDirectory, path);
+    }
+
+    /**
+     * Exits the JVM or, if the command is executed within a long running
+     * process, ends the command.
+     *
+     * @param status exit status
+     */
+    static void exit(int status) {
+        if (embedded) {
+            throw new CliExitException(status);
+        }
+        reportMetrics();
+        System.exit(status);
     }
 
     @Override
     public Void call() throws Exception {
         // user should never end here.
-        new CommandLine(this).usage(System.err);
+        newCommandLine(new String[0]).usage(System.err);
 
         return null;
     }
@@ -55,7 +244,7 @@ public class CliManager implements Callable<Void> {
         CliRepositoryManager repMan = CliRepositoryManager.getCurrentRepository();
         if (repMan == null) {
             System.err.println("Not an Opendiabetes Vault repository. Exit.");
-            System.exit(-1);
+            exit(-1);
         }
         return repMan;
     }
@@ -71,6 +260,6 @@ public class CliManager implements Callable<Void> {
             repMan.closeJournal();
         }
         System.err.println(msg);
-        System.exit(-1);
+        exit(-1);
     }
 }
@@ -16,27 +16,49 @@
  */
 package de.opendiabetes.vault.cli;
 
+import com.google.gson.JsonParseException;
 import de.opendiabetes.vault.data.container.SliceEntry;
 import de.opendiabetes.vault.data.container.VaultEntry;
 import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import picocli.CommandLine;
+import de.opendiabetes.vault.importer.ReadPredicate;
+import de.opendiabetes.vault.processing.FilterDefinitionContainer;
 import de.opendiabetes.vault.processing.ProcessingContainer;
+import de.opendiabetes.vault.processing.SliceExecutionResult;
+import de.opendiabetes.vault.processing.SliceExecutor;
+import de.opendiabetes.vault.processing.SliceProcessingContainer;
+import de.opendiabetes.vault.processing.StreamingProcessingContainer;
+import de.opendiabetes.vault.processing.filter.FilterDefinition;
+import de.opendiabetes.vault.processing.filter.FilterOptimizer;
+import de.opendiabetes.vault.processing.filter.FilterPushdown;
 import de.opendiabetes.vault.util.TimestampUtils;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
-import net.openhft.compiler.CompilerUtils;
+import java.util.function.Consumer;
+import java.io.UncheckedIOException;
+import net.openhft.compiler.CachedCompiler;
 
 /**
  * CLI class for filtering data within a repository.
@@ -48,6 +70,7 @@ import net.openhft.compiler.CompilerUtils;
 public class CliProcessing implements Callable<Void> {
 
     private static final Logger LOG = Logger.getLogger(CliProcessing.class.getName());
+    static final int MAX_CACHED_CLASS_DIRS = 16;
 
     @CommandLine.ArgGroup(exclusive = true, multiplicity = "1")
     private Exclusive exclusive;
@@ -72,12 +95,42 @@ public class CliProcessing implements Callable<Void> {
                     paramLabel = "TARGET-TAG", description = "Specifies the repository tag to write output data. If tag does exist, data will be overwritten.")
             private String tag;
 
-            @CommandLine.Option(required = true, names = {"-f", "--container-file"},
-                    paramLabel = "CONTAINER-FILE", description = "Specifies the file containing a class implementing the ProcessingContainer interface. File can be java source code (.java) or a compiled java class (.class). Use skeleton for implementation.")
-            private File processingContainerFile;
+            @CommandLine.ArgGroup(exclusive = true, multiplicity = "1")
+            private Source source;
+
+            @CommandLine.Option(names = {"--workers"}, paramLabel = "N",
+                    description = "Number of worker threads for containers implementing SliceProcessingContainer. Uses all processors as default.")
+            private int workers = 0;
+
+            @CommandLine.Option(names = {"--checkpoint"}, paramLabel = "STEP=TAG", split = ",",
+                    description = "Additionally saves the output of steps of a chain (counting from 1) to tags, e.g. 1=step1,2=step2.")
+            private Map<Integer, String> checkpoints = new HashMap<>();
+
+            @CommandLine.Option(names = {"--no-cache"},
+                    description = "Processes the data even if the result of an identical run is cached.")
+            private boolean noCache;
+
+            @CommandLine.Option(names = {"--stream"},
+                    description = "Streams the input slice by slice through containers implementing StreamingProcessingContainer into the output tag. Only the slices in flight are kept in memory. Results are not cached.")
+            private boolean stream;
+
+            @CommandLine.Option(names = {"--explain"},
+                    description = "Prints the optimized filter trees of the chain with their estimated cost and selectivity and exits without processing.")
+            private boolean explain;
         }
     }
 
+    private static class Source {
+
+        @CommandLine.Option(required = true, names = {"-f", "--container-file"},
+                paramLabel = "CONTAINER-FILE", split = ",", description = "Specifies the file containing a class implementing the ProcessingContainer interface. File can be java source code (.java) or a compiled java class (.class). Use skeleton for implementation. Give a comma separated list to chain containers, the output of one is the input of the next.")
+        private List<File> processingContainerFiles;
+
+        @CommandLine.Option(required = true, names = {"--filter-file"},
+                paramLabel = "FILTER-FILE", split = ",", description = "Specifies a JSON file defining a filter tree, which is applied to every input slice. Needs no compiler. Give a comma separated list to chain filters.")
+        private List<File> filterFiles;
+    }
+
     @Override
     public Void call() throws Exception {
         if (exclusive.generateSkeletonFileName != null) {
@@ -88,7 +141,7 @@ public class CliProcessing implements Callable<Void> {
             }
 
             // generate proper file path & check stuff 
-            File skeletonFile = new File(exclusive.generateSkeletonFileName);
+            File skeletonFile = CliManager.resolveFile(exclusive.generateSkeletonFileName);
             if (!Character.isUpperCase(skeletonFile.getName().charAt(0))) {
                 skeletonFile = new File(skeletonFile.getAbsoluteFile()
                         .getParentFile().getAbsolutePath().concat(File.separator)
@@ -112,80 +165,476 @@ public class CliProcessing implements Callable<Void> {
             // write file
             Files.write(Paths.get(skeletonFile.getAbsolutePath()),
                     Arrays.asList(lines), StandardCharsets.UTF_8);
-            System.exit(0);
+            return null;
         }
 
         // process option
         CliRepositoryManager repMan = CliManager.openRepository();
 
-        List<List<VaultEntry>> inputData = null;
-        if (exclusive.combination.input.equalsIgnoreCase(CliRepositoryManager.COMPLETE_DATA)) {
-            inputData = new ArrayList<>();
-            inputData.add(repMan.getDataFromMaster());
+        // load processing containers
+        List<File> containerFiles = exclusive.combination.source.processingContainerFiles != null
+                ? exclusive.combination.source.processingContainerFiles
+                : exclusive.combination.source.filterFiles;
+        List<ProcessingContainer> processingContainers = new ArrayList<>();
+        for (File containerFile : containerFiles) {
+            processingContainers.add(loadContainer(containerFile, repMan));
+        }
+        Map<Integer, String> checkpoints = exclusive.combination.checkpoints;
+        for (Integer step : checkpoints.keySet()) {
+            if (step < 1 || step > processingContainers.size()) {
+                CliManager.exitWithError("Checkpoint step " + step + " does not exist. Steps are counted from 1 to "
+                        + processingContainers.size() + ". Exit.", repMan);
+            }
+        }
+
+        if (exclusive.combination.explain) {
+            System.out.print(explain(processingContainers, containerFiles));
+            repMan.closeJournal();
+            return null;
+        }
+
+        // push the first container's input filter down into the reader
+        ReadPredicate predicate = FilterPushdown.derive(processingContainers.get(0).getInputFilter());
+        if (!predicate.isAll()) {
+            repMan.writeLineToJournal("Read input with pushed down predicate: " + predicate);
+        }
+
+        if (exclusive.combination.stream) {
+            streamChain(processingContainers, containerFiles, predicate, repMan);
+            System.out.println("Fished successfully.");
+            repMan.closeJournal();
+            return null;
+        }
+
+        // identical runs on an unchanged input give identical results,
+        // checkpoints need the intermediate results of a real run
+        CliResultCache cache = repMan.getResultCache();
+        String cacheKey = null;
+        if (!exclusive.combination.noCache && checkpoints.isEmpty()) {
+            cacheKey = CliResultCache.keyOf(
+                    repMan.snapshotFingerprintOf(exclusive.combination.input),
+                    fingerprintOf(processingContainers, containerFiles),
+                    CliManager.VERSION, buildFingerprint());
+        }
+        CliResultCache.Entry cached = cacheKey != null ? cache.get(cacheKey) : null;
+
+        List<List<VaultEntry>> outputData;
+        long inputHighWaterMark;
+        if (cached != null) {
+            repMan.writeLineToJournal("Used cached result for " + containerFiles
+                    + " on " + exclusive.combination.input);
+            outputData = cached.getSlices();
+            inputHighWaterMark = cached.getInputHighWaterMark();
         } else {
-            // check if tag exists
-            if (repMan.getTagNameList().contains(exclusive.combination.input)) {
-                // load tag data
-                inputData = repMan.getDataFromTag(exclusive.combination.input);
-            } else {
-                // tag not found --> exit
-                CliManager.exitWithError("Can't load input data. Tag does not exist! Exit.",
-                        repMan);
+            List<List<VaultEntry>> inputData = readInput(exclusive.combination.input,
+                    predicate, repMan);
+            inputHighWaterMark = lastTimestampOf(inputData);
+
+            // execute the chain, slices stay in memory between the steps
+            outputData = inputData;
+            for (int step = 1; step <= processingContainers.size() && outputData != null; step++) {
+                outputData = runContainer(processingContainers.get(step - 1), outputData,
+                        exclusive.combination.workers);
+                String checkpoint = checkpoints.get(step);
+                if (checkpoint != null && step < processingContainers.size()) {
+                    saveToTag(outputData, checkpoint, containerFiles.subList(0, step),
+                            processingContainers.subList(0, step), inputHighWaterMark, repMan);
+                }
+            }
+            if (cacheKey != null && outputData != null) {
+                cache.put(cacheKey, new CliResultCache.Entry(inputHighWaterMark, outputData));
             }
         }
 
-        if (inputData == null || inputData.isEmpty()) {
-            CliManager.exitWithError("Can't load input data. Exit.",
-                    repMan);
+        // save to tag
+        saveToTag(outputData, exclusive.combination.tag, containerFiles, processingContainers,
+                inputHighWaterMark, repMan);
+        String lastCheckpoint = checkpoints.get(processingContainers.size());
+        if (lastCheckpoint != null) {
+            saveToTag(outputData, lastCheckpoint, containerFiles, processingContainers,
+                    inputHighWaterMark, repMan);
         }
 
-        // load processing container
+        System.out.println("Fished successfully.");
+        repMan.closeJournal();
+        return null;
+    }
+
+    /**
+     * Loads a processing container from a java source file or a compiled
+     * class. Exits if the container can't be loaded.
+     *
+     * @param processingContainerFile .java or .class file
+     * @param repMan repository handle
+     * @return the loaded container
+     */
+    static ProcessingContainer loadContainer(File processingContainerFile,
+            CliRepositoryManager repMan) throws IOException, ClassNotFoundException,
+            InstantiationException, IllegalAccessException {
         ProcessingContainer processingContainer = null;
-        if (!exclusive.combination.processingContainerFile.exists()
-                || !exclusive.combination.processingContainerFile.canRead()) {
+        if (!processingContainerFile.exists()
+                || !processingContainerFile.canRead()) {
             CliManager.exitWithError("Can't read processing container file. Exit.",
                     repMan);
-        } else if (exclusive.combination.processingContainerFile
+        } else if (processingContainerFile
                 .getName().endsWith(".java")) {
             // source file
-            processingContainer = loadAndCompileContainerClass();
-        } else if (exclusive.combination.processingContainerFile
+            processingContainer = loadAndCompileContainerClass(processingContainerFile, repMan);
+        } else if (processingContainerFile
                 .getName().endsWith(".class")) {
             // compiled class
-            processingContainer = loadContainerClass();
+            processingContainer = loadContainerClass(processingContainerFile);
         } else {
-            CliManager.exitWithError("Can't find a supported file ending. Exit.",
+            // declarative filter definition
+            processingContainer = loadFilterDefinition(processingContainerFile, repMan);
+        }
+
+        if (processingContainer == null) {
+            CliManager.exitWithError("Error loading processing container.",
                     repMan);
         }
+        return processingContainer;
+    }
+
+    /**
+     * Saves the output of a chain to a tag and records the definition, so the
+     * tag can be refreshed after imports.
+     */
+    private void saveToTag(List<List<VaultEntry>> outputData, String tag, List<File> containerFiles,
+            List<ProcessingContainer> processingContainers, long inputHighWaterMark,
+            CliRepositoryManager repMan) {
+        if (outputData != null && !outputData.isEmpty()) {
+            // save to repository
+            repMan.createTagFromData(outputData, tag);
+            writeTagDefinition(tag, containerFiles, processingContainers, inputHighWaterMark, repMan);
+        } else {
+            System.out.println("Output data for " + tag + " was empty.");
+        }
+    }
 
-        // execute processing container & save to tag
-        if (processingContainer != null) {
-            List<List<VaultEntry>> outputData = processingContainer.processData(inputData);
-            if (outputData != null && !outputData.isEmpty()) {
-                // save to repository
-                repMan.createTagFromData(outputData, exclusive.combination.tag);
+    private void writeTagDefinition(String tag, List<File> containerFiles,
+            List<ProcessingContainer> processingContainers, long inputHighWaterMark,
+            CliRepositoryManager repMan) {
+        try {
+            repMan.writeTagDefinition(tag, new CliTagDefinition(
+                    containerFiles, exclusive.combination.input, inputHighWaterMark,
+                    marginOf(processingContainers)));
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Can't record tag definition.", ex);
+        }
+    }
+
+    /**
+     * Streams the input slice by slice through the chain. Every output slice
+     * of a step is pushed to the next step right away and the output of the
+     * last step goes to a tag writer, so only the slices in flight are in
+     * memory. Checkpoints get their own writers.
+     */
+    private void streamChain(List<ProcessingContainer> processingContainers, List<File> containerFiles,
+            ReadPredicate predicate, CliRepositoryManager repMan) throws IOException, IllegalAccessException {
+        List<StreamingProcessingContainer> steps = new ArrayList<>();
+        for (int i = 0; i < processingContainers.size(); i++) {
+            if (!(processingContainers.get(i) instanceof StreamingProcessingContainer)) {
+                CliManager.exitWithError(containerFiles.get(i).getName()
+                        + " does not implement StreamingProcessingContainer and can't be streamed. Exit.", repMan);
+            }
+            steps.add((StreamingProcessingContainer) processingContainers.get(i));
+        }
+        String input = exclusive.combination.input;
+        if (!input.equalsIgnoreCase(CliRepositoryManager.COMPLETE_DATA)
+                && !repMan.getTagNameList().contains(input)) {
+            CliManager.exitWithError("Can't load input data. Tag does not exist! Exit.", repMan);
+        }
+
+        // writers of the output tag and the checkpoints by step
+        Map<Integer, String> tags = new HashMap<>(exclusive.combination.checkpoints);
+        Map<Integer, CliTagWriter> writers = new HashMap<>();
+        long inputHighWaterMark = Long.MIN_VALUE;
+        try (CliTagReader reader = repMan.openTagReader(input, predicate)) {
+            if (reader == null) {
+                CliManager.exitWithError("Can't load input data. Exit.", repMan);
+            }
+            for (Map.Entry<Integer, String> item : tags.entrySet()) {
+                writers.put(item.getKey(), repMan.openTagWriter(item.getValue()));
+            }
+            CliTagWriter outputWriter = repMan.openTagWriter(exclusive.combination.tag);
+            writers.put(0, outputWriter);
+            tags.put(0, exclusive.combination.tag);
+
+            // wire the steps from the last to the first
+            List<Consumer<List<VaultEntry>>> outputs = new ArrayList<>(
+                    Collections.nCopies(steps.size(), (Consumer<List<VaultEntry>>) null));
+            for (int step = steps.size(); step >= 1; step--) {
+                CliTagWriter checkpointWriter = writers.get(step);
+                StreamingProcessingContainer next = step < steps.size() ? steps.get(step) : null;
+                Consumer<List<VaultEntry>> nextOutput = step < steps.size() ? outputs.get(step) : null;
+                outputs.set(step - 1, slice -> {
+                    try {
+                        if (checkpointWriter != null) {
+                            checkpointWriter.write(slice);
+                        }
+                        if (next != null) {
+                            next.processSlice(slice, nextOutput);
+                        } else {
+                            outputWriter.write(slice);
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+
+            try {
+                int sliceCount = 0;
+                while (reader.hasNext()) {
+                    List<VaultEntry> slice = reader.next();
+                    if (!slice.isEmpty()) {
+                        inputHighWaterMark = Math.max(inputHighWaterMark,
+                                slice.get(slice.size() - 1).getTimestamp().getTime());
+                    }
+                    steps.get(0).processSlice(slice, outputs.get(0));
+                    sliceCount++;
+                }
+                for (int step = 1; step <= steps.size(); step++) {
+                    steps.get(step - 1).finish(outputs.get(step - 1));
+                }
+                if (reader.getSkippedSlices() > 0) {
+                    LOG.log(Level.INFO, "Skipped {0} slices outside of the read predicate.",
+                            reader.getSkippedSlices());
+                }
+                repMan.writeLineToJournal("Streamed " + sliceCount + " slices of " + input
+                        + " through " + containerFiles);
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+
+            // commit the checkpoints in step order and the output tag last
+            List<Integer> order = new ArrayList<>(writers.keySet());
+            Collections.sort(order);
+            order.add(order.remove(0));
+            for (Integer step : order) {
+                String tag = tags.get(step);
+                if (writers.get(step).getSliceCount() > 0) {
+                    repMan.commitTag(writers.get(step), tag);
+                    int length = step == 0 ? containerFiles.size() : step;
+                    writeTagDefinition(tag, containerFiles.subList(0, length),
+                            processingContainers.subList(0, length), inputHighWaterMark, repMan);
+                } else {
+                    System.out.println("Output data for " + tag + " was empty.");
+                }
+            }
+        } finally {
+            for (CliTagWriter item : writers.values()) {
+                item.close();
+            }
+        }
+    }
+
+    /**
+     * Renders the filter trees of a chain, see
+     * {@link FilterOptimizer#explain(de.opendiabetes.vault.processing.filter.Filter)}.
+     * Filter definitions show the optimized tree which is applied to the
+     * slices, other containers their input filter.
+     *
+     * @param processingContainers steps of the chain
+     * @param containerFiles files the steps were loaded from
+     * @return human readable plan
+     */
+    static String explain(List<ProcessingContainer> processingContainers, List<File> containerFiles) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < processingContainers.size(); i++) {
+            ProcessingContainer container = processingContainers.get(i);
+            sb.append("Step ").append(i + 1).append(": ").append(containerFiles.get(i).getName()).append('\n');
+            if (container instanceof FilterDefinitionContainer) {
+                sb.append(FilterOptimizer.explain(((FilterDefinitionContainer) container).getFilter()));
+            } else if (container.getInputFilter() != null) {
+                sb.append("input filter:\n");
+                sb.append(FilterOptimizer.explain(container.getInputFilter()));
             } else {
-                System.out.println("Output data was empty.");
+                sb.append("no filter tree to explain\n");
             }
+        }
+        sb.append("Read predicate: ")
+                .append(FilterPushdown.derive(processingContainers.get(0).getInputFilter())).append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * Every step of a chain may look back its margin on the output of the
+     * previous step, so the margins add up.
+     *
+     * @param processingContainers steps of the chain
+     * @return margin of the chain in minutes
+     */
+    static int marginOf(List<ProcessingContainer> processingContainers) {
+        int result = 0;
+        for (ProcessingContainer item : processingContainers) {
+            result += item.getMarginInMinutes();
+        }
+        return result;
+    }
+
+    /**
+     * Runs a container on the input. The slices of a
+     * {@link SliceProcessingContainer} are processed in parallel, other
+     * containers get all slices at once.
+     *
+     * @param processingContainer loaded container
+     * @param inputData input slices
+     * @param workers number of worker threads, values below 1 use the number
+     * of available processors
+     * @return output slices in input order
+     */
+    static List<List<VaultEntry>> runContainer(ProcessingContainer processingContainer,
+            List<List<VaultEntry>> inputData, int workers) {
+        if (!(processingContainer instanceof SliceProcessingContainer)
+                || workers == 1 || inputData.size() < 2) {
+            return processingContainer.processData(inputData);
+        }
+        SliceProcessingContainer sliceContainer = (SliceProcessingContainer) processingContainer;
+        try (SliceExecutor executor = SliceExecutor.forkJoin(workers, true)) {
+            SliceExecutionResult result = executor.execute(sliceContainer::processSlice, inputData);
+            LOG.log(Level.INFO, "Processed slices: {0}", result);
+            return result.getSlices();
+        }
+    }
+
+    /**
+     * Describes everything the result of a chain depends on besides its input
+     * data.
+     *
+     * @param processingContainers loaded containers
+     * @param processingContainerFiles files the containers were loaded from
+     * @return fingerprint or null if a container can't be described
+     * @throws IOException if a container file can't be read
+     */
+    static String fingerprintOf(List<ProcessingContainer> processingContainers,
+            List<File> processingContainerFiles) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < processingContainers.size(); i++) {
+            String step = fingerprintOf(processingContainers.get(i), processingContainerFiles.get(i));
+            if (step == null) {
+                return null;
+            }
+            sb.append(step).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String fingerprintOf(ProcessingContainer processingContainer,
+            File processingContainerFile) throws IOException {
+        if (processingContainer instanceof FilterDefinitionContainer) {
+            // independent of formatting and key order
+            return ((FilterDefinitionContainer) processingContainer).getDefinition().getFingerprint();
+        }
+        String filterFingerprint = FilterOptimizer.fingerprint(processingContainer.getInputFilter());
+        if (filterFingerprint == null) {
+            return null;
+        }
+        String containerHash = processingContainerFile.getName().endsWith(".class")
+                ? hashOfClassFiles(processingContainerFile)
+                : CliTagDefinition.hashOf(processingContainerFile);
+        return containerHash + "|" + filterFingerprint;
+    }
+
+    /**
+     * A compiled container may load inner and helper classes from its
+     * directory at any time, so all class files of the directory are hashed.
+     *
+     * @param processingContainerFile class file of the container
+     * @return hash of the names and contents of the class files
+     * @throws IOException if a class file can't be read
+     */
+    private static String hashOfClassFiles(File processingContainerFile) throws IOException {
+        File[] classFiles = processingContainerFile.getAbsoluteFile().getParentFile()
+                .listFiles(new FileFilter() {
+                    @Override
+                    public boolean accept(File pathname) {
+                        return pathname.getName().endsWith(".class");
+                    }
+                });
+        if (classFiles == null) {
+            throw new IOException("Can't list class files of " + processingContainerFile);
+        }
+        Arrays.sort(classFiles, Comparator.comparing(File::getName));
+        StringBuilder sb = new StringBuilder();
+        for (File classFile : classFiles) {
+            sb.append(classFile.getName()).append('=')
+                    .append(CliTagDefinition.hashOf(classFile)).append('\n');
+        }
+        return CliResultCache.sha256(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the input data of a processing run. Exits if the input can't be
+     * read.
+     *
+     * @param input name of a tag or {@link CliRepositoryManager#COMPLETE_DATA}
+     * @param predicate pushed down predicate
+     * @param repMan repository handle
+     * @return input slices
+     */
+    private static List<List<VaultEntry>> readInput(String input, ReadPredicate predicate,
+            CliRepositoryManager repMan) throws IllegalAccessException {
+        List<List<VaultEntry>> inputData = null;
+        if (input.equalsIgnoreCase(CliRepositoryManager.COMPLETE_DATA)) {
+            inputData = new ArrayList<>();
+            inputData.add(repMan.getDataFromMaster(predicate));
         } else {
-            CliManager.exitWithError("Error loading processing container.",
+            // check if tag exists
+            if (repMan.getTagNameList().contains(input)) {
+                // load tag data
+                inputData = repMan.getDataFromTag(input, predicate);
+            } else {
+                // tag not found --> exit
+                CliManager.exitWithError("Can't load input data. Tag does not exist! Exit.",
+                        repMan);
+            }
+        }
+
+        if (inputData == null || inputData.isEmpty()) {
+            CliManager.exitWithError("Can't load input data. Exit.",
                     repMan);
         }
+        return inputData;
+    }
 
-        System.out.println("Fished successfully.");
-        repMan.closeJournal();
+    /**
+     * @param data slices of sorted entries
+     * @return latest timestamp within the data in milliseconds or
+     * Long.MIN_VALUE if the data is empty
+     */
+    static long lastTimestampOf(List<List<VaultEntry>> data) {
+        long result = Long.MIN_VALUE;
+        for (List<VaultEntry> slice : data) {
+            if (!slice.isEmpty()) {
+                result = Math.max(result, slice.get(slice.size() - 1).getTimestamp().getTime());
+            }
+        }
+        return result;
+    }
+
+    private static ProcessingContainer loadFilterDefinition(File filterFile,
+            CliRepositoryManager repMan) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(filterFile),
+                StandardCharsets.UTF_8)) {
+            return new FilterDefinitionContainer(FilterDefinition.parse(reader));
+        } catch (JsonParseException ex) {
+            LOG.log(Level.SEVERE, "Error while parsing filter definition.", ex);
+            CliManager.exitWithError("Can't parse filter definition: " + ex.getMessage(), repMan);
+        }
         return null;
     }
 
-    private ProcessingContainer loadContainerClass() {
+    private static ProcessingContainer loadContainerClass(File processingContainerFile) {
         try {
             // get class name
-            String className = exclusive.combination.processingContainerFile.getName()
-                    .substring(0, exclusive.combination.processingContainerFile
+            String className = processingContainerFile.getName()
+                    .substring(0, processingContainerFile
                             .getName().indexOf(".class"));
 
             // Convert directory of container File to a URL
-            URL url = exclusive.combination.processingContainerFile
+            URL url = processingContainerFile
                     .getAbsoluteFile().getParentFile().toURI().toURL();
             URL[] urls = new URL[]{url};
 
@@ -204,30 +653,39 @@ public class CliProcessing implements Callable<Void> {
         return null;
     }
 
-    private ProcessingContainer loadAndCompileContainerClass() throws IOException,
-            ClassNotFoundException, InstantiationException, IllegalAccessException {
-        // check if environment contains compiler classes
-        try {
-            Class.forName("com.sun.tools.javac.api.JavacTool");
-        } catch (ClassNotFoundException ex) {
-            LOG.log(Level.SEVERE, "Error loading java compiler.", ex);
-            System.err.println("Can't find java compiler. Please run with jdk environment. Exit.");
-            System.exit(-1);
-        }
-
+    /**
+     * Loads a container from java source. The bytecode is cached in the
+     * repository, keyed by the source and the ODV build, so the compiler is
+     * only needed if the source changed.
+     */
+    private static ProcessingContainer loadAndCompileContainerClass(File processingContainerFile,
+            CliRepositoryManager repMan) throws IOException, ClassNotFoundException,
+            InstantiationException, IllegalAccessException {
         // get class name
-        String className = exclusive.combination.processingContainerFile.getName()
-                .substring(0, exclusive.combination.processingContainerFile
+        String className = processingContainerFile.getName()
+                .substring(0, processingContainerFile
                         .getName().indexOf(".java"));
         System.out.println(className);
 
         String classSource = new String(Files.readAllBytes(Paths
-                .get(exclusive.combination.processingContainerFile.getAbsolutePath())));
+                .get(processingContainerFile.getAbsolutePath())));
+
+        File classCacheDir = repMan.getClassCacheDir();
+        File classDir = new File(classCacheDir, CliResultCache.keyOf(
+                classSource, CliManager.VERSION, buildFingerprint()));
+        if (new File(classDir, className.concat(".class")).exists()) {
+            repMan.writeLineToJournal("Bytecode cache hit for " + processingContainerFile.getName());
+            classDir.setLastModified(System.currentTimeMillis());
+        } else {
+            repMan.writeLineToJournal("Bytecode cache miss for " + processingContainerFile.getName());
+            compileContainerClass(className, classSource, classCacheDir, classDir);
+            pruneClassCache(classCacheDir);
+        }
 
-        // compile
-        Class aClass = CompilerUtils.CACHED_COMPILER
-                .loadFromJava(className, classSource);
-        Object importedRunContainer = aClass.newInstance();
+        // load from the cache, no compiler needed
+        ClassLoader cl = new URLClassLoader(new URL[]{classDir.toURI().toURL()},
+                CliProcessing.class.getClassLoader());
+        Object importedRunContainer = cl.loadClass(className).newInstance();
         if (importedRunContainer instanceof ProcessingContainer) {
             ProcessingContainer container = (ProcessingContainer) importedRunContainer;
             return container;
@@ -235,6 +693,91 @@ public class CliProcessing implements Callable<Void> {
         return null;
     }
 
+    /**
+     * Compiles the source into the class directory. The classes are written
+     * to a temporary directory first, so concurrent runs never see a partly
+     * written class directory.
+     */
+    private static void compileContainerClass(String className, String classSource,
+            File classCacheDir, File classDir) throws IOException, ClassNotFoundException {
+        // check if environment contains compiler classes
+        try {
+            Class.forName("com.sun.tools.javac.api.JavacTool");
+        } catch (ClassNotFoundException ex) {
+            LOG.log(Level.SEVERE, "Error loading java compiler.", ex);
+            System.err.println("Can't find java compiler. Please run with jdk environment. Exit.");
+            CliManager.exit(-1);
+        }
+
+        File tmpDir = Files.createTempDirectory(classCacheDir.toPath(), "compile").toFile();
+        try {
+            // compiles all classes of the source into tmpDir
+            CachedCompiler compiler = new CachedCompiler(null, tmpDir);
+            try {
+                compiler.loadFromJava(className, classSource);
+            } finally {
+                compiler.close();
+            }
+            try {
+                Files.move(tmpDir.toPath(), classDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                if (!classDir.isDirectory()) {
+                    throw ex;
+                }
+                // a concurrent run compiled the same source
+            }
+        } finally {
+            deleteRecursively(tmpDir);
+        }
+    }
+
+    /**
+     * Removes the least recently used class directories, so old builds and
+     * sources don't pile up in the repository. Hits refresh the last modified
+     * date of a class directory.
+     */
+    private static void pruneClassCache(File classCacheDir) {
+        File[] classDirs = classCacheDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                // skip running compilations
+                return pathname.isDirectory() && !pathname.getName().startsWith("compile");
+            }
+        });
+        if (classDirs == null || classDirs.length <= MAX_CACHED_CLASS_DIRS) {
+            return;
+        }
+        Arrays.sort(classDirs, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < classDirs.length - MAX_CACHED_CLASS_DIRS; i++) {
+            deleteRecursively(classDirs[i]);
+        }
+        LOG.log(Level.INFO, "Removed {0} cached class directories.", classDirs.length - MAX_CACHED_CLASS_DIRS);
+    }
+
+    /**
+     * @return description of the running ODV build, e.g. the jar, so cached
+     * bytecode is not linked against a different API
+     */
+    private static String buildFingerprint() {
+        try {
+            File location = new File(ProcessingContainer.class.getProtectionDomain()
+                    .getCodeSource().getLocation().toURI());
+            return location.getAbsolutePath() + ":" + location.length() + ":" + location.lastModified();
+        } catch (URISyntaxException | RuntimeException ex) {
+            return "unknown";
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
     private static final String PROCESSING_CONTAINER_SKELETON
             = "/**\n"
             + " * Copyright (C) 2019 Jens Heuschkel\n *\n"
@@ -271,6 +814,9 @@ public class CliProcessing implements Callable<Void> {
             + " * - Always sort your data before you add it to the slice list with .sort(new VaultEntryUtils())\n"
             + " * - The slices should be ordered by times.\n"
             + " * - Return null if a fatal error occurred.\n"
+            + " * - Override getInputFilter() to load only the data your filters can match.\n"
+            + " * - If every slice can be processed on its own, implement SliceProcessingContainer\n"
+            + " *   instead. Its slices are processed in parallel (see --workers).\n"
             + " * - Use the default Java logger with LOG.log() to trace your processing steps.\n"
             + " * - To precompile the processing class use \"javac -cp OpenDiabetesVault.jar CLASSNAME.java\" on the commandline.\n"
             + " *\n"
@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reader/writer lock of a repository across processes, based on a
+ * {@link FileLock} on a lock file in the .vault directory. Readers share the
+ * lock, so parallel processing jobs don't block each other. Writers wait for
+ * all readers and hold the lock exclusively.
+ * <p>
+ * There is one lock per lock file and process, since the operating system
+ * drops all locks of a process on a file if any channel to it is closed.
+ * <p>
+ * Within a process the lock is reentrant: a shared hold within an exclusive
+ * hold keeps the exclusive lock. An exclusive hold within a shared hold
+ * releases the shared lock before it waits for the exclusive lock, so two
+ * processes upgrading at the same time don't deadlock. The upgrade is not
+ * atomic, other writers may replace files in between. Since writers replace
+ * files by an atomic rename, an open file is never torn.
+ * <p>
+ * The lock is advisory. If the file system does not support locks, the
+ * repository is used without lock. Threadsafe.
+ *
+ * @author juehv
+ */
+class CliRepositoryLock {
+
+    private static final Logger LOG = Logger.getLogger(CliRepositoryLock.class.getName());
+    private static final Map<File, CliRepositoryLock> LOCKS = new HashMap<>();
+
+    private final File lockFile;
+    private RandomAccessFile file;
+    private FileLock lock;
+    private int sharedHolds;
+    private int exclusiveHolds;
+    private boolean unsupported;
+
+    private CliRepositoryLock(File lockFile) {
+        this.lockFile = lockFile;
+    }
+
+    /**
+     * @param lockFile lock file, created if needed
+     * @return lock of the file
+     */
+    static synchronized CliRepositoryLock of(File lockFile) {
+        File key;
+        try {
+            key = lockFile.getCanonicalFile();
+        } catch (IOException ex) {
+            key = lockFile.getAbsoluteFile();
+        }
+        return LOCKS.computeIfAbsent(key, CliRepositoryLock::new);
+    }
+
+    /**
+     * Waits until no other process writes to the repository.
+     *
+     * @return hold to release the lock
+     */
+    synchronized Hold acquireShared() {
+        sharedHolds++;
+        update();
+        return new Hold(false);
+    }
+
+    /**
+     * Waits until no other process reads or writes the repository.
+     *
+     * @return hold to release the lock
+     */
+    synchronized Hold acquireExclusive() {
+        exclusiveHolds++;
+        update();
+        return new Hold(true);
+    }
+
+    private synchronized void release(boolean exclusive) {
+        if (exclusive) {
+            exclusiveHolds--;
+        } else {
+            sharedHolds--;
+        }
+        update();
+    }
+
+    /**
+     * Brings the file lock in line with the holds of this process.
+     */
+    private void update() {
+        boolean wantExclusive = exclusiveHolds > 0;
+        boolean wantShared = !wantExclusive && sharedHolds > 0;
+        if (unsupported || lock != null && lock.isValid()
+                && (wantExclusive && !lock.isShared() || wantShared && lock.isShared())) {
+            return;
+        }
+        try {
+            if (lock != null) {
+                lock.release();
+                lock = null;
+            }
+            if (!wantExclusive && !wantShared) {
+                file.close();
+                file = null;
+                return;
+            }
+            if (file == null) {
+                file = new RandomAccessFile(lockFile, "rw");
+            }
+            FileChannel channel = file.getChannel();
+            lock = channel.tryLock(0, Long.MAX_VALUE, wantShared);
+            if (lock == null) {
+                LOG.log(Level.INFO, "Waiting for the {0} lock of {1}, another process uses the repository.",
+                        new Object[]{wantShared ? "shared" : "exclusive", lockFile.getParent()});
+                lock = channel.lock(0, Long.MAX_VALUE, wantShared);
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Can't lock repository. Continue without lock.", ex);
+            unsupported = true;
+        }
+    }
+
+    /**
+     * One hold of the lock. Closing it releases this hold.
+     */
+    final class Hold implements AutoCloseable {
+
+        private final boolean exclusive;
+        private boolean released;
+
+        private Hold(boolean exclusive) {
+            this.exclusive = exclusive;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(exclusive);
+            }
+        }
+    }
+}
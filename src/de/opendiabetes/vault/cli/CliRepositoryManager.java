@@ -16,19 +16,35 @@
  */
 package de.opendiabetes.vault.cli;
 
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
 import de.opendiabetes.vault.data.container.SliceEntry;
 import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.data.container.VaultEntryDataset;
+import de.opendiabetes.vault.data.container.VaultEntryTypeIndex;
 import de.opendiabetes.vault.exporter.ExporterOptions;
 import de.opendiabetes.vault.exporter.FileExporter;
+import de.opendiabetes.vault.exporter.StreamExporter;
 import de.opendiabetes.vault.exporter.json.SliceEntryJsonFileExporter;
 import de.opendiabetes.vault.exporter.json.VaultEntryJsonFileExporter;
+import de.opendiabetes.vault.exporter.json.VaultEntryJsonStreamExporter;
 import de.opendiabetes.vault.importer.ImporterOptions;
+import de.opendiabetes.vault.importer.ReadPredicate;
 import de.opendiabetes.vault.importer.json.SliceEntryJsonFileImporter;
 import de.opendiabetes.vault.importer.json.VaultEntryJsonFileImporter;
 import de.opendiabetes.vault.util.EasyFormatter;
+import de.opendiabetes.vault.util.MetricsRegistry;
+import de.opendiabetes.vault.util.PipelineEvent;
+import de.opendiabetes.vault.util.PipelineEvents;
+import de.opendiabetes.vault.util.PipelineStage;
 import de.opendiabetes.vault.util.TimestampUtils;
 import de.opendiabetes.vault.util.VaultEntryUtils;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
@@ -37,29 +53,47 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 /**
  * Class to manage data-set repository. This class is not threadsafe at all.
+ * <p>
+ * Several processes may use a repository at the same time. Readers hold a
+ * shared lock while they open data files, see {@link CliRepositoryLock}.
+ * Writers are serialized by a second lock, which they hold from reading the
+ * old data until the new data is in place. They write to temporary files and
+ * take the exclusive lock only to rename them over the old files, so readers
+ * see either the old or the new data and are blocked only for the renames.
  *
  * @author juehv
  */
 public class CliRepositoryManager {
 
-    private static CliRepositoryManager INSTANCE;
+    // repositories by canonical path, more than one in long running processes
+    private static final Map<String, CliRepositoryManager> INSTANCES = new HashMap<>();
+    private static CliDatasetCache datasetCache;
     public static final String COMPLETE_DATA = "all";
 
     private static final Logger LOG = Logger.getLogger(CliVaultInit.class.getName());
@@ -68,13 +102,20 @@ public class CliRepositoryManager {
     public static final String DIR_EXPORT = "export";
     public static final String DIR_FILTER = "filter";
     public static final String DIR_PLOT = "plots";
+    public static final String DIR_CLASSES = "classes";
     public static final String FILE_JOURNAL = "journal.txt";
     public static final String FILE_DATA = "data.json.gz";
+    public static final String FILE_DATA_INDEX = "data.index.gz";
+    public static final String FILE_LOCK = "repository.lock";
+    public static final String FILE_WRITE_LOCK = "write.lock";
+    public static final String TMP_EXTENSION = ".tmp";
     public static final String TAG_EXTENSION = ".tag.gz";
     public static final String TAG_SLICE_EXTENSION = ".tag-slices.gz";
+    public static final String TAG_INDEX_EXTENSION = ".tag-index.gz";
+    public static final String TAG_DEFINITION_EXTENSION = ".tag-definition.json";
     public static final String REPOSITORY_VERSION = "0.3";
 
-    private final FileWriter journalWriter;
+    private FileWriter journalWriter;
     private final File vaultDir;
     private final File importDir;
     private final File exportDir;
@@ -82,6 +123,12 @@ public class CliRepositoryManager {
     private final File plotDir;
     private final File journalFile;
     private final File dataFile;
+    // shared by readers, exclusive while files are replaced
+    private final CliRepositoryLock lock;
+    // exclusive for writers, from reading the old data to replacing it.
+    // Methods hold the locks in try-with-resources without referencing the
+    // holds, hence their @SuppressWarnings("try").
+    private final CliRepositoryLock writeLock;
 
     private CliRepositoryManager(File vaultDir, File importDir, File exportDir, File filterDir, File plotDir, File journalFile, File dataFile) throws IOException {
         this.journalWriter = new FileWriter(journalFile, true);
@@ -92,6 +139,8 @@ public class CliRepositoryManager {
         this.plotDir = plotDir;
         this.journalFile = journalFile;
         this.dataFile = dataFile;
+        this.lock = CliRepositoryLock.of(new File(vaultDir, FILE_LOCK));
+        this.writeLock = CliRepositoryLock.of(new File(vaultDir, FILE_WRITE_LOCK));
     }
 
     //**************
@@ -162,65 +211,113 @@ public class CliRepositoryManager {
         }
 
         // create instance and journal
+        CliRepositoryManager instance;
         try {
-            INSTANCE = new CliRepositoryManager(vaultDir, importDir, exportDir,
+            instance = new CliRepositoryManager(vaultDir, importDir, exportDir,
                     filterDir, plotDir, journalFile, dataFile);
 
-            INSTANCE.writeLineToJournal("OpenDiabetes Vault Repository Journal");
-            INSTANCE.writeLineToJournal("-------------------------------------");
-            INSTANCE.writeLineToJournal("Repository created in version " + REPOSITORY_VERSION);
+            instance.writeLineToJournal("OpenDiabetes Vault Repository Journal");
+            instance.writeLineToJournal("-------------------------------------");
+            instance.writeLineToJournal("Repository created in version " + REPOSITORY_VERSION);
+            INSTANCES.put(targetDir.getCanonicalPath(), instance);
         } catch (IOException ex) {
             LOG.log(Level.SEVERE, "Error writing journal file.", ex);
             return null;
         }
 
-        return INSTANCE;
+        return instance;
     }
 
     public static CliRepositoryManager getCurrentRepository() {
         LOG.info("Try to open repositoy");
-        if (INSTANCE == null) {
-            // prepare
-            File targetDir = new File(".");
-            File vaultDir = new File(targetDir.getAbsolutePath().concat(File.separator).concat(DIR_VAULT));
-            File importDir = new File(targetDir.getAbsolutePath().concat(File.separator).concat(DIR_IMPORT));
-            File exportDir = new File(targetDir.getAbsolutePath().concat(File.separator).concat(DIR_EXPORT));
-            File filterDir = new File(targetDir.getAbsolutePath().concat(File.separator).concat(DIR_FILTER));
-            File plotDir = new File(targetDir.getAbsolutePath().concat(File.separator).concat(DIR_PLOT));
-            File journalFile = new File(vaultDir.getAbsolutePath().concat(File.separator).concat(FILE_JOURNAL));
-            File dataFile = new File(vaultDir.getAbsolutePath().concat(File.separator).concat(FILE_DATA));
-
-            // check repository structure
-            if (!vaultDir.exists() || !importDir.exists() || !exportDir.exists()
-                    || !filterDir.exists() || !plotDir.exists() || !journalFile.exists()) {
-                LOG.severe("Not a OpenDiabetesVault repository. Create repository with init fist.");
-                return null;
-            }
+        File targetDir = CliManager.resolveFile(".");
+        String key;
+        try {
+            key = targetDir.getCanonicalPath();
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, "Can't resolve repository path.", ex);
+            return null;
+        }
 
-            if (!vaultDir.canWrite() || !importDir.canWrite() || !exportDir.canWrite()
-                    || !filterDir.canWrite() || !plotDir.canWrite()
-                    || !journalFile.canWrite()) {
-                LOG.severe("No write permission for this repository.");
-                return null;
-            }
+        // prepare
+        File vaultDir = new File(targetDir.getAbsolutePath().concat(File.separator).concat(DIR_VAULT));
+        File importDir = new File(targetDir.getAbsolutePath().concat(File.separator).concat(DIR_IMPORT));
+        File exportDir = new File(targetDir.getAbsolutePath().concat(File.separator).concat(DIR_EXPORT));
+        File filterDir = new File(targetDir.getAbsolutePath().concat(File.separator).concat(DIR_FILTER));
+        File plotDir = new File(targetDir.getAbsolutePath().concat(File.separator).concat(DIR_PLOT));
+        File journalFile = new File(vaultDir.getAbsolutePath().concat(File.separator).concat(FILE_JOURNAL));
+        File dataFile = new File(vaultDir.getAbsolutePath().concat(File.separator).concat(FILE_DATA));
 
-            if (!vaultDir.isDirectory() || !importDir.isDirectory()
-                    || !exportDir.isDirectory() || !filterDir.isDirectory()
-                    || !plotDir.isDirectory()) {
-                LOG.severe("Some directories are corrupted.");
-                return null;
-            }
+        // check repository structure, also for known repositories as
+        // they may have been removed meanwhile
+        if (!vaultDir.exists() || !importDir.exists() || !exportDir.exists()
+                || !filterDir.exists() || !plotDir.exists() || !journalFile.exists()) {
+            LOG.severe("Not a OpenDiabetesVault repository. Create repository with init fist.");
+            INSTANCES.remove(key);
+            return null;
+        }
 
-            // create journal writer and object
+        if (!vaultDir.canWrite() || !importDir.canWrite() || !exportDir.canWrite()
+                || !filterDir.canWrite() || !plotDir.canWrite()
+                || !journalFile.canWrite()) {
+            LOG.severe("No write permission for this repository.");
+            INSTANCES.remove(key);
+            return null;
+        }
+
+        if (!vaultDir.isDirectory() || !importDir.isDirectory()
+                || !exportDir.isDirectory() || !filterDir.isDirectory()
+                || !plotDir.isDirectory()) {
+            LOG.severe("Some directories are corrupted.");
+            INSTANCES.remove(key);
+            return null;
+        }
+
+        // create journal writer and object
+        CliRepositoryManager instance = INSTANCES.get(key);
+        if (instance == null) {
             try {
-                INSTANCE = new CliRepositoryManager(vaultDir, importDir, exportDir,
+                instance = new CliRepositoryManager(vaultDir, importDir, exportDir,
                         filterDir, plotDir, journalFile, dataFile);
+                INSTANCES.put(key, instance);
             } catch (IOException ex) {
                 LOG.log(Level.SEVERE, "Error writing journal file.", ex);
                 return null;
             }
         }
-        return INSTANCE;
+        return instance;
+    }
+
+    /**
+     * @return repository of the current working directory if it was opened
+     * before, without checking it again
+     */
+    static CliRepositoryManager getOpenedRepository() {
+        try {
+            return INSTANCES.get(CliManager.resolveFile(".").getCanonicalPath());
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Keeps decoded data of the repositories in memory, see
+     * {@link CliDatasetCache}. Meant for long running processes which execute
+     * many commands. Keeps an already enabled cache.
+     *
+     * @param maxEntries upper bound for the number of cached VaultEntries
+     */
+    static synchronized void enableDatasetCache(long maxEntries) {
+        if (datasetCache == null) {
+            datasetCache = new CliDatasetCache(maxEntries);
+        }
+    }
+
+    /**
+     * @return description of the dataset cache or null if it is disabled
+     */
+    static String describeDatasetCache() {
+        return datasetCache != null ? datasetCache.describe() : null;
     }
 
     public void saveFilesToImportFolder(List<File> importFile) throws FileNotFoundException, IOException {
@@ -299,6 +396,10 @@ public class CliRepositoryManager {
             sb.append(" - ");
             sb.append(line);
             sb.append("\n");
+            if (journalWriter == null) {
+                // reopened after close by long running processes
+                journalWriter = new FileWriter(journalFile, true);
+            }
             journalWriter.write(sb.toString());
             journalWriter.flush();
         } catch (IOException ex) {
@@ -307,7 +408,9 @@ public class CliRepositoryManager {
     }
 
     public String readJournal() throws IOException {
-        journalWriter.flush();
+        if (journalWriter != null) {
+            journalWriter.flush();
+        }
 
         BufferedReader br = new BufferedReader(new FileReader(journalFile));
 
@@ -322,7 +425,10 @@ public class CliRepositoryManager {
 
     public void closeJournal() {
         try {
-            journalWriter.close();
+            if (journalWriter != null) {
+                journalWriter.close();
+                journalWriter = null;
+            }
         } catch (IOException ex) {
             LOG.log(Level.SEVERE, "Error while closing journal", ex);
         }
@@ -331,29 +437,188 @@ public class CliRepositoryManager {
     // endregion
     //**************
     // region Master (complete dataset) management
-    public void mergeDataIntoMaster(List<VaultEntry> data) throws IllegalAccessException {
+    @SuppressWarnings("try")
+    public void mergeDataIntoMaster(List<VaultEntry> data) throws IllegalAccessException, IOException {
+        try (CliRepositoryLock.Hold writing = writeLock.acquireExclusive()) {
+            mergeDataIntoMasterLocked(data);
+        }
+    }
+
+    @SuppressWarnings("try")
+    private void mergeDataIntoMasterLocked(List<VaultEntry> data) throws IllegalAccessException, IOException {
         LOG.info("Merge data to repository.");
+        long start = MetricsRegistry.start();
+        PipelineEvent event = PipelineEvents.begin(PipelineStage.MERGE, COMPLETE_DATA, null);
         // read old dataset
         List<VaultEntry> entries = getDataFromMaster();
 
         // merge data
         entries.addAll(data);
+        long stageStart = MetricsRegistry.start();
+        PipelineEvent stageEvent = PipelineEvents.begin(PipelineStage.DEDUP, COMPLETE_DATA, null);
+        int mergedSize = entries.size();
         entries = VaultEntryUtils.removeDublicates(entries);
+        stageEvent.commit(mergedSize, entries.size(), -1);
+        MetricsRegistry.stop("repository.dedup", stageStart, mergedSize);
+        stageStart = MetricsRegistry.start();
+        stageEvent = PipelineEvents.begin(PipelineStage.SORT, COMPLETE_DATA, null);
         entries.sort(new VaultEntryUtils());
+        stageEvent.commit(entries.size(), entries.size(), -1);
+        MetricsRegistry.stop("repository.sort", stageStart, entries.size());
+
+        // write new dataset next to the old one and replace it
+        stageEvent = PipelineEvents.begin(PipelineStage.TAG_WRITE, COMPLETE_DATA, null);
+        File tmpFile = newTempFile(dataFile);
+        File tmpIndexFile = null;
+        try {
+            VaultEntryJsonFileExporter exporter = new VaultEntryJsonFileExporter(new ExporterOptions());
+            if (exporter.exportDataToFile(tmpFile.getAbsolutePath(), entries, true) != FileExporter.RESULT_OK) {
+                throw new IOException("Can't write repository data. Repository is unchanged.");
+            }
+            File indexFile = new File(vaultDir, FILE_DATA_INDEX);
+            tmpIndexFile = writeTypeIndex(entries, tmpFile, indexFile);
+            try (CliRepositoryLock.Hold replacing = lock.acquireExclusive()) {
+                replaceAtomically(tmpFile, dataFile);
+                replaceIndex(tmpIndexFile, indexFile);
+            }
+        } finally {
+            deleteTempFiles(tmpFile, tmpIndexFile);
+        }
+        if (stageEvent.isRecording()) {
+            stageEvent.commit(entries.size(), -1, dataFile.length());
+        }
+        if (datasetCache != null) {
+            datasetCache.putWritten(dataFile.getAbsolutePath(), snapshotFingerprintOf(COMPLETE_DATA),
+                    Collections.singletonList(entries));
+        }
+        event.commit(data.size(), entries.size(), -1);
+        MetricsRegistry.stop("repository.merge", start, data.size());
+    }
+
+    /**
+     * @return true if the complete dataset contains data
+     */
+    public boolean hasMasterData() {
+        return dataFile.exists() && dataFile.length() > 0;
+    }
 
-        // write new dataset
-        dataFile.delete();
-        VaultEntryJsonFileExporter exporter = new VaultEntryJsonFileExporter(new ExporterOptions());
-        exporter.exportDataToFile(dataFile.getAbsolutePath(), entries, true);
+    /**
+     * Writes a stream of entries as complete dataset of an empty repository.
+     * The entries are never in memory at once, so the dataset may be larger
+     * than the heap. Duplicates are removed like on a merge. The type index
+     * is rebuilt on demand.
+     *
+     * @param data entries sorted by timestamp
+     * @return number of written entries
+     * @throws IOException if the data can't be written
+     */
+    @SuppressWarnings("try")
+    public long streamDataIntoEmptyMaster(Iterator<VaultEntry> data) throws IOException {
+        try (CliRepositoryLock.Hold writing = writeLock.acquireExclusive()) {
+            return streamDataIntoEmptyMasterLocked(data);
+        }
+    }
+
+    @SuppressWarnings("try")
+    private long streamDataIntoEmptyMasterLocked(Iterator<VaultEntry> data) throws IOException {
+        if (hasMasterData()) {
+            throw new IllegalStateException("PROGRAMMING ERROR: Repository already contains data.");
+        }
+        LOG.info("Stream data to repository.");
+        long start = MetricsRegistry.start();
+        PipelineEvent event = PipelineEvents.begin(PipelineStage.TAG_WRITE, COMPLETE_DATA, null);
+        File tmpFile = newTempFile(dataFile);
+        long entryCount;
+        try (StreamExporter exporter = new VaultEntryJsonStreamExporter(new ExporterOptions(),
+                new GZIPOutputStream(new FileOutputStream(tmpFile)))) {
+            // duplicates have the same timestamp
+            List<VaultEntry> sameTimestamp = new ArrayList<>();
+            while (data.hasNext()) {
+                VaultEntry item = data.next();
+                if (!sameTimestamp.isEmpty()
+                        && !sameTimestamp.get(0).getTimestamp().equals(item.getTimestamp())) {
+                    for (VaultEntry distinctItem : VaultEntryUtils.removeDublicates(sameTimestamp)) {
+                        exporter.write(distinctItem);
+                    }
+                    sameTimestamp.clear();
+                }
+                sameTimestamp.add(item);
+            }
+            for (VaultEntry distinctItem : VaultEntryUtils.removeDublicates(sameTimestamp)) {
+                exporter.write(distinctItem);
+            }
+            entryCount = exporter.getEntryCount();
+        } catch (IOException | RuntimeException ex) {
+            tmpFile.delete();
+            throw ex;
+        }
+        try (CliRepositoryLock.Hold replacing = lock.acquireExclusive()) {
+            replaceAtomically(tmpFile, dataFile);
+            replaceIndex(null, new File(vaultDir, FILE_DATA_INDEX));
+        } finally {
+            deleteTempFiles(tmpFile);
+        }
+        if (event.isRecording()) {
+            event.commit(entryCount, -1, dataFile.length());
+        }
+        MetricsRegistry.stop("repository.write_master", start, entryCount);
+        return entryCount;
     }
 
     public List<VaultEntry> getDataFromMaster() throws IllegalAccessException {
-        LOG.info("Read complete repository.");
-        List<VaultEntry> entries = new ArrayList<>();
-        if (dataFile.exists() && dataFile.length() > 0) {
-            VaultEntryJsonFileImporter importer = new VaultEntryJsonFileImporter(new ImporterOptions());
+        return getDataFromMaster(ReadPredicate.all());
+    }
+
+    /**
+     * Reads the entries of the complete dataset which match the predicate.
+     * Reading stops after the predicate's time range since the master is
+     * sorted.
+     *
+     * @param predicate pushed down predicate
+     * @return matching entries
+     * @throws IllegalAccessException if the data file is not readable
+     */
+    @SuppressWarnings("try")
+    public List<VaultEntry> getDataFromMaster(ReadPredicate predicate) throws IllegalAccessException {
+        try (CliRepositoryLock.Hold reading = lock.acquireShared()) {
+            return getDataFromMasterLocked(predicate);
+        }
+    }
+
+    private List<VaultEntry> getDataFromMasterLocked(ReadPredicate predicate) throws IllegalAccessException {
+        String fingerprint = datasetCache != null ? snapshotFingerprintOf(COMPLETE_DATA) : null;
+        if (fingerprint != null) {
+            List<List<VaultEntry>> cached = datasetCache.get(dataFile.getAbsolutePath(), predicate, fingerprint);
+            if (cached != null) {
+                LOG.log(Level.INFO, "Got repository from dataset cache: {0}", predicate);
+                return cached.get(0);
+            }
+        }
+        List<VaultEntry> result = readDataFromMaster(predicate);
+        if (fingerprint != null) {
+            datasetCache.put(dataFile.getAbsolutePath(), predicate, fingerprint,
+                    Collections.singletonList(result));
+        }
+        return result;
+    }
+
+    private List<VaultEntry> readDataFromMaster(ReadPredicate predicate) throws IllegalAccessException {
+        LOG.log(Level.INFO, "Read repository: {0}", predicate);
+        long start = MetricsRegistry.start();
+        PipelineEvent event = PipelineEvents.begin(PipelineStage.TAG_READ, COMPLETE_DATA, predicate);
+        VaultEntryDataset entries = new VaultEntryDataset();
+        if (dataFile.exists() && dataFile.length() > 0 && !predicate.isEmpty()) {
+            VaultEntryJsonFileImporter importer = new VaultEntryJsonFileImporter(
+                    new ImporterOptions(), predicate, true);
             entries.addAll(importer.importDataFromFile(dataFile.getAbsolutePath()));
+            if (predicate.isAll()) {
+                entries.attachTypeIndex(readTypeIndex(dataFile, new File(vaultDir, FILE_DATA_INDEX)));
+            }
         }
+        if (event.isRecording()) {
+            event.commit(-1, entries.size(), dataFile.length());
+        }
+        MetricsRegistry.stop("repository.read_master", start, entries.size());
         return entries;
     }
 
@@ -398,7 +663,47 @@ public class CliRepositoryManager {
     }
 
     List<List<VaultEntry>> getDataFromTag(String input) throws IllegalAccessException {
-        LOG.info("Read tag repository");
+        return getDataFromTag(input, ReadPredicate.all());
+    }
+
+    /**
+     * Reads the slices of a tag. Only entries matching the predicate are read.
+     * Slices which do not overlap the predicate's time range stay empty, so
+     * the slice order and count is the same as without predicate.
+     *
+     * @param input name of the tag
+     * @param predicate pushed down predicate
+     * @return slices of the tag or null if the tag can't be read
+     * @throws IllegalAccessException if the tag file is not readable
+     */
+    @SuppressWarnings("try")
+    List<List<VaultEntry>> getDataFromTag(String input, ReadPredicate predicate) throws IllegalAccessException {
+        try (CliRepositoryLock.Hold reading = lock.acquireShared()) {
+            return getDataFromTagLocked(input, predicate);
+        }
+    }
+
+    private List<List<VaultEntry>> getDataFromTagLocked(String input, ReadPredicate predicate) throws IllegalAccessException {
+        String fingerprint = datasetCache != null ? snapshotFingerprintOf(input) : null;
+        String tagPath = new File(vaultDir, input.concat(TAG_EXTENSION)).getAbsolutePath();
+        if (fingerprint != null) {
+            List<List<VaultEntry>> cached = datasetCache.get(tagPath, predicate, fingerprint);
+            if (cached != null) {
+                LOG.log(Level.INFO, "Got tag from dataset cache: {0}", predicate);
+                return cached;
+            }
+        }
+        List<List<VaultEntry>> result = readDataFromTag(input, predicate);
+        if (fingerprint != null) {
+            datasetCache.put(tagPath, predicate, fingerprint, result);
+        }
+        return result;
+    }
+
+    private List<List<VaultEntry>> readDataFromTag(String input, ReadPredicate predicate) throws IllegalAccessException {
+        LOG.log(Level.INFO, "Read tag repository: {0}", predicate);
+        long start = MetricsRegistry.start();
+        PipelineEvent event = PipelineEvents.begin(PipelineStage.TAG_READ, input, predicate);
         List<List<VaultEntry>> returnValue = new ArrayList<>();
 
         // get the data
@@ -408,11 +713,20 @@ public class CliRepositoryManager {
             return null;
         }
 
-        List<VaultEntry> entries = new ArrayList<>();
-        if (tagFile.length() > 0) {
-            VaultEntryJsonFileImporter importer = new VaultEntryJsonFileImporter(new ImporterOptions());
+        VaultEntryDataset entries = new VaultEntryDataset();
+        VaultEntryTypeIndex typeIndex = null;
+        if (tagFile.length() > 0 && !predicate.isEmpty()) {
+            // tag data is sorted by createTagFromData
+            VaultEntryJsonFileImporter importer = new VaultEntryJsonFileImporter(
+                    new ImporterOptions(), predicate, true);
             entries.addAll(importer.importDataFromFile(tagFile.getAbsolutePath()));
             LOG.info("Got data from tag file.");
+            if (predicate.isAll()) {
+                typeIndex = readTypeIndex(tagFile, new File(vaultDir, input.concat(TAG_INDEX_EXTENSION)));
+                if (!entries.attachTypeIndex(typeIndex)) {
+                    typeIndex = null;
+                }
+            }
         }
 
         // get the slices
@@ -420,6 +734,10 @@ public class CliRepositoryManager {
         if (!tagSliceFile.exists() || !tagSliceFile.canRead()) {
             LOG.log(Level.WARNING, "Can't read slice tag file: {0}. No slicing.", tagFile.getName());
             returnValue.add(entries);
+            if (event.isRecording()) {
+                event.commit(-1, entries.size(), tagFile.length());
+            }
+            MetricsRegistry.stop("repository.read_tag", start, entries.size());
             return returnValue;
         }
 
@@ -427,30 +745,470 @@ public class CliRepositoryManager {
             SliceEntryJsonFileImporter importer = new SliceEntryJsonFileImporter(new ImporterOptions());
             List<SliceEntry> slices = importer.importDataFromFile(tagSliceFile.getAbsolutePath());
             LOG.info("Got slices from slice file. Slicing ...");
+            returnValue = sliceEntries(entries, typeIndex, slices, predicate);
+        }
 
-            // slicing
-            for (SliceEntry slice : slices) {
-                List<VaultEntry> tmpSlice = new ArrayList<>();
-                // create start and end point with +/- 1 minute to use .after & .before
-                Date startTimestamp = TimestampUtils.addMinutesToTimestamp(
-                        TimestampUtils.createCleanTimestamp(slice.startTimestamp), -1);
-                Date endTimestamp = TimestampUtils.addMinutesToTimestamp(startTimestamp,
-                        slice.durationInMinutes + 2);
-                for (VaultEntry entry : entries) {
-                    Date entryTimestamp = TimestampUtils.createCleanTimestamp(entry.getTimestamp());
-
-                    if (entryTimestamp.after(startTimestamp)
-                            && entryTimestamp.before(endTimestamp)) {
-                        tmpSlice.add(entry);
-                    }
-                }
+        if (event.isRecording()) {
+            event.commit(-1, entries.size(), tagFile.length());
+        }
+        MetricsRegistry.stop("repository.read_tag", start, entries.size());
+        return returnValue; // returns empty list on error of slicing.
+    }
+
+    /**
+     * Cuts the slices out of the sorted entries of a tag. Slices which do not
+     * overlap the predicate's time range stay empty.
+     *
+     * @param entries sorted entries of the tag
+     * @param typeIndex type index of the entries or null
+     * @param slices slices of the tag in the order of the slice file
+     * @param predicate predicate the entries were read with
+     * @return entries of each slice
+     */
+    private static List<List<VaultEntry>> sliceEntries(List<VaultEntry> entries, VaultEntryTypeIndex typeIndex,
+            List<SliceEntry> slices, ReadPredicate predicate) {
+        List<List<VaultEntry>> returnValue = new ArrayList<>();
+        int skippedSlices = 0;
+        for (SliceEntry slice : slices) {
+            VaultEntryDataset tmpSlice = new VaultEntryDataset();
+            // create start and end point with +/- 1 minute to use .after & .before
+            Date startTimestamp = TimestampUtils.addMinutesToTimestamp(
+                    TimestampUtils.createCleanTimestamp(slice.startTimestamp), -1);
+            Date endTimestamp = TimestampUtils.addMinutesToTimestamp(startTimestamp,
+                    slice.durationInMinutes + 2);
+            if (!predicate.overlaps(startTimestamp, endTimestamp)) {
+                skippedSlices++;
                 returnValue.add(tmpSlice);
+                continue;
+            }
+
+            // entries are sorted, so the slice is the range between the
+            // first entry after start and the first entry not before end
+            int sliceStart = firstIndexAfter(entries, startTimestamp);
+            int sliceEnd = sliceStart;
+            while (sliceEnd < entries.size() && TimestampUtils.createCleanTimestamp(
+                    entries.get(sliceEnd).getTimestamp()).before(endTimestamp)) {
+                sliceEnd++;
             }
+            tmpSlice.addAll(entries.subList(sliceStart, sliceEnd));
+            if (typeIndex != null) {
+                tmpSlice.attachTypeIndex(typeIndex.subIndex(sliceStart, sliceEnd));
+            }
+            returnValue.add(tmpSlice);
+        }
+        if (skippedSlices > 0) {
+            LOG.log(Level.INFO, "Skipped {0} slices outside of the read predicate.", skippedSlices);
         }
+        return returnValue;
+    }
 
-        return returnValue; // returns empty list on error of slicing.
+    /**
+     * Opens a reader which returns the slices of a tag one at a time, see
+     * {@link CliTagReader}. The complete dataset has no slices and is returned
+     * as one slice. The reader keeps reading the files it opened, even if a
+     * writer replaces them meanwhile.
+     *
+     * @param input name of the tag or {@link #COMPLETE_DATA}
+     * @param predicate pushed down predicate
+     * @return reader or null if the input can't be read
+     * @throws IOException if the data file can't be opened
+     * @throws IllegalAccessException if the slice file is not readable
+     */
+    @SuppressWarnings("try")
+    CliTagReader openTagReader(String input, ReadPredicate predicate) throws IOException, IllegalAccessException {
+        try (CliRepositoryLock.Hold reading = lock.acquireShared()) {
+            return openTagReaderLocked(input, predicate);
+        }
+    }
+
+    private CliTagReader openTagReaderLocked(String input, ReadPredicate predicate) throws IOException, IllegalAccessException {
+        LOG.log(Level.INFO, "Stream tag repository: {0}", predicate);
+        if (input.equalsIgnoreCase(COMPLETE_DATA)) {
+            if (!dataFile.exists() || !dataFile.canRead()) {
+                LOG.log(Level.SEVERE, "Can't read data file: {0}", dataFile.getName());
+                return null;
+            }
+            return new CliTagReader(dataFile, null, predicate);
+        }
+        File tagFile = new File(vaultDir, input.concat(TAG_EXTENSION));
+        if (!tagFile.exists() || !tagFile.canRead()) {
+            LOG.log(Level.SEVERE, "Can't read tag file: {0}", tagFile.getName());
+            return null;
+        }
+        File tagSliceFile = new File(vaultDir, input.concat(TAG_SLICE_EXTENSION));
+        List<SliceEntry> slices = null;
+        if (!tagSliceFile.exists() || !tagSliceFile.canRead()) {
+            LOG.log(Level.WARNING, "Can't read slice tag file: {0}. No slicing.", tagFile.getName());
+        } else if (tagSliceFile.length() > 0) {
+            slices = new SliceEntryJsonFileImporter(new ImporterOptions())
+                    .importDataFromFile(tagSliceFile.getAbsolutePath());
+        } else {
+            slices = new ArrayList<>();
+        }
+        return new CliTagReader(tagFile, slices, predicate);
+    }
+
+    /**
+     * Opens a writer which writes a tag one slice at a time, see
+     * {@link CliTagWriter}. The tag is replaced on
+     * {@link #commitTag(de.opendiabetes.vault.cli.CliTagWriter, java.lang.String)}.
+     *
+     * @param targetTag name of the tag
+     * @return writer
+     * @throws IOException if the temporary files can't be created
+     */
+    CliTagWriter openTagWriter(String targetTag) throws IOException {
+        File targetFile = new File(vaultDir, targetTag.concat(TAG_EXTENSION));
+        File targetSliceFile = new File(vaultDir, targetTag.concat(TAG_SLICE_EXTENSION));
+        File tmpFile = newTempFile(targetFile);
+        File tmpSliceFile = newTempFile(targetSliceFile);
+        try {
+            return new CliTagWriter(targetTag, targetFile, targetSliceFile, tmpFile, tmpSliceFile);
+        } catch (IOException | RuntimeException ex) {
+            deleteTempFiles(tmpFile, tmpSliceFile);
+            throw ex;
+        }
     }
 
+    /**
+     * Replaces the tag with the content of a tag writer.
+     *
+     * @param writer writer opened by {@link #openTagWriter(java.lang.String)}
+     * @param targetTag name of the tag
+     * @throws IOException if the tag can't be written
+     */
+    @SuppressWarnings("try")
+    void commitTag(CliTagWriter writer, String targetTag) throws IOException {
+        try (CliRepositoryLock.Hold writing = writeLock.acquireExclusive()) {
+            writer.finish();
+            try (CliRepositoryLock.Hold replacing = lock.acquireExclusive()) {
+                writer.commit();
+                // the type index is built from the data in memory, which a
+                // stream never has. It is rebuilt on demand.
+                replaceIndex(null, new File(vaultDir, targetTag.concat(TAG_INDEX_EXTENSION)));
+                // a recorded definition does not describe the new content
+                new File(vaultDir, targetTag.concat(TAG_DEFINITION_EXTENSION)).delete();
+            }
+        }
+        writeLineToJournal("Created new tag: " + targetTag);
+        writeLineToJournal("Created new slice file for tag: " + targetTag);
+    }
+
+    /**
+     * Writes the type index of the given data to a temporary file, which
+     * replaces the index together with the data file, see
+     * {@link #replaceIndex(java.io.File, java.io.File)}. Length and
+     * modification time of the data file are stored to detect stale indices.
+     * Renames and copies with attributes keep both.
+     *
+     * @param data data of the data file
+     * @param dataFile new data file
+     * @param indexFile index file to replace
+     * @return temporary index file or null if the index can't be written
+     */
+    private File writeTypeIndex(List<VaultEntry> data, File dataFile, File indexFile) {
+        File tmpIndexFile = null;
+        try {
+            tmpIndexFile = newTempFile(indexFile);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(tmpIndexFile))))) {
+                out.writeLong(dataFile.length());
+                out.writeLong(dataFile.lastModified());
+                VaultEntryTypeIndex.build(data).writeTo(out);
+            }
+            return tmpIndexFile;
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Can't write type index. Index will be rebuilt on demand.", ex);
+            deleteTempFiles(tmpIndexFile);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the index of a data file, which was just replaced. Without a
+     * new index the old one is removed, it would describe the old data.
+     *
+     * @param tmpIndexFile new index or null
+     * @param indexFile index of the data file
+     */
+    private static void replaceIndex(File tmpIndexFile, File indexFile) {
+        try {
+            if (tmpIndexFile != null) {
+                replaceAtomically(tmpIndexFile, indexFile);
+                return;
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Can't replace type index. Index will be rebuilt on demand.", ex);
+        }
+        indexFile.delete();
+    }
+
+    /**
+     * Creates a temporary file next to the target, so it can replace the
+     * target by a rename. The name is unique, so processes writing the same
+     * target don't overwrite each other's data.
+     *
+     * @param target file to replace later
+     * @return new empty file
+     * @throws IOException if the file can't be created
+     */
+    static File newTempFile(File target) throws IOException {
+        return File.createTempFile(target.getName().concat("."), TMP_EXTENSION, target.getParentFile());
+    }
+
+    /**
+     * Replaces the target by the source with an atomic rename. Readers which
+     * opened the target before keep reading the old data, later readers read
+     * the new data. None of them sees a missing or half written file.
+     *
+     * @param source new content
+     * @param target file to replace
+     * @throws IOException if the file can't be replaced
+     */
+    static void replaceAtomically(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            LOG.log(Level.WARNING, "File system can't replace files atomically: {0}", target);
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Copies a file to a new temporary file next to the target. The copy
+     * keeps the modification time, so a copied type index stays valid for the
+     * copied data file.
+     *
+     * @param source file to copy
+     * @param target file the copy will replace
+     * @return the copy
+     * @throws IOException if the file can't be copied
+     */
+    private static File copyToTempFile(File source, File target) throws IOException {
+        File tmpFile = newTempFile(target);
+        try {
+            Files.copy(source.toPath(), tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.COPY_ATTRIBUTES);
+        } catch (IOException ex) {
+            deleteTempFiles(tmpFile);
+            throw ex;
+        }
+        return tmpFile;
+    }
+
+    /**
+     * Removes temporary files which were not moved to their target.
+     */
+    private static void deleteTempFiles(File... files) {
+        for (File item : files) {
+            if (item != null && item.exists() && !item.delete()) {
+                LOG.log(Level.WARNING, "Can't delete temporary file {0}", item);
+            }
+        }
+    }
+
+    /**
+     * Reads a persisted type index.
+     *
+     * @return the index or null if there is no valid index for the data file
+     */
+    private VaultEntryTypeIndex readTypeIndex(File dataFile, File indexFile) {
+        if (!indexFile.exists() || !indexFile.canRead()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(indexFile))))) {
+            if (in.readLong() != dataFile.length() || in.readLong() != dataFile.lastModified()) {
+                LOG.log(Level.INFO, "Type index {0} is outdated.", indexFile.getName());
+                return null;
+            }
+            return VaultEntryTypeIndex.readFrom(in);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Can't read type index. Index will be rebuilt on demand.", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Binary search on sorted entries.
+     *
+     * @return index of the first entry whose clean timestamp is after the
+     * given timestamp
+     */
+    private static int firstIndexAfter(List<VaultEntry> sortedEntries, Date timestamp) {
+        int low = 0;
+        int high = sortedEntries.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            Date midTimestamp = TimestampUtils.createCleanTimestamp(sortedEntries.get(mid).getTimestamp());
+            if (midTimestamp.after(timestamp)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return directory for cached bytecode of processing containers, created
+     * if needed
+     */
+    File getClassCacheDir() {
+        File classCacheDir = new File(vaultDir, DIR_CLASSES);
+        if (!classCacheDir.exists() && !createDir(classCacheDir)) {
+            LOG.log(Level.WARNING, "Can't create bytecode cache directory {0}", classCacheDir);
+        }
+        return classCacheDir;
+    }
+
+    /**
+     * @return cache for processing results in the filter directory
+     */
+    CliResultCache getResultCache() {
+        return new CliResultCache(filterDir, CliResultCache.DEFAULT_MAX_SIZE_IN_BYTES);
+    }
+
+    /**
+     * Describes the current state of the input data. The description changes
+     * whenever the data of the input is rewritten.
+     *
+     * @param input name of a tag or {@link #COMPLETE_DATA}
+     * @return fingerprint or null if the input does not exist
+     */
+    String snapshotFingerprintOf(String input) {
+        File[] files;
+        if (input.equalsIgnoreCase(COMPLETE_DATA)) {
+            files = new File[]{dataFile};
+        } else {
+            files = new File[]{
+                new File(vaultDir, input.concat(TAG_EXTENSION)),
+                new File(vaultDir, input.concat(TAG_SLICE_EXTENSION))};
+        }
+        if (!files[0].exists()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(input);
+        for (File item : files) {
+            sb.append('|').append(item.getName()).append(':').append(item.length())
+                    .append(':').append(item.lastModified());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Records how a tag was created, see {@link CliTagDefinition}.
+     *
+     * @param tag name of the tag
+     * @param definition definition of the tag
+     */
+    @SuppressWarnings("try")
+    void writeTagDefinition(String tag, CliTagDefinition definition) {
+        File definitionFile = new File(vaultDir, tag.concat(TAG_DEFINITION_EXTENSION));
+        File tmpFile = null;
+        try (CliRepositoryLock.Hold writing = writeLock.acquireExclusive()) {
+            tmpFile = newTempFile(definitionFile);
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(definition, writer);
+            }
+            replaceAtomically(tmpFile, definitionFile);
+        } catch (IOException | JsonIOException ex) {
+            LOG.log(Level.WARNING, "Can't write tag definition. Tag can't be refreshed.", ex);
+            definitionFile.delete();
+        } finally {
+            deleteTempFiles(tmpFile);
+        }
+    }
+
+    /**
+     * @param tag name of the tag
+     * @return recorded definition of the tag or null if there is none
+     */
+    CliTagDefinition readTagDefinition(String tag) {
+        File definitionFile = new File(vaultDir, tag.concat(TAG_DEFINITION_EXTENSION));
+        if (!definitionFile.exists() || !definitionFile.canRead()) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(definitionFile), StandardCharsets.UTF_8)) {
+            return new GsonBuilder().create().fromJson(reader, CliTagDefinition.class);
+        } catch (IOException | JsonParseException ex) {
+            LOG.log(Level.WARNING, "Can't read tag definition.", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Extends a tag with slices processed on newer data. Entries up to the
+     * high water mark are in the tag already and are dropped from the new
+     * slices. A new slice continues the existing slices it overlaps, they are
+     * replaced by one slice with their entries and the new ones. The first new
+     * slice starting before the end of the continued input also continues the
+     * last existing slice, which was cut at the high water mark. Other slices
+     * are appended.
+     *
+     * @param tag name of the tag
+     * @param newSlices processed slices, each sorted by timestamp
+     * @param highWaterMark latest input timestamp the tag was created with
+     * @param continuedUntil end of the input slices which started at or before
+     * the high water mark, the high water mark if there are none
+     * @return number of appended and extended slices
+     * @throws IllegalAccessException if the tag file is not readable
+     */
+    @SuppressWarnings("try")
+    int extendTag(String tag, List<List<VaultEntry>> newSlices, long highWaterMark,
+            long continuedUntil) throws IllegalAccessException {
+        int appended = 0;
+        int extended = 0;
+        try (CliRepositoryLock.Hold writing = writeLock.acquireExclusive()) {
+            List<List<VaultEntry>> slices = getDataFromTag(tag);
+            if (slices == null) {
+                slices = new ArrayList<>();
+            }
+            for (List<VaultEntry> newSlice : newSlices) {
+                List<VaultEntry> newEntries = new ArrayList<>();
+                for (VaultEntry entry : newSlice) {
+                    if (entry.getTimestamp().getTime() > highWaterMark) {
+                        newEntries.add(entry);
+                    }
+                }
+                if (newEntries.isEmpty()) {
+                    continue;
+                }
+                long sliceStart = newSlice.get(0).getTimestamp().getTime();
+
+                // the tag ends at the high water mark, so every slice ending
+                // after the start of the new slice overlaps it
+                List<VaultEntry> extendedSlice = new ArrayList<>();
+                for (Iterator<List<VaultEntry>> it = slices.iterator(); it.hasNext();) {
+                    List<VaultEntry> slice = it.next();
+                    if (!slice.isEmpty() && slice.get(slice.size() - 1).getTimestamp().getTime() >= sliceStart) {
+                        extendedSlice.addAll(slice);
+                        it.remove();
+                    }
+                }
+                if (extendedSlice.isEmpty() && extended == 0 && appended == 0
+                        && sliceStart <= continuedUntil && !slices.isEmpty()) {
+                    extendedSlice.addAll(slices.remove(slices.size() - 1));
+                }
+                if (extendedSlice.isEmpty()) {
+                    slices.add(newEntries);
+                    appended++;
+                    continue;
+                }
+                extendedSlice.addAll(newEntries);
+                slices.add(VaultEntryUtils.mergeSlices(Collections.singletonList(extendedSlice)));
+                extended++;
+            }
+            if (appended + extended > 0) {
+                createTagFromData(slices, tag);
+            }
+        }
+        writeLineToJournal("Extended tag " + tag + ": " + appended + " slices appended, "
+                + extended + " slices extended.");
+        return appended + extended;
+    }
+
+    @SuppressWarnings("try")
     public void createTagFromData(List<List<VaultEntry>> data, String targetTag) {
         File targetFile = new File(vaultDir.getAbsolutePath()
                 .concat(File.separator).concat(targetTag).concat(TAG_EXTENSION));
@@ -458,19 +1216,63 @@ public class CliRepositoryManager {
                 .concat(File.separator).concat(targetTag).concat(TAG_SLICE_EXTENSION));
 
         if (data != null && !data.isEmpty()) {
+            long start = MetricsRegistry.start();
+            PipelineEvent event = PipelineEvents.begin(PipelineStage.MERGE, targetTag, null);
             List<VaultEntry> mergedData = VaultEntryUtils.mergeSlices(data);
+            if (event.isRecording()) {
+                long sliceEntries = 0;
+                for (List<VaultEntry> slice : data) {
+                    sliceEntries += slice.size();
+                }
+                event.commit(sliceEntries, mergedData != null ? mergedData.size() : -1, -1);
+            }
+            MetricsRegistry.stop("repository.merge_slices", start, mergedData != null ? mergedData.size() : 0);
             List<SliceEntry> slices = VaultEntryUtils.computeSlicesEntries(data);
 
             if (slices != null && mergedData != null) {
-                // write new dataset
-                VaultEntryJsonFileExporter exporter = new VaultEntryJsonFileExporter(new ExporterOptions());
-                exporter.exportDataToFile(targetFile.getAbsolutePath(), mergedData, true);
-                writeLineToJournal("Created new tag: " + targetTag);
-
-                // write slices
-                SliceEntryJsonFileExporter sliceExporter = new SliceEntryJsonFileExporter(new ExporterOptions());
-                sliceExporter.exportDataToFile(targetSliceFile.getAbsolutePath(), slices, true);
-                writeLineToJournal("Created new slice file for tag: " + targetTag);
+                event = PipelineEvents.begin(PipelineStage.TAG_WRITE, targetTag, null);
+                File tmpFile = null;
+                File tmpSliceFile = null;
+                File tmpIndexFile = null;
+                try (CliRepositoryLock.Hold writing = writeLock.acquireExclusive()) {
+                    // write new dataset and slices next to the old ones
+                    tmpFile = newTempFile(targetFile);
+                    tmpSliceFile = newTempFile(targetSliceFile);
+                    VaultEntryJsonFileExporter exporter = new VaultEntryJsonFileExporter(new ExporterOptions());
+                    SliceEntryJsonFileExporter sliceExporter = new SliceEntryJsonFileExporter(new ExporterOptions());
+                    if (exporter.exportDataToFile(tmpFile.getAbsolutePath(), mergedData, true) != FileExporter.RESULT_OK
+                            || sliceExporter.exportDataToFile(tmpSliceFile.getAbsolutePath(), slices, true) != FileExporter.RESULT_OK) {
+                        LOG.log(Level.SEVERE, "Can't write tag {0}. Tag is unchanged.", targetTag);
+                        return;
+                    }
+                    File indexFile = new File(vaultDir, targetTag.concat(TAG_INDEX_EXTENSION));
+                    tmpIndexFile = writeTypeIndex(mergedData, tmpFile, indexFile);
+
+                    try (CliRepositoryLock.Hold replacing = lock.acquireExclusive()) {
+                        replaceAtomically(tmpFile, targetFile);
+                        replaceAtomically(tmpSliceFile, targetSliceFile);
+                        replaceIndex(tmpIndexFile, indexFile);
+                        // a recorded definition does not describe the new content
+                        new File(vaultDir, targetTag.concat(TAG_DEFINITION_EXTENSION)).delete();
+                    }
+                    writeLineToJournal("Created new tag: " + targetTag);
+                    writeLineToJournal("Created new slice file for tag: " + targetTag);
+
+                    if (datasetCache != null) {
+                        // the exporter sorted the slices like in the file
+                        datasetCache.putWritten(targetFile.getAbsolutePath(), snapshotFingerprintOf(targetTag),
+                                sliceEntries(mergedData, null, slices, ReadPredicate.all()));
+                    }
+                } catch (IOException ex) {
+                    LOG.log(Level.SEVERE, "Can't write tag " + targetTag + ". Tag may be incomplete.", ex);
+                    return;
+                } finally {
+                    deleteTempFiles(tmpFile, tmpSliceFile, tmpIndexFile);
+                }
+                if (event.isRecording()) {
+                    event.commit(mergedData.size(), -1, targetFile.length());
+                }
+                MetricsRegistry.stop("repository.write_tag", start, mergedData.size());
             } else {
                 LOG.severe("Error while data preparation. No data saved.");
             }
@@ -479,24 +1281,62 @@ public class CliRepositoryManager {
         }
     }
 
+    @SuppressWarnings("try")
     public void copyTag(String sourceTag, String targetTag) throws IOException {
+        try (CliRepositoryLock.Hold writing = writeLock.acquireExclusive()) {
+            copyTagLocked(sourceTag, targetTag);
+        }
+    }
+
+    /**
+     * Copies to temporary files first, writers are locked out meanwhile, so
+     * the source does not change.
+     */
+    @SuppressWarnings("try")
+    private void copyTagLocked(String sourceTag, String targetTag) throws IOException {
         LOG.log(Level.INFO, "search for source tag: {0}", sourceTag);
         File sourceFile;
+        File sourceIndexFile;
         File sourceSliceFile = null;
         if (sourceTag.equalsIgnoreCase(COMPLETE_DATA)) {
             sourceFile = dataFile;
+            sourceIndexFile = new File(vaultDir, FILE_DATA_INDEX);
         } else {
             sourceFile = new File(vaultDir.getAbsolutePath()
                     .concat(File.separator).concat(sourceTag).concat(TAG_EXTENSION));
+            sourceIndexFile = new File(vaultDir, sourceTag.concat(TAG_INDEX_EXTENSION));
             sourceSliceFile = new File(vaultDir.getAbsolutePath()
                     .concat(File.separator).concat(sourceTag).concat(TAG_SLICE_EXTENSION));
         }
         File targetFile = new File(vaultDir.getAbsolutePath()
                 .concat(File.separator).concat(targetTag).concat(TAG_EXTENSION));
         if (sourceFile.exists() && sourceFile.canRead()) {
-            Path copyPath = Paths.get(targetFile.getAbsolutePath());
-            Path originalPath = Paths.get(sourceFile.getAbsolutePath());
-            Files.copy(originalPath, copyPath, StandardCopyOption.REPLACE_EXISTING);
+            File targetIndexFile = new File(vaultDir, targetTag.concat(TAG_INDEX_EXTENSION));
+            File sourceDefinitionFile = new File(vaultDir, sourceTag.concat(TAG_DEFINITION_EXTENSION));
+            File targetDefinitionFile = new File(vaultDir, targetTag.concat(TAG_DEFINITION_EXTENSION));
+            File tmpFile = null;
+            File tmpIndexFile = null;
+            File tmpDefinitionFile = null;
+            try {
+                tmpFile = copyToTempFile(sourceFile, targetFile);
+                if (sourceIndexFile.exists()) {
+                    tmpIndexFile = copyToTempFile(sourceIndexFile, targetIndexFile);
+                }
+                if (sourceSliceFile != null && sourceDefinitionFile.exists()) {
+                    tmpDefinitionFile = copyToTempFile(sourceDefinitionFile, targetDefinitionFile);
+                }
+                try (CliRepositoryLock.Hold replacing = lock.acquireExclusive()) {
+                    replaceAtomically(tmpFile, targetFile);
+                    replaceIndex(tmpIndexFile, targetIndexFile);
+                    if (tmpDefinitionFile != null) {
+                        replaceAtomically(tmpDefinitionFile, targetDefinitionFile);
+                    } else {
+                        targetDefinitionFile.delete();
+                    }
+                }
+            } finally {
+                deleteTempFiles(tmpFile, tmpIndexFile, tmpDefinitionFile);
+            }
             LOG.info("Tag copy successful.");
             writeLineToJournal("Tag \"" + targetTag
                     + "\" successfully created from \"" + sourceTag + "\".");
@@ -507,9 +1347,12 @@ public class CliRepositoryManager {
         if (sourceSliceFile != null && sourceSliceFile.exists()) {
             File targetSliceFile = new File(vaultDir.getAbsolutePath()
                     .concat(File.separator).concat(targetTag).concat(TAG_SLICE_EXTENSION));
-            Path copyPath = Paths.get(targetSliceFile.getAbsolutePath());
-            Path originalPath = Paths.get(sourceSliceFile.getAbsolutePath());
-            Files.copy(originalPath, copyPath, StandardCopyOption.REPLACE_EXISTING);
+            File tmpSliceFile = copyToTempFile(sourceSliceFile, targetSliceFile);
+            try (CliRepositoryLock.Hold replacing = lock.acquireExclusive()) {
+                replaceAtomically(tmpSliceFile, targetSliceFile);
+            } finally {
+                deleteTempFiles(tmpSliceFile);
+            }
             LOG.info("Tag slices copy successful.");
             writeLineToJournal("Slices for tag \"" + targetTag
                     + "\" successfully created from \"" + sourceTag + "\".");
@@ -517,13 +1360,32 @@ public class CliRepositoryManager {
         } else {
             LOG.warning("Can't read/find source slice file. No target slice file created.");
         }
+
+        File targetSliceFile = new File(vaultDir, targetTag.concat(TAG_SLICE_EXTENSION));
+        if (datasetCache != null && sourceFile.exists()
+                && (sourceSliceFile != null && sourceSliceFile.exists() || !targetSliceFile.exists())) {
+            // the copy is sliced like the source
+            datasetCache.copy(sourceFile.getAbsolutePath(), snapshotFingerprintOf(sourceTag),
+                    targetFile.getAbsolutePath(), snapshotFingerprintOf(targetTag));
+        }
     }
 
+    @SuppressWarnings("try")
     public void removeTag(String remove) throws IOException {
+        try (CliRepositoryLock.Hold writing = writeLock.acquireExclusive();
+                CliRepositoryLock.Hold replacing = lock.acquireExclusive()) {
+            removeTagLocked(remove);
+        }
+    }
+
+    private void removeTagLocked(String remove) throws IOException {
         File removeTag = new File(vaultDir.getAbsolutePath()
                 .concat(File.separator).concat(remove).concat(TAG_EXTENSION));
         File removeTagSlice = new File(vaultDir.getAbsolutePath()
                 .concat(File.separator).concat(remove).concat(TAG_SLICE_EXTENSION));
+        // the index is derived data, no journal entry needed
+        new File(vaultDir, remove.concat(TAG_INDEX_EXTENSION)).delete();
+        new File(vaultDir, remove.concat(TAG_DEFINITION_EXTENSION)).delete();
 
         if (removeTag.exists()) {
             removeTag.delete();
@@ -0,0 +1,322 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.cli;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import de.opendiabetes.vault.data.adapter.VaultEntryJsonAdapter;
+import de.opendiabetes.vault.data.container.VaultEntry;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache for processing results in the filter directory of the repository.
+ * Entries are keyed by a fingerprint of everything the result depends on: the
+ * input snapshot, the processing containers with their input filter trees,
+ * which also determine the pushed down read predicate, and the ODV version and
+ * build. If the input changes (e.g. after an import), the key changes and the
+ * old entries are evicted over time.
+ * <p>
+ * The cache is bounded in size. Hits refresh the last modified date of an
+ * entry and the least recently used entries are evicted first.
+ *
+ * @author juehv
+ */
+class CliResultCache {
+
+    private static final Logger LOG = Logger.getLogger(CliResultCache.class.getName());
+    static final String ENTRY_EXTENSION = ".result.gz";
+    static final String FILE_STATISTICS = "result-cache.properties";
+    static final long DEFAULT_MAX_SIZE_IN_BYTES = 256L * 1024 * 1024;
+
+    private final File cacheDir;
+    private final long maxSizeInBytes;
+    // created on first use, most commands only describe the cache
+    private Gson gson;
+
+    /**
+     * @param cacheDir directory of the cache entries
+     * @param maxSizeInBytes upper bound for the size of all entries
+     */
+    CliResultCache(File cacheDir, long maxSizeInBytes) {
+        this.cacheDir = cacheDir;
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    private Gson gson() {
+        if (gson == null) {
+            gson = new GsonBuilder()
+                    .registerTypeAdapter(VaultEntry.class, new VaultEntryJsonAdapter())
+                    .create();
+        }
+        return gson;
+    }
+
+    /**
+     * Builds a cache key from the given parts. The parts are hashed in order,
+     * so equal parts in equal order give the same key.
+     *
+     * @param parts fingerprints the cached result depends on. A null part
+     * means the result can't be described and must not be cached.
+     * @return key or null if a part is null
+     */
+    static String keyOf(String... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : parts) {
+            if (part == null) {
+                return null;
+            }
+            // length prefix keeps the parts apart
+            sb.append(part.length()).append(':').append(part).append(';');
+        }
+        return sha256(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param data data to hash
+     * @return SHA-256 hash as hex string
+     */
+    static String sha256(byte[] data) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder sb = new StringBuilder();
+            for (byte item : hash) {
+                sb.append(String.format("%02x", item));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            // every java platform has to support SHA-256
+            throw new AssertionError("SHA-256 not available.", ex);
+        }
+    }
+
+    /**
+     * Looks up a cached result and counts the hit or miss.
+     *
+     * @param key key from {@link #keyOf(java.lang.String...)}
+     * @return cached result or null
+     */
+    Entry get(String key) {
+        File entryFile = entryFileOf(key);
+        Entry result = null;
+        if (entryFile.exists() && entryFile.canRead()) {
+            try (Reader reader = new InputStreamReader(new GZIPInputStream(
+                    new FileInputStream(entryFile)), StandardCharsets.UTF_8)) {
+                result = gson().fromJson(reader, Entry.class);
+                if (result != null && result.slices != null) {
+                    entryFile.setLastModified(System.currentTimeMillis());
+                } else {
+                    result = null;
+                }
+            } catch (IOException | JsonParseException ex) {
+                LOG.log(Level.WARNING, "Can't read cache entry. Entry is removed.", ex);
+                entryFile.delete();
+                result = null;
+            }
+        }
+        updateStatistics(result != null ? 1 : 0, result != null ? 0 : 1, 0);
+        return result;
+    }
+
+    /**
+     * Stores a result and evicts the least recently used entries if the cache
+     * exceeds its size. Errors are logged only, the cache is optional.
+     *
+     * @param key key from {@link #keyOf(java.lang.String...)}
+     * @param entry result to store
+     */
+    void put(String key, Entry entry) {
+        File entryFile = entryFileOf(key);
+        File tmpFile = new File(cacheDir, key.concat(".tmp"));
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(
+                new FileOutputStream(tmpFile)), StandardCharsets.UTF_8)) {
+            gson().toJson(entry, writer);
+        } catch (IOException | JsonIOException ex) {
+            LOG.log(Level.WARNING, "Can't write cache entry.", ex);
+            tmpFile.delete();
+            return;
+        }
+        try {
+            Files.move(tmpFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Can't write cache entry.", ex);
+            tmpFile.delete();
+            return;
+        }
+        evict();
+    }
+
+    /**
+     * Removes all entries. Statistics are kept.
+     */
+    void clear() {
+        for (File item : listEntries()) {
+            item.delete();
+        }
+    }
+
+    /**
+     * @return human readable size, entry count and hit statistics
+     */
+    String describe() {
+        File[] entries = listEntries();
+        long size = 0;
+        for (File item : entries) {
+            size += item.length();
+        }
+        Properties stats = readStatistics();
+        return String.format("Result cache: %d entries, %d KiB of %d KiB, %s hits, %s misses, %s evictions",
+                entries.length, size / 1024, maxSizeInBytes / 1024,
+                stats.getProperty("hits", "0"), stats.getProperty("misses", "0"),
+                stats.getProperty("evictions", "0"));
+    }
+
+    private void evict() {
+        File[] entries = listEntries();
+        long size = 0;
+        for (File item : entries) {
+            size += item.length();
+        }
+        if (size <= maxSizeInBytes) {
+            return;
+        }
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        int evicted = 0;
+        for (int i = 0; i < entries.length && size > maxSizeInBytes; i++) {
+            long length = entries[i].length();
+            if (entries[i].delete()) {
+                size -= length;
+                evicted++;
+            }
+        }
+        LOG.log(Level.INFO, "Evicted {0} cache entries.", evicted);
+        updateStatistics(0, 0, evicted);
+    }
+
+    private File[] listEntries() {
+        File[] result = cacheDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.getName().endsWith(ENTRY_EXTENSION);
+            }
+        });
+        return result != null ? result : new File[0];
+    }
+
+    private File entryFileOf(String key) {
+        return new File(cacheDir, key.concat(ENTRY_EXTENSION));
+    }
+
+    private Properties readStatistics() {
+        Properties stats = new Properties();
+        File statsFile = new File(cacheDir, FILE_STATISTICS);
+        if (statsFile.exists()) {
+            try (InputStream in = new FileInputStream(statsFile)) {
+                stats.load(in);
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Can't read cache statistics.", ex);
+            }
+        }
+        return stats;
+    }
+
+    private void updateStatistics(long hits, long misses, long evictions) {
+        Properties stats = readStatistics();
+        add(stats, "hits", hits);
+        add(stats, "misses", misses);
+        add(stats, "evictions", evictions);
+        // concurrent runs may lose a count, but never see a half written file
+        File statsFile = new File(cacheDir, FILE_STATISTICS);
+        File tmpFile = null;
+        try {
+            tmpFile = CliRepositoryManager.newTempFile(statsFile);
+            try (OutputStream out = new FileOutputStream(tmpFile)) {
+                stats.store(out, "result cache statistics");
+            }
+            CliRepositoryManager.replaceAtomically(tmpFile, statsFile);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Can't write cache statistics.", ex);
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    private static void add(Properties stats, String name, long value) {
+        long current;
+        try {
+            current = Long.parseLong(stats.getProperty(name, "0"));
+        } catch (NumberFormatException ex) {
+            current = 0;
+        }
+        stats.setProperty(name, Long.toString(current + value));
+    }
+
+    /**
+     * A cached processing result. Serialized with gson.
+     */
+    static class Entry {
+
+        private long inputHighWaterMark;
+        private List<List<VaultEntry>> slices;
+
+        Entry() {
+            // for gson
+        }
+
+        /**
+         * @param inputHighWaterMark timestamp of the last input entry
+         * @param slices processing result
+         */
+        Entry(long inputHighWaterMark, List<List<VaultEntry>> slices) {
+            this.inputHighWaterMark = inputHighWaterMark;
+            this.slices = slices;
+        }
+
+        long getInputHighWaterMark() {
+            return inputHighWaterMark;
+        }
+
+        List<List<VaultEntry>> getSlices() {
+            return slices;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import picocli.CommandLine;
+
+/**
+ * CLI class for the server mode. The server keeps the JVM, the repositories
+ * and recently used datasets warm and executes the commands sent by
+ * {@link CliClient} one after another. Decoded datasets are dropped as soon as
+ * their files change on disk.
+ * <p>
+ * The server listens on the loopback interface only. Port and a random token
+ * are written to a file in the user's home directory, which only the user
+ * can read. Requests without the token are rejected.
+ *
+ * @author juehv
+ */
+@CommandLine.Command(description = "Runs a server which keeps repositories and recently used data decoded in memory. Send commands with the CliClient class instead of the usual main class.",
+        name = "server", mixinStandardHelpOptions = true, version = "odv server 0.1")
+public class CliServer implements Callable<Void> {
+
+    public static final String COMMAND = "server";
+
+    private static final Logger LOG = Logger.getLogger(CliServer.class.getName());
+    private static final int READ_TIMEOUT_IN_MILLIS = 30000;
+
+    @CommandLine.Option(names = {"-p", "--port"}, paramLabel = "PORT",
+            description = "Port on the loopback interface. Uses a free port as default.")
+    private int port = 0;
+
+    @CommandLine.Option(names = {"--cache-entries"}, paramLabel = "N",
+            description = "Maximum number of decoded entries kept in memory. Default is 5000000.")
+    private long cacheEntries = 5000000;
+
+    @CommandLine.Option(names = {"--stop"}, description = "Stops the running server.")
+    private boolean stop;
+
+    private boolean running;
+
+    @Override
+    public Void call() throws Exception {
+        if (stop) {
+            Integer status = CliClient.send(new String[]{COMMAND, "--stop"}, new File(".").getAbsoluteFile());
+            if (status == null) {
+                System.err.println("No odv server running.");
+                CliManager.exit(-1);
+            }
+            return null;
+        }
+        if (CliClient.send(new String[]{COMMAND, "--ping"}, new File(".").getAbsoluteFile()) != null) {
+            CliManager.exitWithError("An odv server is already running. Exit.", null);
+        }
+
+        CliRepositoryManager.enableDatasetCache(cacheEntries);
+        byte[] tokenBytes = new byte[16];
+        new SecureRandom().nextBytes(tokenBytes);
+        String token = CliResultCache.sha256(tokenBytes);
+        File serverFile = CliClient.serverFile();
+
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            writeServerFile(serverFile, serverSocket.getLocalPort(), token);
+            System.out.println("odv server listening on port " + serverSocket.getLocalPort()
+                    + ". Stop with: odv server --stop");
+            running = true;
+            while (running) {
+                try (Socket socket = serverSocket.accept()) {
+                    socket.setSoTimeout(READ_TIMEOUT_IN_MILLIS);
+                    handle(socket, token);
+                } catch (IOException ex) {
+                    LOG.log(Level.WARNING, "Error while handling request.", ex);
+                }
+            }
+        } finally {
+            serverFile.delete();
+        }
+        System.out.println("odv server stopped.");
+        return null;
+    }
+
+    /**
+     * Executes one command. The output of the command is sent to the client
+     * in frames, followed by the exit status.
+     */
+    private void handle(Socket socket, String token) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        String requestToken = in.readUTF();
+        File workingDir = new File(in.readUTF());
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readUTF();
+        }
+
+        int status;
+        if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                requestToken.getBytes(StandardCharsets.UTF_8))) {
+            LOG.warning("Rejected request with invalid token.");
+            writeFrame(out, CliClient.FRAME_ERR, "Invalid token. Exit.");
+            status = -1;
+        } else if (args.length > 0 && args[0].equals(COMMAND)) {
+            status = handleServerCommand(args, out);
+        } else {
+            LOG.log(Level.INFO, "Execute in {0}: {1}", new Object[]{workingDir, String.join(" ", args)});
+            PrintStream stdout = System.out;
+            PrintStream stderr = System.err;
+            PrintStream commandOut = new PrintStream(new BufferedOutputStream(new FrameOutputStream(out, CliClient.FRAME_OUT)), true);
+            PrintStream commandErr = new PrintStream(new BufferedOutputStream(new FrameOutputStream(out, CliClient.FRAME_ERR)), true);
+            System.setOut(commandOut);
+            System.setErr(commandErr);
+            try {
+                status = CliManager.execute(args, workingDir);
+            } finally {
+                commandOut.flush();
+                commandErr.flush();
+                System.setOut(stdout);
+                System.setErr(stderr);
+            }
+        }
+        synchronized (out) {
+            out.writeByte(CliClient.FRAME_EXIT);
+            out.writeInt(status);
+            out.flush();
+        }
+    }
+
+    private int handleServerCommand(String[] args, DataOutputStream out) throws IOException {
+        if (args.length == 2 && args[1].equals("--stop")) {
+            running = false;
+            writeFrame(out, CliClient.FRAME_OUT, "odv server stopped.");
+            return 0;
+        } else if (args.length == 2 && args[1].equals("--ping")) {
+            writeFrame(out, CliClient.FRAME_OUT, CliRepositoryManager.describeDatasetCache());
+            return 0;
+        }
+        writeFrame(out, CliClient.FRAME_ERR, "An odv server is already running. Exit.");
+        return -1;
+    }
+
+    private static void writeFrame(DataOutputStream out, byte type, byte[] data, int off, int len) throws IOException {
+        synchronized (out) {
+            out.writeByte(type);
+            out.writeInt(len);
+            out.write(data, off, len);
+            out.flush();
+        }
+    }
+
+    private static void writeFrame(DataOutputStream out, byte type, String message) throws IOException {
+        byte[] data = message.concat("\n").getBytes(StandardCharsets.UTF_8);
+        writeFrame(out, type, data, 0, data.length);
+    }
+
+    /**
+     * Announces port and token to clients. Only the user may read the file.
+     */
+    private static void writeServerFile(File serverFile, int port, String token) throws IOException {
+        File dir = serverFile.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Can't create directory " + dir);
+        }
+        serverFile.delete();
+        serverFile.createNewFile();
+        try {
+            Files.setPosixFilePermissions(serverFile.toPath(), PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException ex) {
+            serverFile.setReadable(false, false);
+            serverFile.setReadable(true, true);
+        }
+        Properties properties = new Properties();
+        properties.setProperty("port", Integer.toString(port));
+        properties.setProperty("token", token);
+        try (OutputStream fileOut = new FileOutputStream(serverFile)) {
+            properties.store(fileOut, "odv server");
+        }
+    }
+
+    /**
+     * Sends everything written to it as frames of one type.
+     */
+    private static final class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final byte type;
+
+        FrameOutputStream(DataOutputStream out, byte type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writeFrame(out, type, b, off, len);
+        }
+    }
+}
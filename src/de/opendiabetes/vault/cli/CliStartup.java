@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import picocli.CommandLine;
+
+/**
+ * CLI class for measuring the startup time of odv commands. Each command is
+ * executed several times in a fresh JVM with the class path of this JVM. The
+ * time until the first output (stdout or stderr) and until the JVM exits is
+ * reported, which shows the effect of e.g. a class data sharing archive.
+ *
+ * @author juehv
+ */
+@CommandLine.Command(description = "Measures the time to first output of odv commands in fresh JVMs.",
+        name = "startup", mixinStandardHelpOptions = true, version = "odv startup 0.1")
+public class CliStartup implements Callable<Void> {
+
+    public static final String COMMAND = "startup";
+
+    @CommandLine.Option(names = {"-c", "--command"}, paramLabel = "COMMAND",
+            description = "Command to measure, e.g. \"tag -l\". Can be used multiple times. Measures the help page of every subcommand as default.")
+    private List<String> commands;
+
+    @CommandLine.Option(names = {"-n", "--runs"}, paramLabel = "N",
+            description = "Runs per command. Reports the median. Default is 5.")
+    private int runs = 5;
+
+    @CommandLine.Option(names = {"-J", "--jvm-option"}, paramLabel = "OPTION",
+            description = "Option for the measured JVMs, e.g. -J=-XX:SharedArchiveFile=OpenDiabetesVault.jsa. Can be used multiple times.")
+    private List<String> jvmOptions;
+
+    @Override
+    public Void call() throws Exception {
+        if (runs < 1) {
+            CliManager.exitWithError("Number of runs must be at least 1. Exit.", null);
+        }
+        List<List<String>> measured = new ArrayList<>();
+        if (commands == null || commands.isEmpty()) {
+            measured.add(Arrays.asList("--version"));
+            for (String name : CliManager.SUBCOMMANDS.keySet()) {
+                measured.add(Arrays.asList(name, "--help"));
+            }
+        } else {
+            for (String item : commands) {
+                measured.add(CliBatch.tokenize(item));
+            }
+        }
+
+        File workingDir = CliManager.resolveFile(".").getAbsoluteFile();
+        System.out.println(String.format("%-30s %16s %12s %12s", "COMMAND", "FIRST OUTPUT ms", "MIN ms", "TOTAL ms"));
+        for (List<String> args : measured) {
+            long[] firstOutput = new long[runs];
+            long[] total = new long[runs];
+            int status = 0;
+            for (int i = 0; i < runs; i++) {
+                long[] result = measure(args, workingDir);
+                firstOutput[i] = result[0];
+                total[i] = result[1];
+                status = (int) result[2];
+            }
+            Arrays.sort(firstOutput);
+            Arrays.sort(total);
+            System.out.println(String.format("%-30s %16d %12d %12d%s", String.join(" ", args),
+                    firstOutput[runs / 2], firstOutput[0], total[runs / 2],
+                    status != 0 ? "  (exit status " + status + ")" : ""));
+        }
+        return null;
+    }
+
+    /**
+     * Runs a command in a fresh JVM.
+     *
+     * @return milliseconds until the first output, milliseconds until exit
+     * and exit status
+     */
+    private long[] measure(List<String> args, File workingDir) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+        if (jvmOptions != null) {
+            command.addAll(jvmOptions);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(CliManager.class.getName());
+        command.addAll(args);
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(workingDir)
+                .redirectErrorStream(true)
+                .start();
+        process.getOutputStream().close();
+        long firstOutput = -1;
+        try (InputStream in = process.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                if (firstOutput < 0 && read > 0) {
+                    firstOutput = System.nanoTime();
+                }
+            }
+        }
+        int status = process.waitFor();
+        long end = System.nanoTime();
+        if (firstOutput < 0) {
+            firstOutput = end;
+        }
+        return new long[]{(firstOutput - start) / 1000000, (end - start) / 1000000, status};
+    }
+}
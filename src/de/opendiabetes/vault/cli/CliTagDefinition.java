@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Definition of a tag created by a processing container or a chain of
+ * containers. Stored next to the tag, so the tag can be refreshed with only
+ * the data merged after its high water mark. Serialized with gson.
+ *
+ * @author juehv
+ */
+class CliTagDefinition {
+
+    // first step, kept for definitions of single containers
+    private String containerFile;
+    private String containerHash;
+    // further steps of a chain
+    private List<String> nextContainerFiles;
+    private List<String> nextContainerHashes;
+    private String inputTag;
+    private long highWaterMark;
+    private int marginInMinutes;
+
+    CliTagDefinition() {
+        // for gson
+    }
+
+    /**
+     * @param containerFiles processing containers the tag was created with,
+     * in processing order
+     * @param inputTag source of the input data
+     * @param highWaterMark timestamp of the last input entry that was
+     * processed in milliseconds
+     * @param marginInMinutes margin the containers declared for refreshs
+     * @throws IOException if a container file can't be read
+     */
+    CliTagDefinition(List<File> containerFiles, String inputTag, long highWaterMark, int marginInMinutes) throws IOException {
+        this.containerFile = containerFiles.get(0).getAbsolutePath();
+        this.containerHash = hashOf(containerFiles.get(0));
+        this.nextContainerFiles = new ArrayList<>();
+        this.nextContainerHashes = new ArrayList<>();
+        for (File item : containerFiles.subList(1, containerFiles.size())) {
+            nextContainerFiles.add(item.getAbsolutePath());
+            nextContainerHashes.add(hashOf(item));
+        }
+        this.inputTag = inputTag;
+        this.highWaterMark = highWaterMark;
+        this.marginInMinutes = marginInMinutes;
+    }
+
+    /**
+     * @param newHighWaterMark timestamp of the last processed input entry
+     * @param newMarginInMinutes margin the containers declared
+     * @return copy of this definition with the new high water mark
+     */
+    CliTagDefinition advance(long newHighWaterMark, int newMarginInMinutes) {
+        CliTagDefinition result = new CliTagDefinition();
+        result.containerFile = containerFile;
+        result.containerHash = containerHash;
+        result.nextContainerFiles = nextContainerFiles;
+        result.nextContainerHashes = nextContainerHashes;
+        result.inputTag = inputTag;
+        result.highWaterMark = Math.max(highWaterMark, newHighWaterMark);
+        result.marginInMinutes = newMarginInMinutes;
+        return result;
+    }
+
+    /**
+     * @return container files in processing order
+     */
+    List<File> getContainerFiles() {
+        List<File> result = new ArrayList<>();
+        result.add(new File(containerFile));
+        if (nextContainerFiles != null) {
+            for (String item : nextContainerFiles) {
+                result.add(new File(item));
+            }
+        }
+        return result;
+    }
+
+    String getInputTag() {
+        return inputTag;
+    }
+
+    long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    int getMarginInMinutes() {
+        return marginInMinutes;
+    }
+
+    /**
+     * @return true if all container files still exist and were not modified
+     * since the tag was created
+     */
+    boolean isContainerUnchanged() {
+        List<String> hashes = new ArrayList<>();
+        hashes.add(containerHash);
+        if (nextContainerHashes != null) {
+            hashes.addAll(nextContainerHashes);
+        }
+        List<File> files = getContainerFiles();
+        if (files.size() != hashes.size()) {
+            return false;
+        }
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                if (!files.get(i).canRead() || hashes.get(i) == null
+                        || !hashes.get(i).equals(hashOf(files.get(i)))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * @param file file to hash
+     * @return SHA-256 hash of the file content
+     * @throws IOException if the file can't be read
+     */
+    static String hashOf(File file) throws IOException {
+        return CliResultCache.sha256(Files.readAllBytes(file.toPath()));
+    }
+}
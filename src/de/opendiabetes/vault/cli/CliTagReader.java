@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.cli;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import de.opendiabetes.vault.data.adapter.VaultEntryJsonAdapter;
+import de.opendiabetes.vault.data.container.SliceEntry;
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.data.container.VaultEntryDataset;
+import de.opendiabetes.vault.importer.ReadPredicate;
+import de.opendiabetes.vault.util.TimestampUtils;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the slices of a tag one at a time. The tag data is parsed as a stream
+ * and only the entries of the current slice (and of overlapping slices) are
+ * kept in memory. The slices are cut the same way as in
+ * {@link CliRepositoryManager#getDataFromTag(java.lang.String, de.opendiabetes.vault.importer.ReadPredicate)}.
+ * <p>
+ * If the tag has no slice file, the whole tag is returned as one slice.
+ * <p>
+ * The data file is opened once and read through the open channel, so the
+ * reader keeps seeing the same data if the tag is replaced meanwhile.
+ *
+ * @author juehv
+ */
+class CliTagReader implements Iterator<List<VaultEntry>>, Closeable {
+
+    private static final Logger LOG = Logger.getLogger(CliTagReader.class.getName());
+
+    private final File tagFile;
+    private final ReadPredicate predicate;
+    private final Iterator<SliceEntry> slices;
+    private final Gson gson;
+    // null if the tag has no data file
+    private final FileChannel channel;
+    // entries read from the file, which may belong to the current or a later slice
+    private final ArrayDeque<VaultEntry> window = new ArrayDeque<>();
+    private JsonReader reader;
+    private boolean exhausted;
+    private boolean singleSliceRead;
+    private Date windowStart;
+    private int skippedSlices;
+
+    /**
+     * @param tagFile data file of the tag, sorted by timestamp
+     * @param slices slices of the tag sorted by start or null to read the tag
+     * as one slice
+     * @param predicate pushed down predicate
+     * @throws IOException if the data file can't be opened
+     */
+    CliTagReader(File tagFile, List<SliceEntry> slices, ReadPredicate predicate) throws IOException {
+        this.tagFile = tagFile;
+        this.slices = slices != null ? slices.iterator() : null;
+        this.predicate = predicate;
+        this.gson = new GsonBuilder()
+                .registerTypeAdapter(VaultEntry.class, new VaultEntryJsonAdapter())
+                .create();
+        this.channel = tagFile.exists() ? FileChannel.open(tagFile.toPath(), StandardOpenOption.READ) : null;
+        try {
+            open();
+        } catch (IOException | RuntimeException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return slices != null ? slices.hasNext() : !singleSliceRead;
+    }
+
+    /**
+     * @return next slice. Slices which do not overlap the predicate's time
+     * range are empty.
+     */
+    @Override
+    public List<VaultEntry> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        VaultEntryDataset result = new VaultEntryDataset();
+        try {
+            if (slices == null) {
+                singleSliceRead = true;
+                while (readNext()) {
+                    result.add(window.pollFirst());
+                }
+                return result;
+            }
+
+            SliceEntry slice = slices.next();
+            // create start and end point with +/- 1 minute to use .after & .before
+            Date startTimestamp = TimestampUtils.addMinutesToTimestamp(
+                    TimestampUtils.createCleanTimestamp(slice.startTimestamp), -1);
+            Date endTimestamp = TimestampUtils.addMinutesToTimestamp(startTimestamp,
+                    slice.durationInMinutes + 2);
+            if (!predicate.overlaps(startTimestamp, endTimestamp)) {
+                skippedSlices++;
+                return result;
+            }
+            if (windowStart != null && startTimestamp.before(windowStart)) {
+                // entries of this slice were already dropped
+                LOG.log(Level.INFO, "Slices of {0} are not sorted. Reading again from the start.",
+                        tagFile.getName());
+                window.clear();
+                closeReader();
+                open();
+            }
+            windowStart = startTimestamp;
+
+            // entries before the slice are not needed by later slices either
+            while (!window.isEmpty() && !cleanTimestampOf(window.peekFirst()).after(startTimestamp)) {
+                window.pollFirst();
+            }
+            while ((window.isEmpty() || cleanTimestampOf(window.peekLast()).before(endTimestamp))
+                    && readNext()) {
+                // fill the window up to the end of the slice
+            }
+            for (VaultEntry item : window) {
+                if (!cleanTimestampOf(item).before(endTimestamp)) {
+                    break;
+                }
+                result.add(item);
+            }
+            return result;
+        } catch (IOException | IllegalStateException ex) {
+            LOG.log(Level.SEVERE, "Error while reading json data.", ex);
+            throw new JsonParseException(ex);
+        }
+    }
+
+    /**
+     * @return number of slices left empty, as they are outside of the
+     * predicate's time range
+     */
+    int getSkippedSlices() {
+        return skippedSlices;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window.clear();
+        try {
+            closeReader();
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    private void closeReader() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+
+    /**
+     * Starts reading at the beginning of the data file.
+     */
+    private void open() throws IOException {
+        exhausted = true;
+        if (channel == null || channel.size() == 0 || predicate.isEmpty()) {
+            return;
+        }
+        channel.position(0);
+        // the channel stays open for a restart, closing the reader must not
+        // close it
+        FilterInputStream in = new FilterInputStream(Channels.newInputStream(channel)) {
+            @Override
+            public void close() {
+                // keep the channel open
+            }
+        };
+        reader = new JsonReader(new InputStreamReader(new BufferedInputStream(
+                new GZIPInputStream(in))));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("data")) {
+                reader.beginArray();
+                exhausted = false;
+                return;
+            }
+            reader.skipValue();
+        }
+    }
+
+    /**
+     * Reads the next entry matching the predicate into the window. Entries
+     * before the current slice are dropped right away.
+     *
+     * @return false if there are no more entries
+     */
+    private boolean readNext() throws IOException {
+        while (!exhausted) {
+            if (!reader.hasNext()) {
+                exhausted = true;
+                break;
+            }
+            VaultEntry entry = gson.fromJson(reader, VaultEntry.class);
+            if (predicate.matches(entry)) {
+                if (windowStart == null || cleanTimestampOf(entry).after(windowStart)) {
+                    window.addLast(entry);
+                    return true;
+                }
+            } else if (predicate.isBeyondRange(entry.getTimestamp())) {
+                // tag data is sorted, no later entry can match
+                exhausted = true;
+            }
+        }
+        return false;
+    }
+
+    private static Date cleanTimestampOf(VaultEntry entry) {
+        return TimestampUtils.createCleanTimestamp(entry.getTimestamp());
+    }
+}
@@ -0,0 +1,271 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.cli;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+import de.opendiabetes.vault.data.adapter.VaultEntryJsonAdapter;
+import de.opendiabetes.vault.data.container.SliceEntry;
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.exporter.ExporterOptions;
+import de.opendiabetes.vault.exporter.FileExporter;
+import de.opendiabetes.vault.exporter.json.SliceEntryJsonFileExporter;
+import de.opendiabetes.vault.exporter.json.VaultEntryJsonExportObject;
+import de.opendiabetes.vault.exporter.json.VaultEntryJsonFileExporter;
+import de.opendiabetes.vault.importer.ImporterOptions;
+import de.opendiabetes.vault.importer.json.VaultEntryJsonFileImporter;
+import de.opendiabetes.vault.util.PipelineEvent;
+import de.opendiabetes.vault.util.PipelineEvents;
+import de.opendiabetes.vault.util.PipelineStage;
+import de.opendiabetes.vault.util.TimestampUtils;
+import de.opendiabetes.vault.util.VaultEntryUtils;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the slices of a tag one at a time. The result is the same as of
+ * {@link CliRepositoryManager#createTagFromData(java.util.List, java.lang.String)}:
+ * the entries of all slices are merged without duplicates and sorted by
+ * timestamp.
+ * <p>
+ * Entries are held back until no later slice can contain entries before
+ * them, i.e. until a slice with a later start arrives. For slices in
+ * chronological order only the overlapping slices are in memory. If a slice
+ * starts before already written entries, the rest of the stream is collected
+ * and merged with the written data in {@link #finish()}.
+ * <p>
+ * The tag is written to temporary files and replaces the old tag on commit
+ * only. Closing without commit keeps the old tag. The repository holds its
+ * lock during {@link #commit()} only, so the slow part is done in
+ * {@link #finish()} beforehand.
+ *
+ * @author juehv
+ */
+class CliTagWriter implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(CliTagWriter.class.getName());
+
+    private final File targetFile;
+    private final File targetSliceFile;
+    private final File tmpFile;
+    private final File tmpSliceFile;
+    private final Gson gson;
+    private final Writer out;
+    private final JsonWriter writer;
+    private final List<SliceEntry> sliceEntries = new ArrayList<>();
+    private final PipelineEvent event;
+    // entries which may still get neighbours from later slices, in arrival order
+    private List<VaultEntry> pending = new ArrayList<>();
+    // entries arriving after out of order slices, merged on commit
+    private List<VaultEntry> late;
+    private long writtenUntil = Long.MIN_VALUE;
+    private long entryCount;
+    private boolean closed;
+
+    /**
+     * @param tag name of the tag
+     * @param targetFile data file of the tag
+     * @param targetSliceFile slice file of the tag
+     * @param tmpFile temporary data file
+     * @param tmpSliceFile temporary slice file
+     * @throws IOException if the temporary file can't be created
+     */
+    CliTagWriter(String tag, File targetFile, File targetSliceFile, File tmpFile, File tmpSliceFile) throws IOException {
+        this.targetFile = targetFile;
+        this.targetSliceFile = targetSliceFile;
+        this.tmpFile = tmpFile;
+        this.tmpSliceFile = tmpSliceFile;
+        this.event = PipelineEvents.begin(PipelineStage.TAG_WRITE, tag, null);
+        this.gson = new GsonBuilder()
+                .registerTypeAdapter(VaultEntry.class, new VaultEntryJsonAdapter())
+                .create();
+
+        // same layout as VaultEntryJsonExportObject
+        VaultEntryJsonExportObject header = new VaultEntryJsonExportObject(Collections.emptyList());
+        this.out = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new FileOutputStream(tmpFile))));
+        this.writer = gson.newJsonWriter(out);
+        writer.beginObject();
+        writer.name("titel").value(header.titel);
+        writer.name("version").value(header.version);
+        writer.name("exportDate").value(header.exportDate);
+        writer.name("data").beginArray();
+    }
+
+    /**
+     * Adds a slice to the tag. Empty slices are ignored.
+     *
+     * @param slice sorted entries of the slice
+     * @throws IOException if the data can't be written
+     */
+    void write(List<VaultEntry> slice) throws IOException {
+        if (slice == null || slice.isEmpty()) {
+            return;
+        }
+        Date startDate = slice.get(0).getTimestamp();
+        Date endDate = slice.get(slice.size() - 1).getTimestamp();
+        sliceEntries.add(new SliceEntry(startDate, TimestampUtils.getDurationInMinutes(startDate, endDate)));
+
+        if (late != null) {
+            late.addAll(slice);
+            return;
+        }
+        long sliceStart = Long.MAX_VALUE;
+        for (VaultEntry item : slice) {
+            sliceStart = Math.min(sliceStart, item.getTimestamp().getTime());
+        }
+        if (sliceStart < writtenUntil) {
+            LOG.log(Level.INFO, "Slices for {0} are not in chronological order. Merging on commit.",
+                    targetFile.getName());
+            late = pending;
+            late.addAll(slice);
+            pending = null;
+            return;
+        }
+        flushBefore(sliceStart);
+        pending.addAll(slice);
+    }
+
+    /**
+     * @return number of non empty slices written so far
+     */
+    int getSliceCount() {
+        return sliceEntries.size();
+    }
+
+    /**
+     * Completes the temporary files of the tag.
+     *
+     * @throws IOException if the tag can't be written
+     */
+    void finish() throws IOException {
+        if (late == null) {
+            flushBefore(Long.MAX_VALUE);
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.close();
+        closed = true;
+
+        if (late != null) {
+            // merge the out of order rest with the written entries, in
+            // the order in which they arrived
+            List<VaultEntry> written;
+            try {
+                written = new VaultEntryJsonFileImporter(new ImporterOptions())
+                        .importDataFromFile(tmpFile.getAbsolutePath());
+            } catch (IllegalAccessException ex) {
+                throw new IOException(ex);
+            }
+            List<VaultEntry> merged = VaultEntryUtils.mergeSlices(Arrays.asList(written, late));
+            late = null;
+            entryCount = merged.size();
+            if (new VaultEntryJsonFileExporter(new ExporterOptions()).exportDataToFile(
+                    tmpFile.getAbsolutePath(), merged, true) != FileExporter.RESULT_OK) {
+                throw new IOException("Can't write tag data.");
+            }
+        }
+        if (new SliceEntryJsonFileExporter(new ExporterOptions()).exportDataToFile(
+                tmpSliceFile.getAbsolutePath(), sliceEntries, true) != FileExporter.RESULT_OK) {
+            throw new IOException("Can't write tag slices.");
+        }
+    }
+
+    /**
+     * Replaces the old tag with the finished one.
+     *
+     * @throws IOException if the tag can't be replaced
+     */
+    void commit() throws IOException {
+        if (!closed) {
+            LOG.severe("Tag is committed before it was finished.");
+            throw new Error("PROGRAMMING ERROR: call finish() before commit()");
+        }
+        CliRepositoryManager.replaceAtomically(tmpFile, targetFile);
+        CliRepositoryManager.replaceAtomically(tmpSliceFile, targetSliceFile);
+        if (event.isRecording()) {
+            event.commit(entryCount, -1, targetFile.length());
+        }
+        LOG.log(Level.INFO, "Streamed {0} entries in {1} slices to {2}",
+                new Object[]{entryCount, sliceEntries.size(), targetFile.getName()});
+    }
+
+    /**
+     * Discards the temporary files unless the tag was committed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!closed) {
+                closed = true;
+                // the document is incomplete, so only the file is closed
+                out.close();
+            }
+        } finally {
+            // no-ops after a commit
+            tmpFile.delete();
+            tmpSliceFile.delete();
+        }
+    }
+
+    /**
+     * Writes all pending entries before the given timestamp without
+     * duplicates, sorted by timestamp.
+     */
+    private void flushBefore(long timestamp) throws IOException {
+        List<VaultEntry> ready = new ArrayList<>();
+        List<VaultEntry> keep = new ArrayList<>();
+        for (VaultEntry item : pending) {
+            if (item.getTimestamp().getTime() < timestamp) {
+                ready.add(item);
+            } else {
+                keep.add(item);
+            }
+        }
+        pending = keep;
+        if (ready.isEmpty()) {
+            return;
+        }
+        // duplicates have the same timestamp, so they are all in ready
+        ready = VaultEntryUtils.removeDublicates(ready);
+        ready.sort(new VaultEntryUtils());
+        try {
+            for (VaultEntry item : ready) {
+                gson.toJson(item, VaultEntry.class, writer);
+            }
+        } catch (JsonIOException ex) {
+            throw new IOException(ex);
+        }
+        entryCount += ready.size();
+        writtenUntil = Math.max(writtenUntil, timestamp);
+    }
+}
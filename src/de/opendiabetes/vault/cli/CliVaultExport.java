@@ -18,14 +18,19 @@ package de.opendiabetes.vault.cli;
 
 import de.opendiabetes.vault.data.container.SliceEntry;
 import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.data.container.VaultEntryType;
 import de.opendiabetes.vault.exporter.ExporterOptions;
 import de.opendiabetes.vault.exporter.FileExporter;
 import de.opendiabetes.vault.exporter.csv.SliceEntryCsvFileExporter;
 import de.opendiabetes.vault.exporter.csv.VaultEntryCsvFileExporter;
 import de.opendiabetes.vault.exporter.json.SliceEntryJsonFileExporter;
 import de.opendiabetes.vault.exporter.json.VaultEntryJsonFileExporter;
+import de.opendiabetes.vault.importer.ReadPredicate;
+import de.opendiabetes.vault.util.TimestampUtils;
 import de.opendiabetes.vault.util.VaultEntryUtils;
+import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.concurrent.Callable;
 import picocli.CommandLine;
@@ -50,17 +55,40 @@ public class CliVaultExport implements Callable<Void> {
     @CommandLine.Option(names = {"-c", "--compress"}, description = "Activates compression.")
     private boolean deflate;
 
+    @CommandLine.Option(names = {"--entry-type"}, paramLabel = "ENTRY-TYPE",
+            description = "Exports only entries of the given type. Can be used multiple times.")
+    private List<VaultEntryType> entryTypes;
+
+    @CommandLine.Option(names = {"--from"}, paramLabel = "yyyy.MM.dd-HH:mm",
+            description = "Exports only entries at or after the given time.")
+    private String from;
+
+    @CommandLine.Option(names = {"--until"}, paramLabel = "yyyy.MM.dd-HH:mm",
+            description = "Exports only entries at or before the given time.")
+    private String until;
+
     @Override
     public Void call() throws Exception {
         CliRepositoryManager repMan = CliManager.openRepository();
 
+        // restrictions are pushed down into the repository reader
+        ReadPredicate predicate = ReadPredicate.all();
+        try {
+            Date fromDate = from != null ? TimestampUtils.createCleanTimestamp(from) : null;
+            Date untilDate = until != null ? TimestampUtils.createCleanTimestamp(until) : null;
+            predicate = ReadPredicate.ofTypes(entryTypes)
+                    .intersect(ReadPredicate.between(fromDate, untilDate));
+        } catch (ParseException ex) {
+            CliManager.exitWithError("Can't parse time restriction. Use format yyyy.MM.dd-HH:mm. Exit.", repMan);
+        }
+
         // gather data
         List<VaultEntry> exportData = null;
         List<SliceEntry> exportSlices = null;
         if (tag != null && !tag.isEmpty()) {
             // export from tag
             if (repMan.getTagNameList().contains(tag)) {
-                List<List<VaultEntry>> tmpData = repMan.getDataFromTag(tag);
+                List<List<VaultEntry>> tmpData = repMan.getDataFromTag(tag, predicate);
                 exportSlices = VaultEntryUtils.computeSlicesEntries(tmpData);
                 exportData = VaultEntryUtils.mergeSlices(tmpData);
             } else {
@@ -68,7 +96,7 @@ public class CliVaultExport implements Callable<Void> {
             }
         } else {
             // export complete data
-            exportData = repMan.getDataFromMaster();
+            exportData = repMan.getDataFromMaster(predicate);
         }
 
         if (exportData == null || exportData.isEmpty()) {
@@ -44,12 +44,13 @@ public class CliVaultInit implements Callable<Void> {
 
     @Override
     public Void call() throws Exception {
-        File targetDir = new File(new File(repositoryPath).getAbsolutePath()
+        File repositoryDir = CliManager.resolveFile(repositoryPath);
+        File targetDir = new File(repositoryDir.getAbsolutePath()
                 .concat(File.separator).concat(CliRepositoryManager.DIR_VAULT));
 
         if (targetDir.exists() && !force) {
             System.err.println("\"" + repositoryPath + "\" seems to be a ODV repository. Use --force to override. Exit.");
-            System.exit(-1);
+            CliManager.exit(-1);
         } else if (targetDir.exists() && force) {
             // delete old repository
             Files.walk(Paths.get(targetDir.getAbsolutePath()))
@@ -60,11 +61,11 @@ public class CliVaultInit implements Callable<Void> {
 
         // create new repository
         CliRepositoryManager repMan = CliRepositoryManager.initRepository(
-                new File(repositoryPath).getAbsolutePath());
+                repositoryDir.getAbsolutePath());
 
         if (repMan == null) {
             System.err.println("Can't create repository. Exit.");
-            System.exit(-1);
+            CliManager.exit(-1);
         }
 
         System.out.println("Repository \"" + repositoryPath
@@ -40,6 +40,11 @@ public class CliVaultStatus implements Callable<Void> {
         } else {
             // print journal            
             System.out.println(repMan.readJournal());
+            System.out.println(repMan.getResultCache().describe());
+            String datasetCache = CliRepositoryManager.describeDatasetCache();
+            if (datasetCache != null) {
+                System.out.println(datasetCache);
+            }
         }
 
         repMan.closeJournal();
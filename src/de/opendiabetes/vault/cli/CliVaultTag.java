@@ -20,11 +20,16 @@ import de.opendiabetes.vault.data.container.SliceEntry;
 import de.opendiabetes.vault.data.container.VaultEntry;
 import de.opendiabetes.vault.importer.FileImporter;
 import de.opendiabetes.vault.importer.ImporterOptions;
+import de.opendiabetes.vault.importer.ReadPredicate;
 import de.opendiabetes.vault.importer.csv.SliceEntryCsvFileImporter;
 import de.opendiabetes.vault.importer.json.SliceEntryJsonFileImporter;
+import de.opendiabetes.vault.processing.ProcessingContainer;
+import de.opendiabetes.vault.processing.filter.FilterPushdown;
 import de.opendiabetes.vault.util.EasyFormatter;
+import de.opendiabetes.vault.util.TimestampUtils;
 import de.opendiabetes.vault.util.VaultEntryUtils;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -67,6 +72,10 @@ public class CliVaultTag implements Callable<Void> {
                 arity = "2", paramLabel = "FILE TAG",
                 description = "Creates a tag from a slice file (ODV_CSV oder ODV_JSON). Source is always the complete dataset. Make sure to import data first.")
         private List<String> slice;
+
+        @CommandLine.Option(required = true, names = {"--refresh"}, paramLabel = "TAG",
+                description = "Re-runs the processing container of a tag created by process on the data merged since the tag was created or refreshed and appends the result to the tag.")
+        private String refresh;
     }
 
     @Override
@@ -144,7 +153,7 @@ public class CliVaultTag implements Callable<Void> {
                 CliManager.exitWithError("No ODV_CSV or ODV_JSON slice file given. Exit.", repMan);
             }
 
-            slicesFile = new File(fileName);
+            slicesFile = CliManager.resolveFile(fileName);
             if (!slicesFile.exists() || !slicesFile.canRead() || slicesFile.isDirectory()) {
                 CliManager.exitWithError("Can't open given slice file. Exit.", repMan);
             }
@@ -172,10 +181,85 @@ public class CliVaultTag implements Callable<Void> {
             repMan.createTagFromData(slicedData, tagName);
             
             System.out.println("Finished successfully.");
+        } else if (exclusive.refresh != null && !exclusive.refresh.isEmpty()) {
+            // refresh a tag with new data
+            if (!repMan.getTagNameList().contains(exclusive.refresh)) {
+                CliManager.exitWithError("Tag name not found. Exit.", repMan);
+            }
+            refreshTag(repMan, exclusive.refresh);
         }
 
         repMan.closeJournal();
         return null;
     }
 
+    /**
+     * Processes only the input data after the high water mark of the tag,
+     * plus the margin the processing container declares, and extends the tag
+     * with the results after the high water mark, see
+     * {@link CliRepositoryManager#extendTag(java.lang.String, java.util.List, long, long)}.
+     */
+    private void refreshTag(CliRepositoryManager repMan, String tag) throws Exception {
+        CliTagDefinition definition = repMan.readTagDefinition(tag);
+        if (definition == null) {
+            CliManager.exitWithError("Tag has no recorded definition. Only tags created with process can be refreshed. Exit.", repMan);
+        }
+        if (!definition.isContainerUnchanged()) {
+            CliManager.exitWithError("Processing container " + definition.getContainerFiles()
+                    + " was changed or removed since the tag was created. Create the tag again with process. Exit.", repMan);
+        }
+        List<ProcessingContainer> processingContainers = new ArrayList<>();
+        for (File containerFile : definition.getContainerFiles()) {
+            processingContainers.add(CliProcessing.loadContainer(containerFile, repMan));
+        }
+
+        // read the new data and the margin before it
+        long highWaterMark = definition.getHighWaterMark();
+        int margin = CliProcessing.marginOf(processingContainers);
+        Date from = highWaterMark == Long.MIN_VALUE ? null
+                : TimestampUtils.addMinutesToTimestamp(new Date(highWaterMark), -1 * margin);
+        ReadPredicate predicate = FilterPushdown.derive(processingContainers.get(0).getInputFilter())
+                .intersect(ReadPredicate.between(from, null));
+        repMan.writeLineToJournal("Refresh tag " + tag + " with input " + predicate);
+
+        List<List<VaultEntry>> inputData;
+        if (definition.getInputTag().equalsIgnoreCase(CliRepositoryManager.COMPLETE_DATA)) {
+            inputData = new ArrayList<>();
+            inputData.add(repMan.getDataFromMaster(predicate));
+        } else if (repMan.getTagNameList().contains(definition.getInputTag())) {
+            inputData = repMan.getDataFromTag(definition.getInputTag(), predicate);
+        } else {
+            CliManager.exitWithError("Input tag \"" + definition.getInputTag() + "\" does not exist anymore. Exit.", repMan);
+            return;
+        }
+
+        long newHighWaterMark = CliProcessing.lastTimestampOf(inputData);
+        if (newHighWaterMark <= highWaterMark) {
+            System.out.println("Tag is up to date.");
+            return;
+        }
+
+        // input slices starting at or before the high water mark were processed
+        // in part already, their results continue the last slice of the tag
+        long continuedUntil = highWaterMark;
+        for (List<VaultEntry> slice : inputData) {
+            if (!slice.isEmpty() && slice.get(0).getTimestamp().getTime() <= highWaterMark) {
+                continuedUntil = Math.max(continuedUntil, slice.get(slice.size() - 1).getTimestamp().getTime());
+            }
+        }
+
+        List<List<VaultEntry>> outputData = inputData;
+        for (ProcessingContainer processingContainer : processingContainers) {
+            if (outputData != null) {
+                outputData = CliProcessing.runContainer(processingContainer, outputData, 0);
+            }
+        }
+        int changedSlices = 0;
+        if (outputData != null && !outputData.isEmpty()) {
+            // results up to the high water mark are already in the tag
+            changedSlices = repMan.extendTag(tag, outputData, highWaterMark, continuedUntil);
+        }
+        repMan.writeTagDefinition(tag, definition.advance(newHighWaterMark, margin));
+        System.out.println("Refreshed tag " + tag + ", " + changedSlices + " slices appended or extended.");
+    }
 }
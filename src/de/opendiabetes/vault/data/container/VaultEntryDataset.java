@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.data.container;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * List of VaultEntries with an attached {@link VaultEntryTypeIndex}. The
+ * index is built on first access and rebuilt after the list was modified.
+ * Like ArrayList, this class is not threadsafe.
+ *
+ * @author juehv
+ */
+public class VaultEntryDataset extends ArrayList<VaultEntry> {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient VaultEntryTypeIndex typeIndex;
+    private transient int indexModCount;
+
+    public VaultEntryDataset() {
+        super();
+    }
+
+    public VaultEntryDataset(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    public VaultEntryDataset(Collection<? extends VaultEntry> entries) {
+        super(entries);
+    }
+
+    /**
+     * @return index of the current content, built if necessary
+     */
+    public VaultEntryTypeIndex getTypeIndex() {
+        if (typeIndex == null || indexModCount != modCount) {
+            typeIndex = VaultEntryTypeIndex.build(this);
+            indexModCount = modCount;
+        }
+        return typeIndex;
+    }
+
+    /**
+     * Attaches an index that was built or loaded elsewhere for the current
+     * content, e.g. a persisted index of the repository.
+     *
+     * @param index index for the current content
+     * @return true if the index was attached, false if it does not fit
+     */
+    public boolean attachTypeIndex(VaultEntryTypeIndex index) {
+        if (index == null || index.size() != size()) {
+            return false;
+        }
+        typeIndex = index;
+        indexModCount = modCount;
+        return true;
+    }
+
+    @Override
+    public VaultEntry set(int index, VaultEntry element) {
+        // set does not count as structural modification
+        typeIndex = null;
+        return super.set(index, element);
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.data.container;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Secondary index over a dataset. Maps every VaultEntryType to the sorted
+ * positions of its entries within the dataset. Instances are immutable and
+ * belong to exactly one state of one dataset, see {@link VaultEntryDataset}.
+ *
+ * @author juehv
+ */
+public final class VaultEntryTypeIndex {
+
+    private static final int FILE_MAGIC = 0x4f445649; // "ODVI"
+    private static final int FILE_VERSION = 1;
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final Map<VaultEntryType, int[]> positions;
+    private final int size;
+    private final boolean sorted;
+
+    private VaultEntryTypeIndex(Map<VaultEntryType, int[]> positions, int size, boolean sorted) {
+        this.positions = positions;
+        this.size = size;
+        this.sorted = sorted;
+    }
+
+    /**
+     * Builds the index with two passes over the data.
+     *
+     * @param data dataset to index
+     * @return index of the dataset
+     */
+    public static VaultEntryTypeIndex build(List<VaultEntry> data) {
+        int[] counts = new int[VaultEntryType.values().length];
+        boolean sorted = true;
+        long lastTimestamp = Long.MIN_VALUE;
+        for (VaultEntry entry : data) {
+            counts[entry.getType().ordinal()]++;
+            long timestamp = entry.getTimestamp().getTime();
+            sorted &= timestamp >= lastTimestamp;
+            lastTimestamp = timestamp;
+        }
+
+        VaultEntryType[] types = VaultEntryType.values();
+        int[][] arrays = new int[types.length][];
+        for (int i = 0; i < types.length; i++) {
+            arrays[i] = counts[i] > 0 ? new int[counts[i]] : NO_POSITIONS;
+        }
+        int[] fill = new int[types.length];
+        int position = 0;
+        for (VaultEntry entry : data) {
+            int ordinal = entry.getType().ordinal();
+            arrays[ordinal][fill[ordinal]++] = position++;
+        }
+
+        Map<VaultEntryType, int[]> positions = new EnumMap<>(VaultEntryType.class);
+        for (int i = 0; i < types.length; i++) {
+            if (arrays[i].length > 0) {
+                positions.put(types[i], arrays[i]);
+            }
+        }
+        return new VaultEntryTypeIndex(positions, data.size(), sorted);
+    }
+
+    /**
+     * Returns the index attached to the given dataset.
+     *
+     * @param data any dataset
+     * @return the index or null if the dataset is not a
+     * {@link VaultEntryDataset}
+     */
+    public static VaultEntryTypeIndex of(List<VaultEntry> data) {
+        if (data instanceof VaultEntryDataset) {
+            return ((VaultEntryDataset) data).getTypeIndex();
+        }
+        return null;
+    }
+
+    /**
+     * @param type entry type
+     * @return ascending positions of the entries of the given type. The array
+     * is shared and must not be modified.
+     */
+    public int[] positionsOf(VaultEntryType type) {
+        int[] result = positions.get(type);
+        return result != null ? result : NO_POSITIONS;
+    }
+
+    /**
+     * @param type entry type
+     * @return number of entries of the given type
+     */
+    public int count(VaultEntryType type) {
+        return positionsOf(type).length;
+    }
+
+    /**
+     * @param data the indexed dataset
+     * @param type entry type
+     * @return entries of the given type in dataset order
+     */
+    public List<VaultEntry> entriesOf(List<VaultEntry> data, VaultEntryType type) {
+        int[] typePositions = positionsOf(type);
+        List<VaultEntry> result = new ArrayList<>(typePositions.length);
+        for (int position : typePositions) {
+            result.add(data.get(position));
+        }
+        return result;
+    }
+
+    /**
+     * @return number of entries of the indexed dataset
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the indexed dataset is sorted by timestamp
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Derives the index of a contiguous part of the dataset without touching
+     * the entries.
+     *
+     * @param fromIndex first position (inclusive)
+     * @param toIndex last position (exclusive)
+     * @return index of the sub list from fromIndex to toIndex
+     */
+    public VaultEntryTypeIndex subIndex(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Range " + fromIndex + " - " + toIndex
+                    + " out of dataset size " + size);
+        }
+        Map<VaultEntryType, int[]> subPositions = new EnumMap<>(VaultEntryType.class);
+        for (Map.Entry<VaultEntryType, int[]> item : positions.entrySet()) {
+            int[] array = item.getValue();
+            int start = lowerBound(array, fromIndex);
+            int end = lowerBound(array, toIndex);
+            if (end > start) {
+                int[] shifted = Arrays.copyOfRange(array, start, end);
+                for (int i = 0; i < shifted.length; i++) {
+                    shifted[i] -= fromIndex;
+                }
+                subPositions.put(item.getKey(), shifted);
+            }
+        }
+        return new VaultEntryTypeIndex(subPositions, toIndex - fromIndex, sorted);
+    }
+
+    private static int lowerBound(int[] array, int value) {
+        int index = Arrays.binarySearch(array, value);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Writes the index in a compact binary format.
+     *
+     * @param out target stream
+     * @throws IOException on write errors
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(FILE_VERSION);
+        out.writeInt(size);
+        out.writeBoolean(sorted);
+        out.writeInt(positions.size());
+        for (Map.Entry<VaultEntryType, int[]> item : positions.entrySet()) {
+            out.writeUTF(item.getKey().name());
+            out.writeInt(item.getValue().length);
+            for (int position : item.getValue()) {
+                out.writeInt(position);
+            }
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo(DataOutputStream)}.
+     *
+     * @param in source stream
+     * @return the index
+     * @throws IOException on read errors or if the stream does not contain a
+     * valid index
+     */
+    public static VaultEntryTypeIndex readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+            throw new IOException("Not a supported type index.");
+        }
+        int size = in.readInt();
+        boolean sorted = in.readBoolean();
+        int typeCount = in.readInt();
+        Map<VaultEntryType, int[]> positions = new EnumMap<>(VaultEntryType.class);
+        for (int i = 0; i < typeCount; i++) {
+            VaultEntryType type;
+            try {
+                type = VaultEntryType.valueOf(in.readUTF());
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Unknown entry type in type index.", ex);
+            }
+            int[] array = new int[in.readInt()];
+            for (int j = 0; j < array.length; j++) {
+                array[j] = in.readInt();
+                if (array[j] < 0 || array[j] >= size) {
+                    throw new IOException("Corrupted type index.");
+                }
+            }
+            positions.put(type, array);
+        }
+        return new VaultEntryTypeIndex(positions, size, sorted);
+    }
+}
@@ -0,0 +1,594 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.examples;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.data.container.VaultEntryType;
+import de.opendiabetes.vault.util.VaultEntryUtils;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.logging.Logger;
+
+/**
+ * Generator for synthetic but physiologically plausible data of patients
+ * with insulin pump and CGM system, e.g. for benchmarks and stress tests.
+ * <p>
+ * For each patient a simple glucose model is simulated in 5 minute steps:
+ * carbohydrates raise and insulin lowers the glucose along typical absorption
+ * curves, exercise and the dawn phenomenon add their effects. The patient
+ * eats three meals and some snacks a day, boluses for most of them, corrects
+ * highs and treats lows. The pump records the basal profile, temp basals,
+ * suspensions and a site change every few days. The CGM reports every 5
+ * minutes, except during sensor warm-up and signal losses. Heart rate is
+ * optional.
+ * <p>
+ * The data is generated one day at a time and the patients are merged by
+ * timestamp, so only one day per patient is in memory, regardless of the
+ * number of days. Entries are returned sorted by timestamp, the source of an
+ * entry names its patient.
+ *
+ * @author juehv
+ */
+public class SyntheticDataGenerator implements Iterator<VaultEntry> {
+
+    private static final Logger LOG = Logger.getLogger(SyntheticDataGenerator.class.getName());
+
+    private final PriorityQueue<Patient> patients;
+
+    public SyntheticDataGenerator(SyntheticDataOptions options) {
+        if (options == null) {
+            String msg = "PROGRAMMING ERROR: YOU HAVE TO PROVIDE GENERATOR OPTIONS";
+            LOG.severe(msg);
+            throw new Error(msg);
+        }
+        if (options.patients < 1 || options.days < 0 || options.startDate == null
+                || options.heartRateIntervalInSeconds < 1) {
+            throw new IllegalArgumentException("Invalid generator options.");
+        }
+
+        patients = new PriorityQueue<>(options.patients, new Comparator<Patient>() {
+            @Override
+            public int compare(Patient o1, Patient o2) {
+                int result = o1.next.getTimestamp().compareTo(o2.next.getTimestamp());
+                return result != 0 ? result : Integer.compare(o1.number, o2.number);
+            }
+        });
+        for (int i = 0; i < options.patients; i++) {
+            Patient patient = new Patient(options, options.firstPatient + i);
+            if (patient.advance()) {
+                patients.add(patient);
+            }
+        }
+    }
+
+    /**
+     * Convenience method for generating data in memory.
+     *
+     * @param options generator options
+     * @param maxEntries maximum number of entries
+     * @return the first entries of the generated data
+     */
+    public static List<VaultEntry> generateVaultEntries(SyntheticDataOptions options, int maxEntries) {
+        List<VaultEntry> result = new ArrayList<>();
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(options);
+        while (result.size() < maxEntries && generator.hasNext()) {
+            result.add(generator.next());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !patients.isEmpty();
+    }
+
+    @Override
+    public VaultEntry next() {
+        Patient patient = patients.poll();
+        if (patient == null) {
+            throw new NoSuchElementException();
+        }
+        VaultEntry result = patient.next;
+        if (patient.advance()) {
+            patients.add(patient);
+        }
+        return result;
+    }
+
+    /**
+     * Simulation of one patient.
+     */
+    private static final class Patient {
+
+        private static final long MINUTE = 60000L;
+        private static final long HOUR = 60 * MINUTE;
+        private static final long DAY = 24 * HOUR;
+        private static final int STEP_IN_MINUTES = 5;
+        private static final long STEP = STEP_IN_MINUTES * MINUTE;
+        // time to peak of the insulin action in minutes
+        private static final double INSULIN_PEAK = 55;
+        // doses older than this have no effect any more
+        private static final long DOSE_DURATION = 8 * HOUR;
+
+        private final SyntheticDataOptions options;
+        private final int number;
+        private final String source;
+        private final Random random;
+        private final long start;
+        private final int startDayOfWeek;
+
+        // patient parameters
+        private final double insulinSensitivity; // mg/dl per U
+        private final double carbRatio; // g per U
+        private final double[] basalProfile; // U/h for each hour
+        private final double dawnPhenomenon; // mg/dl per step
+        private final double bolusCompliance; // share of meals with bolus
+        private final int restingHeartRate;
+
+        // simulation state
+        private final List<Dose> insulin = new ArrayList<>();
+        private final List<Dose> carbs = new ArrayList<>();
+        private double glucose;
+        private double noise;
+        private double dailyBias;
+        private long lastBolus = Long.MIN_VALUE / 2;
+        private long lastTreatment = Long.MIN_VALUE / 2;
+        private double tempRate;
+        private long tempEnd = Long.MIN_VALUE;
+        private boolean suspended;
+        private long suspendedSince;
+        private long sensorStart;
+        private long sensorWarmupEnd;
+        private long sensorEnd;
+        private double sensorBias;
+        private int sensorOffsetInMinutes;
+        private long gapStart = Long.MIN_VALUE;
+        private long gapEnd = Long.MIN_VALUE;
+        private long nextSiteChange;
+        private double heartRate;
+
+        // output
+        private int day = -1;
+        private List<VaultEntry> buffer = new ArrayList<>();
+        private int position;
+        private VaultEntry next;
+
+        Patient(SyntheticDataOptions options, int number) {
+            this.options = options;
+            this.number = number;
+            this.source = String.format("patient-%03d", number);
+            this.random = new Random(options.seed * 1000003L + number);
+            this.start = options.startDate.getTime();
+            Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+            calendar.setTime(options.startDate);
+            this.startDayOfWeek = calendar.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY;
+
+            double weight = 50 + random.nextDouble() * 50;
+            double totalDailyDose = weight * (0.45 + random.nextDouble() * 0.3);
+            insulinSensitivity = 1800 / totalDailyDose;
+            carbRatio = 500 / totalDailyDose;
+            basalProfile = new double[24];
+            double basalRate = totalDailyDose * 0.45 / 24;
+            for (int hour = 0; hour < 24; hour++) {
+                double factor = hour >= 3 && hour < 8 ? 1.2 : hour >= 12 && hour < 18 ? 0.9 : 1.0;
+                basalProfile[hour] = Math.max(0.05, roundToPumpSteps(basalRate * factor));
+            }
+            dawnPhenomenon = random.nextDouble() * 0.8;
+            bolusCompliance = 0.85 + random.nextDouble() * 0.13;
+            restingHeartRate = 55 + random.nextInt(20);
+
+            glucose = 100 + random.nextDouble() * 60;
+            heartRate = restingHeartRate;
+            // sensor and infusion set are already in use
+            startSensor(start - random.nextInt(9 * 24 * 60) * MINUTE);
+            nextSiteChange = start + random.nextInt(3 * 24 * 60) * MINUTE;
+        }
+
+        /**
+         * Moves to the next entry.
+         *
+         * @return false if the patient has no more entries
+         */
+        boolean advance() {
+            while (position >= buffer.size()) {
+                if (day + 1 >= options.days) {
+                    next = null;
+                    buffer = null;
+                    return false;
+                }
+                day++;
+                buffer = generateDay(start + day * DAY, (startDayOfWeek + day) % 7);
+                position = 0;
+            }
+            next = buffer.get(position++);
+            return true;
+        }
+
+        /**
+         * Simulates one day. All entries are within the day.
+         *
+         * @param dayOfWeek 0 is sunday
+         * @return entries of the day sorted by timestamp
+         */
+        private List<VaultEntry> generateDay(long dayStart, int dayOfWeek) {
+            List<VaultEntry> result = new ArrayList<>();
+            boolean weekend = dayOfWeek == 0 || dayOfWeek == 6;
+            int lateStart = weekend ? 60 : 0;
+            dailyBias = random.nextGaussian() * 0.3;
+
+            // the pump records the profile every midnight and at every change
+            for (int hour = 0; hour < 24; hour++) {
+                if (hour == 0 || basalProfile[hour] != basalProfile[hour - 1]) {
+                    add(result, VaultEntryType.BASAL_PROFILE, dayStart + hour * HOUR, basalProfile[hour]);
+                }
+            }
+
+            // plan the day
+            List<Action> actions = new ArrayList<>();
+            if (random.nextDouble() > 0.1) {
+                planMeal(actions, dayStart, 420 + lateStart, 30, 35, true);
+            }
+            planMeal(actions, dayStart, 750 + lateStart / 2, 40, 55, true);
+            planMeal(actions, dayStart, 1140, 50, 60, true);
+            if (random.nextDouble() < 0.5) {
+                planMeal(actions, dayStart, 960, 10, 20, random.nextDouble() < 0.3);
+            }
+            if (random.nextDouble() < 0.2) {
+                planMeal(actions, dayStart, 1290, 10, 20, false);
+            }
+            long exerciseStart = Long.MIN_VALUE;
+            long exerciseEnd = Long.MIN_VALUE;
+            int exerciseIntensity = 0;
+            if (random.nextDouble() < (weekend ? 0.35 : 0.25)) {
+                int duration = 30 + random.nextInt(61);
+                exerciseStart = dayStart + (1020 + random.nextInt(150)) * MINUTE;
+                exerciseEnd = exerciseStart + duration * MINUTE;
+                exerciseIntensity = 1 + random.nextInt(3);
+                actions.add(new Action(exerciseStart, Action.EXERCISE, exerciseIntensity, duration));
+                if (random.nextDouble() < 0.6) {
+                    actions.add(new Action(exerciseStart - HOUR, Action.TEMP_BASAL, 0.5, duration + 60));
+                }
+            }
+            if (random.nextDouble() < 0.3) {
+                gapStart = dayStart + random.nextInt(24 * 60) * MINUTE;
+                gapEnd = gapStart + (15 + random.nextInt(166)) * MINUTE;
+            }
+            actions.sort(new Comparator<Action>() {
+                @Override
+                public int compare(Action o1, Action o2) {
+                    return Long.compare(o1.time, o2.time);
+                }
+            });
+
+            int nextAction = 0;
+            for (long time = dayStart; time < dayStart + DAY; time += STEP) {
+                long stepEnd = time + STEP;
+                while (nextAction < actions.size() && actions.get(nextAction).time < stepEnd) {
+                    execute(result, actions.get(nextAction++));
+                }
+                simulatePump(result, time, stepEnd);
+                simulateSensor(result, time, stepEnd);
+                simulateTreatments(result, time);
+                boolean exercising = time >= exerciseStart && time < exerciseEnd;
+                simulateGlucose(time, stepEnd, exercising ? exerciseIntensity : 0);
+                if ((time - dayStart) % HOUR == 0) {
+                    long outdated = time - DOSE_DURATION;
+                    insulin.removeIf(item -> item.time < outdated);
+                    carbs.removeIf(item -> item.time < outdated);
+                }
+            }
+
+            if (options.heartRate) {
+                long interval = options.heartRateIntervalInSeconds * 1000L;
+                for (long time = dayStart; time < dayStart + DAY; time += interval) {
+                    int minuteOfDay = (int) ((time - dayStart) / MINUTE);
+                    boolean sleeping = minuteOfDay < 390 + lateStart || minuteOfDay >= 1380;
+                    double target = restingHeartRate + (sleeping ? -6 : 10);
+                    if (time >= exerciseStart && time < exerciseEnd) {
+                        target += 20 + exerciseIntensity * 25;
+                    }
+                    heartRate += (target - heartRate) * 0.15 + random.nextGaussian() * 1.5;
+                    add(result, VaultEntryType.HEART_RATE, time, Math.round(heartRate));
+                }
+            }
+
+            result.sort(new VaultEntryUtils());
+            return result;
+        }
+
+        /**
+         * Plans a meal around the given time of day and its bolus.
+         */
+        private void planMeal(List<Action> actions, long dayStart, int minuteOfDay,
+                int minCarbs, int carbRange, boolean bolusIntended) {
+            int minute = Math.max(300, Math.min(1380, minuteOfDay + (int) (random.nextGaussian() * 30)));
+            long time = dayStart + minute * MINUTE;
+            double grams = minCarbs + random.nextInt(carbRange);
+            // slow meals for large amounts of carbohydrates
+            double absorption = 20 + random.nextDouble() * 15 + grams / 4;
+            if (!bolusIntended) {
+                actions.add(new Action(time, Action.SNACK, grams, absorption));
+            } else if (random.nextDouble() < bolusCompliance) {
+                actions.add(new Action(time, Action.MEAL, grams, absorption));
+                actions.add(new Action(time - random.nextInt(21) * MINUTE, Action.BOLUS, grams, 0));
+            } else {
+                // forgotten bolus, the meal isn't logged either
+                actions.add(new Action(time, Action.MEAL, grams, absorption));
+            }
+        }
+
+        private void execute(List<VaultEntry> result, Action action) {
+            switch (action.kind) {
+                case Action.SNACK:
+                    // snacks are logged without bolus, meals only with it
+                    add(result, VaultEntryType.MEAL_MANUAL, action.time, action.value);
+                    carbs.add(new Dose(action.time, action.value, action.extension));
+                    break;
+                case Action.MEAL:
+                    carbs.add(new Dose(action.time, action.value, action.extension));
+                    break;
+                case Action.BOLUS:
+                    if (random.nextDouble() < 0.15) {
+                        add(result, VaultEntryType.GLUCOSE_BG, action.time, Math.round(glucose + random.nextGaussian() * 6));
+                    }
+                    double units = action.value / carbRatio * (1 + random.nextGaussian() * 0.15) + correction();
+                    units = Math.max(0.05, roundToPumpSteps(units));
+                    add(result, VaultEntryType.MEAL_BOLUS_CALCULATOR, action.time, action.value);
+                    if (action.value >= 80 && random.nextDouble() < 0.3) {
+                        // delivered over two hours
+                        VaultEntry entry = add(result, VaultEntryType.BOLUS_SQUARE, action.time, units);
+                        entry.setValueExtension(120.0);
+                        for (long time = action.time; time < action.time + 2 * HOUR; time += STEP) {
+                            insulin.add(new Dose(time, units / 24, INSULIN_PEAK));
+                        }
+                    } else {
+                        add(result, VaultEntryType.BOLUS_NORMAL, action.time, units);
+                        insulin.add(new Dose(action.time, units, INSULIN_PEAK));
+                    }
+                    lastBolus = action.time;
+                    break;
+                case Action.EXERCISE:
+                    VaultEntryType type = action.value == 1 ? VaultEntryType.EXERCISE_LOW
+                            : action.value == 2 ? VaultEntryType.EXERCISE_MID : VaultEntryType.EXERCISE_HIGH;
+                    add(result, type, action.time, action.extension);
+                    break;
+                case Action.TEMP_BASAL:
+                    setTempBasal(result, action.time, basalRateAt(action.time) * action.value, (int) action.extension);
+                    break;
+                default:
+                    throw new AssertionError("PROGRAMMING ERROR: Missing case for this action!");
+            }
+        }
+
+        /**
+         * Site changes every three days, suspension during lows.
+         */
+        private void simulatePump(List<VaultEntry> result, long time, long stepEnd) {
+            if (nextSiteChange < stepEnd) {
+                if (random.nextDouble() < 0.1) {
+                    add(result, VaultEntryType.PUMP_RESERVOIR_EMPTY, time, 0);
+                }
+                add(result, VaultEntryType.PUMP_REWIND, time + MINUTE, 0);
+                add(result, VaultEntryType.PUMP_FILL, time + 2 * MINUTE, 0);
+                add(result, VaultEntryType.PUMP_PRIME, time + 3 * MINUTE, roundToPumpSteps(8 + random.nextDouble() * 8));
+                add(result, VaultEntryType.PUMP_PRIME, time + 4 * MINUTE, 0.3);
+                nextSiteChange += (3 * 24 * 60 + random.nextInt(12 * 60) - 6 * 60) * MINUTE;
+            }
+            if (!suspended && glucose < 65 && random.nextDouble() < 0.3) {
+                add(result, VaultEntryType.PUMP_SUSPEND, time, 0);
+                suspended = true;
+                suspendedSince = time;
+            } else if (suspended && (glucose > 90 || time - suspendedSince >= 2 * HOUR)) {
+                add(result, VaultEntryType.PUMP_UNSUSPEND, time, 0);
+                suspended = false;
+            }
+        }
+
+        /**
+         * Sensor sessions of ten days with warm-up and signal losses.
+         */
+        private void simulateSensor(List<VaultEntry> result, long time, long stepEnd) {
+            if (sensorEnd < stepEnd && sensorEnd >= time) {
+                add(result, VaultEntryType.CGM_SENSOR_FINISHED, sensorEnd, 0);
+                // the next sensor is started some time later
+                sensorStart = sensorEnd + (10 + random.nextInt(171)) * MINUTE;
+            }
+            if (sensorStart < stepEnd && sensorStart >= time) {
+                add(result, VaultEntryType.CGM_SENSOR_START, sensorStart, 0);
+                startSensor(sensorStart);
+            }
+            if (sensorWarmupEnd < stepEnd && sensorWarmupEnd >= time) {
+                add(result, VaultEntryType.GLUCOSE_CGM_CALIBRATION, sensorWarmupEnd,
+                        Math.round(glucose + random.nextGaussian() * 6));
+            }
+            if (gapStart < stepEnd && gapStart >= time && isSensorActive(gapStart)) {
+                add(result, VaultEntryType.CGM_CONNECTION_ERROR, gapStart, 0);
+            }
+
+            long readingTime = time + sensorOffsetInMinutes * MINUTE;
+            if (isSensorActive(readingTime) && (readingTime < gapStart || readingTime >= gapEnd)) {
+                double reading = glucose * sensorBias + random.nextGaussian() * 3;
+                add(result, VaultEntryType.GLUCOSE_CGM, readingTime, Math.max(40, Math.min(400, Math.round(reading))));
+            }
+        }
+
+        /**
+         * Corrections of highs and treatment of lows.
+         */
+        private void simulateTreatments(List<VaultEntry> result, long time) {
+            if (glucose > 250 && time - lastBolus > 2 * HOUR && random.nextDouble() < 0.15) {
+                if (random.nextDouble() < 0.5) {
+                    add(result, VaultEntryType.GLUCOSE_BG, time, Math.round(glucose + random.nextGaussian() * 6));
+                }
+                double units = roundToPumpSteps(correction());
+                add(result, VaultEntryType.BOLUS_NORMAL, time, units);
+                insulin.add(new Dose(time, units, INSULIN_PEAK));
+                lastBolus = time;
+            }
+            if (glucose < 70 && time - lastTreatment > 20 * MINUTE && random.nextDouble() < 0.7) {
+                double grams = 15 + random.nextInt(6);
+                add(result, VaultEntryType.MEAL_MANUAL, time, grams);
+                carbs.add(new Dose(time, grams, 15));
+                lastTreatment = time;
+            }
+            if (!suspended && time >= tempEnd) {
+                if (glucose < 85 && random.nextDouble() < 0.1) {
+                    setTempBasal(result, time, 0, 30);
+                } else if (glucose > 220 && random.nextDouble() < 0.02) {
+                    setTempBasal(result, time, basalRateAt(time) * 1.3, 120);
+                }
+            }
+        }
+
+        /**
+         * Moves the glucose to the end of the step.
+         */
+        private void simulateGlucose(long time, long stepEnd, int exerciseIntensity) {
+            // basal which differs from the profile acts like a bolus
+            double basalDifference = (actualBasalRateAt(time) - basalRateAt(time)) * STEP_IN_MINUTES / 60;
+            if (basalDifference != 0) {
+                insulin.add(new Dose(time, basalDifference, INSULIN_PEAK));
+            }
+
+            double insulinEffect = 0;
+            for (Dose dose : insulin) {
+                insulinEffect += dose.amount * dose.absorbedBetween(time, stepEnd);
+            }
+            double carbEffect = 0;
+            for (Dose dose : carbs) {
+                carbEffect += dose.amount * dose.absorbedBetween(time, stepEnd);
+            }
+            double sensitivity = exerciseIntensity > 0 ? 1.3 : 1.0;
+            double delta = carbEffect * insulinSensitivity / carbRatio
+                    - insulinEffect * insulinSensitivity * sensitivity
+                    - exerciseIntensity * 1.2
+                    + dailyBias
+                    + (115 - glucose) * 0.01;
+            int minuteOfDay = (int) ((time - start) % DAY / MINUTE);
+            if (minuteOfDay >= 240 && minuteOfDay < 480) {
+                delta += dawnPhenomenon;
+            }
+            if (glucose < 70) {
+                // counter regulation
+                delta += (70 - glucose) * 0.1;
+            }
+            noise = noise * 0.7 + random.nextGaussian() * 1.2;
+            glucose = Math.max(35, Math.min(500, glucose + delta + noise));
+        }
+
+        private double correction() {
+            return glucose > 150 ? (glucose - 120) / insulinSensitivity : 0;
+        }
+
+        private void startSensor(long time) {
+            sensorStart = time;
+            sensorWarmupEnd = time + 2 * HOUR;
+            sensorEnd = time + 10 * DAY;
+            sensorBias = 1 + random.nextGaussian() * 0.05;
+            sensorOffsetInMinutes = random.nextInt(STEP_IN_MINUTES);
+        }
+
+        private boolean isSensorActive(long time) {
+            return time >= sensorWarmupEnd && time < sensorEnd;
+        }
+
+        private void setTempBasal(List<VaultEntry> result, long time, double rate, int durationInMinutes) {
+            tempRate = roundToPumpSteps(rate);
+            tempEnd = time + durationInMinutes * MINUTE;
+            VaultEntry entry = add(result, VaultEntryType.BASAL_TEMP, time, tempRate);
+            entry.setValueExtension((double) durationInMinutes);
+        }
+
+        private double basalRateAt(long time) {
+            return basalProfile[(int) ((time - start) % DAY / HOUR)];
+        }
+
+        private double actualBasalRateAt(long time) {
+            if (suspended) {
+                return 0;
+            }
+            return time < tempEnd ? tempRate : basalRateAt(time);
+        }
+
+        private VaultEntry add(List<VaultEntry> result, VaultEntryType type, long time, double value) {
+            VaultEntry entry = new VaultEntry(options.origin, source, type, new Date(time), value);
+            result.add(entry);
+            return entry;
+        }
+
+        private static double roundToPumpSteps(double units) {
+            return Math.round(units * 20) / 20.0;
+        }
+    }
+
+    /**
+     * Planned event of a day.
+     */
+    private static final class Action {
+
+        static final int MEAL = 0;
+        static final int BOLUS = 1;
+        static final int EXERCISE = 2;
+        static final int TEMP_BASAL = 3;
+        static final int SNACK = 4;
+
+        final long time;
+        final int kind;
+        final double value;
+        final double extension;
+
+        Action(long time, int kind, double value, double extension) {
+            this.time = time;
+            this.kind = kind;
+            this.value = value;
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * Insulin or carbohydrates which are absorbed along a gamma curve.
+     */
+    private static final class Dose {
+
+        final long time;
+        final double amount;
+        final double peakInMinutes;
+
+        Dose(long time, double amount, double peakInMinutes) {
+            this.time = time;
+            this.amount = amount;
+            this.peakInMinutes = peakInMinutes;
+        }
+
+        double absorbedBetween(long from, long to) {
+            return absorbedUntil(to) - absorbedUntil(from);
+        }
+
+        private double absorbedUntil(long timestamp) {
+            double x = (timestamp - time) / 60000.0 / peakInMinutes;
+            return x <= 0 ? 0 : 1 - (1 + x) * Math.exp(-x);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.examples;
+
+import java.util.Date;
+
+/**
+ * Container class for holding the options of the
+ * {@link SyntheticDataGenerator}.
+ *
+ * @author juehv
+ */
+public class SyntheticDataOptions {
+
+    /**
+     * Seed of the generator. The same options always generate the same data.
+     */
+    public long seed = 4711;
+
+    /**
+     * Number of generated patients.
+     */
+    public int patients = 1;
+
+    /**
+     * Number of the first generated patient. The data of a patient only
+     * depends on the seed and its number, so large cohorts can be generated
+     * in parts (e.g. one repository per patient).
+     */
+    public int firstPatient = 1;
+
+    /**
+     * Start of the data. Times of day (meals, sleep, ...) are relative to
+     * this timestamp, so it should be a midnight. Default is 2019-01-01 00:00
+     * UTC.
+     */
+    public Date startDate = new Date(1546300800000L);
+
+    /**
+     * Number of generated days per patient.
+     */
+    public int days = 365;
+
+    /**
+     * Specifies if heart rate values should be generated.
+     */
+    public boolean heartRate = false;
+
+    /**
+     * Distance of heart rate values in seconds.
+     */
+    public int heartRateIntervalInSeconds = 60;
+
+    /**
+     * Origin of the generated entries. The source names the patient.
+     */
+    public String origin = "SyntheticDataGenerator";
+
+}
@@ -16,6 +16,10 @@
  */
 package de.opendiabetes.vault.exporter;
 
+import de.opendiabetes.vault.util.MetricsRegistry;
+import de.opendiabetes.vault.util.PipelineEvent;
+import de.opendiabetes.vault.util.PipelineEvents;
+import de.opendiabetes.vault.util.PipelineStage;
 import java.io.BufferedWriter;
 
 import java.io.File;
@@ -56,7 +60,7 @@ public abstract class FileExporter<T> extends Exporter<T> {
             LOG.severe(msg);
             throw new IllegalArgumentException(msg);
         }
-        int result = exportDataImpl((FileOutputStream) sink, data);
+        int result = exportDataImpl((FileOutputStream) sink, data, null);
         LOG.log(Level.INFO, "Exported Data to File with result: {0}", result);
     }
 
@@ -66,9 +70,10 @@ public abstract class FileExporter<T> extends Exporter<T> {
      *
      * @param sink
      * @param data
+     * @param file file of the sink for events, may be null
      * @return int with result status.
      */
-    private int exportDataImpl(OutputStream sink, List<T> data) {
+    private int exportDataImpl(OutputStream sink, List<T> data, File file) {
         // check output stream
         if (sink == null) {
             String msg = "PROGRAMMING ERROR: YOU MUST PROVIDE AN OUTPUT STREAM!";
@@ -81,9 +86,15 @@ public abstract class FileExporter<T> extends Exporter<T> {
         }
 
         // sort data by date
+        long start = MetricsRegistry.start();
+        PipelineEvent event = PipelineEvents.begin(PipelineStage.SORT, getClass(), null);
         data.sort(comparator);
+        event.commit(data.size(), data.size(), -1);
+        MetricsRegistry.stop("export.sort", start, data.size());
 
         // create exportable data
+        start = MetricsRegistry.start();
+        event = PipelineEvents.begin(PipelineStage.EXPORT, getClass(), file);
         List<ExportEntry> exportData = prepareData(data);
         if (exportData == null || exportData.isEmpty()) {
             return RESULT_NO_DATA;
@@ -102,6 +113,10 @@ public abstract class FileExporter<T> extends Exporter<T> {
                 //don't care
             }
         }
+        if (event.isRecording()) {
+            event.commit(data.size(), -1, file != null ? file.length() : -1);
+        }
+        MetricsRegistry.stop("export." + getClass().getSimpleName(), start, data.size());
         return RESULT_OK;
     }
 
@@ -132,12 +147,17 @@ public abstract class FileExporter<T> extends Exporter<T> {
             FileOutputStream fileOutpuStream = new FileOutputStream(checkFile);
             LOG.log(Level.INFO, "Try exporting data to: {0}",
                     checkFile.getAbsolutePath());
+            int result;
             if (deflate) {
                 GZIPOutputStream zippedOutputStream = new GZIPOutputStream(fileOutpuStream);
-                return exportDataImpl(zippedOutputStream, data);
+                result = exportDataImpl(zippedOutputStream, data, checkFile);
             } else {
-                return exportDataImpl(fileOutpuStream, data);
+                result = exportDataImpl(fileOutpuStream, data, checkFile);
+            }
+            if (MetricsRegistry.isEnabled()) {
+                MetricsRegistry.count("export.bytes_written", checkFile.length());
             }
+            return result;
 
         } catch (IOException ex) {
             LOG.log(Level.SEVERE, "Error accessing file for output stream", ex);
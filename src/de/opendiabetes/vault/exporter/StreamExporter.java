@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.exporter;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Exporter which writes VaultEntries one at a time, so the exported data
+ * never has to be in memory at once. Entries are written in the order they
+ * are handed in, so callers provide them sorted by timestamp. Closing the
+ * exporter finishes the document and closes the sink.
+ *
+ * @author juehv
+ */
+public interface StreamExporter extends Closeable {
+
+    /**
+     * Writes the next entry.
+     *
+     * @param entry entry to be exported
+     * @throws IOException if the entry can't be written
+     */
+    void write(VaultEntry entry) throws IOException;
+
+    /**
+     * @return number of entries written so far
+     */
+    long getEntryCount();
+}
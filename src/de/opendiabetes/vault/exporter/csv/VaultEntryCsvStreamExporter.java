@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.exporter.csv;
+
+import de.opendiabetes.vault.data.adapter.VaultEntryCsvAdapter;
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.data.container.VaultEntryType;
+import de.opendiabetes.vault.exporter.ExporterOptions;
+import de.opendiabetes.vault.exporter.StreamExporter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.logging.Logger;
+
+/**
+ * Stream exporter for the format of {@link VaultEntryCsvFileExporter}.
+ *
+ * @author juehv
+ */
+public class VaultEntryCsvStreamExporter implements StreamExporter {
+
+    private static final Logger LOG = Logger.getLogger(VaultEntryCsvStreamExporter.class.getName());
+
+    private final ExporterOptions options;
+    private final VaultEntryCsvAdapter adapter = new VaultEntryCsvAdapter();
+    private final BufferedWriter writer;
+    private long entryCount;
+
+    /**
+     * @param options exporter options
+     * @param sink target of the export, e.g. a (compressing) file stream
+     * @throws IOException if the header can't be written
+     */
+    public VaultEntryCsvStreamExporter(ExporterOptions options, OutputStream sink) throws IOException {
+        if (options == null) {
+            String msg = "PROGRAMMING ERRROR: YOU HAVE TO PROVIDE EXPORTER OPTIONS";
+            LOG.severe(msg);
+            throw new Error(msg);
+        }
+        this.options = options;
+        // same encoding and line separator as FileExporter
+        this.writer = new BufferedWriter(new OutputStreamWriter(sink));
+        writeLine(new CsvExportEntry(VaultEntryCsvAdapter.getCsvHeader()));
+    }
+
+    @Override
+    public void write(VaultEntry entry) throws IOException {
+        if (!options.exportRefinedVaultEntries
+                && entry.getType() == VaultEntryType.REFINED_VAULT_ENTRY) {
+            return;
+        }
+        writeLine(adapter.serialize(entry));
+        entryCount++;
+    }
+
+    @Override
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void writeLine(CsvExportEntry entry) throws IOException {
+        writer.write(entry.toByteEntryLine());
+        writer.newLine();
+    }
+}
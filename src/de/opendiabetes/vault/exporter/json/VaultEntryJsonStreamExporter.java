@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.exporter.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+import de.opendiabetes.vault.data.adapter.VaultEntryJsonAdapter;
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.data.container.VaultEntryType;
+import de.opendiabetes.vault.exporter.ExporterOptions;
+import de.opendiabetes.vault.exporter.StreamExporter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.logging.Logger;
+
+/**
+ * Stream exporter for the format of {@link VaultEntryJsonFileExporter}. The
+ * result can be read by the VaultEntryJsonFileImporter.
+ *
+ * @author juehv
+ */
+public class VaultEntryJsonStreamExporter implements StreamExporter {
+
+    private static final Logger LOG = Logger.getLogger(VaultEntryJsonStreamExporter.class.getName());
+
+    private final ExporterOptions options;
+    private final Gson gson;
+    private final JsonWriter writer;
+    private long entryCount;
+
+    /**
+     * @param options exporter options
+     * @param sink target of the export, e.g. a (compressing) file stream
+     * @throws IOException if the header can't be written
+     */
+    public VaultEntryJsonStreamExporter(ExporterOptions options, OutputStream sink) throws IOException {
+        if (options == null) {
+            String msg = "PROGRAMMING ERRROR: YOU HAVE TO PROVIDE EXPORTER OPTIONS";
+            LOG.severe(msg);
+            throw new Error(msg);
+        }
+        this.options = options;
+        this.gson = new GsonBuilder()
+                .registerTypeAdapter(VaultEntry.class, new VaultEntryJsonAdapter())
+                .create();
+
+        // same layout as VaultEntryJsonExportObject
+        VaultEntryJsonExportObject header = new VaultEntryJsonExportObject(Collections.emptyList());
+        this.writer = gson.newJsonWriter(new BufferedWriter(
+                new OutputStreamWriter(sink, StandardCharsets.UTF_8)));
+        writer.beginObject();
+        writer.name("titel").value(header.titel);
+        writer.name("version").value(header.version);
+        writer.name("exportDate").value(header.exportDate);
+        writer.name("data").beginArray();
+    }
+
+    @Override
+    public void write(VaultEntry entry) throws IOException {
+        if (!options.exportRefinedVaultEntries
+                && entry.getType() == VaultEntryType.REFINED_VAULT_ENTRY) {
+            return;
+        }
+        try {
+            gson.toJson(entry, VaultEntry.class, writer);
+        } catch (JsonIOException ex) {
+            throw new IOException(ex);
+        }
+        entryCount++;
+    }
+
+    @Override
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.endArray();
+            writer.endObject();
+        } finally {
+            writer.close();
+        }
+    }
+}
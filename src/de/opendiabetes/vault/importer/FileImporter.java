@@ -16,6 +16,10 @@
  */
 package de.opendiabetes.vault.importer;
 
+import de.opendiabetes.vault.util.MetricsRegistry;
+import de.opendiabetes.vault.util.PipelineEvent;
+import de.opendiabetes.vault.util.PipelineEvents;
+import de.opendiabetes.vault.util.PipelineStage;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -90,6 +94,25 @@ public abstract class FileImporter<T> extends Importer<T> {
 
     @Override
     public List<T> importData(InputStream source) {
+        return importData(source, null, -1);
+    }
+
+    public List<T> importDataFromFile(String filePath) throws IllegalAccessException {
+        InputStream source = convertFileToStream(filePath);
+        long bytes = -1;
+        if (MetricsRegistry.isEnabled() || PipelineEvents.isRecording()) {
+            bytes = new File(filePath).length();
+            MetricsRegistry.count("import.bytes_read", bytes);
+        }
+        return importData(source, filePath, bytes);
+    }
+
+    /**
+     * @param source stream to import
+     * @param filePath file of the stream for events, may be null
+     * @param bytes size of the file for events, -1 if unknown
+     */
+    private List<T> importData(InputStream source, String filePath, long bytes) {
         if (source == null) {
             String msg = "Source is null";
             LOG.severe(msg);
@@ -102,11 +125,13 @@ public abstract class FileImporter<T> extends Importer<T> {
             throw new Error(msg);
         }
 
-        return processImport(source);
-    }
-
-    public List<T> importDataFromFile(String filePath) throws IllegalAccessException {
-        return importData(convertFileToStream(filePath));
+        long start = MetricsRegistry.start();
+        PipelineEvent event = PipelineEvents.begin(PipelineStage.IMPORT_FILE, getClass(), filePath);
+        List<T> result = processImport(source);
+        int size = result != null ? result.size() : 0;
+        event.commit(-1, size, bytes);
+        MetricsRegistry.stop("import." + getClass().getSimpleName(), start, size);
+        return result;
     }
 
     protected abstract List<T> processImport(InputStream fis);
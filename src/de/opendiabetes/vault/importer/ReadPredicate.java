@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.importer;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.data.container.VaultEntryType;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Predicate pushed down into the repository reader. Consists of a set of
+ * entry types and a closed time range. Entries not matching the predicate are
+ * skipped while reading. Instances are immutable.
+ *
+ * @author juehv
+ */
+public final class ReadPredicate {
+
+    private static final ReadPredicate ALL = new ReadPredicate(null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    private final Set<VaultEntryType> types; // null means all types
+    private final long from;
+    private final long until;
+
+    private ReadPredicate(Set<VaultEntryType> types, long from, long until) {
+        this.types = types;
+        this.from = from;
+        this.until = until;
+    }
+
+    /**
+     * @return predicate matching every entry
+     */
+    public static ReadPredicate all() {
+        return ALL;
+    }
+
+    /**
+     * @param types accepted entry types
+     * @return predicate matching entries of the given types
+     */
+    public static ReadPredicate ofTypes(Collection<VaultEntryType> types) {
+        if (types == null) {
+            return ALL;
+        }
+        Set<VaultEntryType> typeSet = EnumSet.noneOf(VaultEntryType.class);
+        typeSet.addAll(types);
+        return new ReadPredicate(typeSet, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param from first accepted timestamp (inclusive), null for open start
+     * @param until last accepted timestamp (inclusive), null for open end
+     * @return predicate matching entries within the time range
+     */
+    public static ReadPredicate between(Date from, Date until) {
+        return new ReadPredicate(null,
+                from != null ? from.getTime() : Long.MIN_VALUE,
+                until != null ? until.getTime() : Long.MAX_VALUE);
+    }
+
+    /**
+     * @param other second predicate
+     * @return predicate matching entries which match both predicates
+     */
+    public ReadPredicate intersect(ReadPredicate other) {
+        Set<VaultEntryType> resultTypes;
+        if (types == null) {
+            resultTypes = other.types;
+        } else if (other.types == null) {
+            resultTypes = types;
+        } else {
+            resultTypes = EnumSet.noneOf(VaultEntryType.class);
+            resultTypes.addAll(types);
+            resultTypes.retainAll(other.types);
+        }
+        return new ReadPredicate(resultTypes, Math.max(from, other.from), Math.min(until, other.until));
+    }
+
+    /**
+     * Returns the smallest predicate of this form covering both predicates.
+     * The result may match entries which match neither of the predicates.
+     *
+     * @param other second predicate
+     * @return predicate matching at least all entries of both predicates
+     */
+    public ReadPredicate union(ReadPredicate other) {
+        if (isEmpty()) {
+            return other;
+        } else if (other.isEmpty()) {
+            return this;
+        }
+        Set<VaultEntryType> resultTypes = null;
+        if (types != null && other.types != null) {
+            resultTypes = EnumSet.noneOf(VaultEntryType.class);
+            resultTypes.addAll(types);
+            resultTypes.addAll(other.types);
+        }
+        return new ReadPredicate(resultTypes, Math.min(from, other.from), Math.max(until, other.until));
+    }
+
+    /**
+     * @param entry entry to check
+     * @return true if the entry has to be read
+     */
+    public boolean matches(VaultEntry entry) {
+        long timestamp = entry.getTimestamp().getTime();
+        return timestamp >= from && timestamp <= until
+                && (types == null || types.contains(entry.getType()));
+    }
+
+    /**
+     * @param start start of a block (inclusive)
+     * @param end end of a block (inclusive)
+     * @return true if the block may contain matching entries
+     */
+    public boolean overlaps(Date start, Date end) {
+        return !isEmpty() && start.getTime() <= until && end.getTime() >= from;
+    }
+
+    /**
+     * Used to stop reading sorted data early.
+     *
+     * @param timestamp timestamp of the current entry
+     * @return true if no later entry can match
+     */
+    public boolean isBeyondRange(Date timestamp) {
+        return timestamp.getTime() > until;
+    }
+
+    /**
+     * @return true if the predicate matches every entry
+     */
+    public boolean isAll() {
+        return types == null && from == Long.MIN_VALUE && until == Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true if the predicate can not match any entry
+     */
+    public boolean isEmpty() {
+        return from > until || (types != null && types.isEmpty());
+    }
+
+    /**
+     * @return accepted types or null if all types are accepted
+     */
+    public Set<VaultEntryType> getTypes() {
+        return types != null ? Collections.unmodifiableSet(types) : null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ReadPredicate)) {
+            return false;
+        }
+        ReadPredicate other = (ReadPredicate) obj;
+        return from == other.from && until == other.until && Objects.equals(types, other.types);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(types, from, until);
+    }
+
+    @Override
+    public String toString() {
+        if (isAll()) {
+            return "all entries";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("types=").append(types != null ? types.toString() : "all");
+        sb.append(", from=").append(from != Long.MIN_VALUE ? new Date(from).toString() : "open");
+        sb.append(", until=").append(until != Long.MAX_VALUE ? new Date(until).toString() : "open");
+        return sb.toString();
+    }
+}
@@ -18,39 +18,87 @@ package de.opendiabetes.vault.importer.json;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 import de.opendiabetes.vault.data.adapter.VaultEntryJsonAdapter;
 import de.opendiabetes.vault.data.container.VaultEntry;
-import de.opendiabetes.vault.exporter.json.VaultEntryJsonExportObject;
 import de.opendiabetes.vault.importer.FileImporter;
 import de.opendiabetes.vault.importer.ImporterOptions;
+import de.opendiabetes.vault.importer.ReadPredicate;
 import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
 
 /**
  * Importer for json files produced by the JsonFileExporter.
+ * <p>
+ * The file is read as a stream. Entries not matching the given
+ * {@link ReadPredicate} are dropped right after parsing, so they never pile up
+ * in memory. For sorted files reading stops after the end of the predicate's
+ * time range.
  *
  * @author juehv
  */
 public class VaultEntryJsonFileImporter extends FileImporter<VaultEntry> {
 
+    private final ReadPredicate predicate;
+    private final boolean sortedInput;
+
     public VaultEntryJsonFileImporter(ImporterOptions options) {
+        this(options, ReadPredicate.all(), false);
+    }
+
+    /**
+     *
+     * @param options importer options
+     * @param predicate only entries matching the predicate are imported
+     * @param sortedInput indicates that the file is sorted by timestamp, which
+     * allows to stop reading after the predicate's time range
+     */
+    public VaultEntryJsonFileImporter(ImporterOptions options, ReadPredicate predicate, boolean sortedInput) {
         super(options);
+        this.predicate = predicate != null ? predicate : ReadPredicate.all();
+        this.sortedInput = sortedInput;
     }
 
     @Override
     protected List<VaultEntry> processImport(InputStream fis) {
-        InputStreamReader reader = new InputStreamReader(new BufferedInputStream(fis));
-
         GsonBuilder gb = new GsonBuilder();
         gb.registerTypeAdapter(VaultEntry.class, new VaultEntryJsonAdapter());
-
         Gson gson = gb.create();
-        VaultEntryJsonExportObject dataContainer = gson.fromJson(reader, VaultEntryJsonExportObject.class);
-        // TODO check version compatiblity
 
-        return dataContainer.data;
+        List<VaultEntry> result = new ArrayList<>();
+        // TODO check version compatiblity
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                new BufferedInputStream(fis)))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("data")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    VaultEntry entry = gson.fromJson(reader, VaultEntry.class);
+                    if (predicate.matches(entry)) {
+                        result.add(entry);
+                    } else if (sortedInput && predicate.isBeyondRange(entry.getTimestamp())) {
+                        // no later entry can match, skip the rest of the file
+                        return result;
+                    }
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException ex) {
+            LOG.log(Level.SEVERE, "Error while reading json data.", ex);
+            throw new JsonParseException(ex);
+        }
+        return result;
     }
 
 }
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.processing.filter.Filter;
+import de.opendiabetes.vault.processing.filter.FilterDefinition;
+import de.opendiabetes.vault.processing.filter.FilterOptimizer;
+import java.util.List;
+
+/**
+ * Processing container applying a declarative {@link FilterDefinition} to
+ * every input slice. Needs no compiler, the filter tree is built directly
+ * from the definition and optimized once, see {@link FilterOptimizer}. Slices
+ * which are empty after filtering are dropped.
+ *
+ * @author juehv
+ */
+public class FilterDefinitionContainer implements SliceProcessingContainer {
+
+    private final FilterDefinition definition;
+    private final Filter filter;
+
+    public FilterDefinitionContainer(FilterDefinition definition) {
+        this.definition = definition;
+        this.filter = FilterOptimizer.optimize(definition.getFilter());
+    }
+
+    @Override
+    public List<VaultEntry> processSlice(List<VaultEntry> slice) {
+        // filters keep their run state in the context, so the tree is shared
+        return filter.filter(slice).filteredData;
+    }
+
+    /**
+     * A pure filter tree is its own input filter, so its outermost type and
+     * time filters are pushed down into the reader. Other trees may look at
+     * entries they do not match (e.g. in their setup) and get all data.
+     *
+     * @return root of the filter tree or null
+     */
+    @Override
+    public Filter getInputFilter() {
+        return FilterOptimizer.isPure(filter) ? filter : null;
+    }
+
+    /**
+     * Filters which look around an entry are never pure, so the margin is
+     * taken from the whole tree and not from the input filter.
+     *
+     * @return margin declared by the filter tree
+     */
+    @Override
+    public int getMarginInMinutes() {
+        return filter.getMarginInMinutes();
+    }
+
+    public FilterDefinition getDefinition() {
+        return definition;
+    }
+
+    /**
+     * @return optimized filter tree, which is applied to the slices
+     */
+    public Filter getFilter() {
+        return filter;
+    }
+}
@@ -17,6 +17,7 @@
 package de.opendiabetes.vault.processing;
 
 import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.processing.filter.Filter;
 import java.util.List;
 
 /**
@@ -27,4 +28,29 @@ import java.util.List;
 public interface ProcessingContainer {
 
     List<List<VaultEntry>> processData(List<List<VaultEntry>> inputData);
+
+    /**
+     * Optional filter describing which entries the container works on. The
+     * outermost type and date time span filters of it are pushed down into the
+     * repository reader, so entries which can not match are not loaded at all.
+     * The container still has to apply its filters in processData and must
+     * not rely on entries outside of this filter.
+     *
+     * @return filter for the input data or null to load all data
+     */
+    default Filter getInputFilter() {
+        return null;
+    }
+
+    /**
+     * Time range in minutes before newly arrived data, which has to be
+     * processed again when a tag created by this container is refreshed.
+     * Defaults to the margin declared by the input filter.
+     *
+     * @return margin in minutes
+     */
+    default int getMarginInMinutes() {
+        Filter inputFilter = getInputFilter();
+        return inputFilter != null ? inputFilter.getMarginInMinutes() : 0;
+    }
 }
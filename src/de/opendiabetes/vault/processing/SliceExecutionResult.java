@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a {@link SliceExecutor} run. Holds the processed slices in input
+ * order and the processing time of every input slice.
+ *
+ * @author juehv
+ */
+public class SliceExecutionResult {
+
+    private final List<List<VaultEntry>> slices;
+    private final int[] sourceIndices;
+    private final long[] sliceNanos;
+    private final long totalNanos;
+
+    SliceExecutionResult(List<List<VaultEntry>> slices, int[] sourceIndices,
+            long[] sliceNanos, long totalNanos) {
+        this.slices = Collections.unmodifiableList(slices);
+        this.sourceIndices = sourceIndices;
+        this.sliceNanos = sliceNanos;
+        this.totalNanos = totalNanos;
+    }
+
+    /**
+     * @return processed slices in the order of the input slices. Empty slices
+     * are missing if the executor drops empty results.
+     */
+    public List<List<VaultEntry>> getSlices() {
+        return slices;
+    }
+
+    /**
+     * @param resultIndex index within {@link #getSlices()}
+     * @return index of the input slice the result slice was computed from
+     */
+    public int getSourceIndex(int resultIndex) {
+        return sourceIndices[resultIndex];
+    }
+
+    /**
+     * @return number of input slices
+     */
+    public int getInputSliceCount() {
+        return sliceNanos.length;
+    }
+
+    /**
+     * @param inputIndex index of the input slice
+     * @return processing time of the input slice in nanoseconds
+     */
+    public long getSliceNanos(int inputIndex) {
+        return sliceNanos[inputIndex];
+    }
+
+    /**
+     * @return wall clock time of the whole run in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return summed processing time of all slices in nanoseconds
+     */
+    public long getSummedSliceNanos() {
+        long sum = 0;
+        for (long nanos : sliceNanos) {
+            sum += nanos;
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return "SliceExecutionResult{" + "inputSlices=" + sliceNanos.length
+                + ", resultSlices=" + slices.size()
+                + ", totalMs=" + totalNanos / 1000000
+                + ", summedSliceMs=" + getSummedSliceNanos() / 1000000 + '}';
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.processing.filter.Filter;
+import de.opendiabetes.vault.processing.filter.FilterContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Evaluates a filter tree (or any other per-slice function) independently on
+ * every slice of a tag. Slices are processed in parallel on a fork-join pool
+ * or on virtual threads if the running JVM provides them. Every slice gets its
+ * own {@link FilterContext}, so one filter instance can be shared by all
+ * workers.
+ *
+ * @author juehv
+ */
+public class SliceExecutor implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(SliceExecutor.class.getName());
+
+    private final ExecutorService pool;
+    private final boolean dropEmptyResults;
+
+    private SliceExecutor(ExecutorService pool, boolean dropEmptyResults) {
+        this.pool = pool;
+        this.dropEmptyResults = dropEmptyResults;
+    }
+
+    /**
+     * Creates an executor working on a fork-join pool.
+     *
+     * @param parallelism number of worker threads, values below 1 use the
+     * number of available processors
+     * @param dropEmptyResults remove slices which are empty after processing
+     * @return new executor, close it after use
+     */
+    public static SliceExecutor forkJoin(int parallelism, boolean dropEmptyResults) {
+        if (parallelism < 1) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        return new SliceExecutor(new ForkJoinPool(parallelism), dropEmptyResults);
+    }
+
+    /**
+     * Creates an executor starting one virtual thread per slice. Falls back
+     * to a fork-join pool with default parallelism if the JVM does not support
+     * virtual threads.
+     *
+     * @param dropEmptyResults remove slices which are empty after processing
+     * @return new executor, close it after use
+     */
+    public static SliceExecutor virtualThreads(boolean dropEmptyResults) {
+        try {
+            ExecutorService pool = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new SliceExecutor(pool, dropEmptyResults);
+        } catch (ReflectiveOperationException ex) {
+            LOG.log(Level.FINE, "Virtual threads not available, using fork-join pool.");
+            return forkJoin(0, dropEmptyResults);
+        }
+    }
+
+    /**
+     * Applies the filter to every slice.
+     *
+     * @param filter filter tree, evaluated with a fresh context per slice
+     * @param slices input slices, e.g. data of a tag
+     * @return filtered slices in input order with timings
+     */
+    public SliceExecutionResult execute(Filter filter, List<List<VaultEntry>> slices) {
+        return execute(slice -> filter.filter(slice).filteredData, slices);
+    }
+
+    /**
+     * Applies the processing function to every slice. The function must not
+     * rely on state shared between slices.
+     *
+     * @param processing function computing the result of one slice
+     * @param slices input slices, e.g. data of a tag
+     * @return processed slices in input order with timings
+     */
+    public SliceExecutionResult execute(Function<List<VaultEntry>, List<VaultEntry>> processing,
+            List<List<VaultEntry>> slices) {
+        long start = System.nanoTime();
+        long[] sliceNanos = new long[slices.size()];
+
+        List<Future<List<VaultEntry>>> futures = new ArrayList<>(slices.size());
+        for (int i = 0; i < slices.size(); i++) {
+            final int index = i;
+            final List<VaultEntry> slice = slices.get(i);
+            futures.add(pool.submit(() -> {
+                long sliceStart = System.nanoTime();
+                List<VaultEntry> result = processing.apply(slice);
+                sliceNanos[index] = System.nanoTime() - sliceStart;
+                return result;
+            }));
+        }
+
+        List<List<VaultEntry>> results = new ArrayList<>(slices.size());
+        int[] sourceIndices = new int[slices.size()];
+        for (int i = 0; i < futures.size(); i++) {
+            List<VaultEntry> result = waitFor(futures.get(i), futures);
+            if (dropEmptyResults && (result == null || result.isEmpty())) {
+                continue;
+            }
+            sourceIndices[results.size()] = i;
+            results.add(result != null ? result : new ArrayList<>());
+        }
+
+        int[] keptIndices = new int[results.size()];
+        System.arraycopy(sourceIndices, 0, keptIndices, 0, keptIndices.length);
+        // future.get() establishes happens-before, so all timings are visible here
+        return new SliceExecutionResult(results, keptIndices, sliceNanos, System.nanoTime() - start);
+    }
+
+    /**
+     * Computes an arbitrary result for every slice, e.g. a resampled column
+     * batch. Empty results are never dropped. The function must not rely on
+     * state shared between slices.
+     *
+     * @param <T> type of the per-slice result
+     * @param mapping function computing the result of one slice
+     * @param slices input slices, e.g. data of a tag
+     * @return results in input order
+     */
+    public <T> List<T> map(Function<List<VaultEntry>, T> mapping, List<List<VaultEntry>> slices) {
+        List<Future<T>> futures = new ArrayList<>(slices.size());
+        for (List<VaultEntry> slice : slices) {
+            futures.add(pool.submit(() -> mapping.apply(slice)));
+        }
+        List<T> results = new ArrayList<>(slices.size());
+        for (Future<T> future : futures) {
+            results.add(waitFor(future, futures));
+        }
+        return results;
+    }
+
+    private static <T> T waitFor(Future<T> future, List<Future<T>> allFutures) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            allFutures.forEach(item -> item.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Slice execution interrupted.", ex);
+        } catch (ExecutionException ex) {
+            allFutures.forEach(item -> item.cancel(true));
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Slice execution failed.", cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Processing container which treats every slice on its own. The CLI
+ * dispatches the slices of such a container to a pool of workers, so
+ * processSlice is called concurrently and must not rely on state shared
+ * between slices. The output keeps the order of the input slices.
+ * <p>
+ * Every slice container can be streamed, see
+ * {@link StreamingProcessingContainer}.
+ *
+ * @author juehv
+ */
+public interface SliceProcessingContainer extends StreamingProcessingContainer {
+
+    /**
+     * @param slice sorted time series of one slice
+     * @return processed slice. Empty results and null are dropped.
+     */
+    List<VaultEntry> processSlice(List<VaultEntry> slice);
+
+    /**
+     * Processes one slice of a stream.
+     *
+     * @param slice sorted time series of one slice
+     * @param output receives the processed slice unless it is empty
+     */
+    @Override
+    default void processSlice(List<VaultEntry> slice, Consumer<List<VaultEntry>> output) {
+        List<VaultEntry> processed = processSlice(slice);
+        if (processed != null && !processed.isEmpty()) {
+            output.accept(processed);
+        }
+    }
+
+    /**
+     * Processes the slices one after another.
+     *
+     * @param inputData input slices
+     * @return processed slices without empty results
+     */
+    @Override
+    default List<List<VaultEntry>> processData(List<List<VaultEntry>> inputData) {
+        List<List<VaultEntry>> result = new ArrayList<>();
+        for (List<VaultEntry> slice : inputData) {
+            List<VaultEntry> processed = processSlice(slice);
+            if (processed != null && !processed.isEmpty()) {
+                result.add(processed);
+            }
+        }
+        return result;
+    }
+}
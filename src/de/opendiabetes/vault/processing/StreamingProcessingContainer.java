@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Processing container which gets its input one slice at a time and pushes
+ * its output one slice at a time. The CLI streams the slices of a tag from
+ * the repository through such containers into the output tag, so only a few
+ * slices are in memory at once, regardless of the size of the tag.
+ * <p>
+ * A container may keep state between slices (e.g. to merge neighbouring
+ * slices), but should emit its output as soon as possible to keep the memory
+ * bounded.
+ *
+ * @author juehv
+ */
+public interface StreamingProcessingContainer extends ProcessingContainer {
+
+    /**
+     * Processes the next input slice. Input slices arrive in the order of the
+     * input tag.
+     *
+     * @param slice sorted time series of one slice
+     * @param output receives the output slices
+     */
+    void processSlice(List<VaultEntry> slice, Consumer<List<VaultEntry>> output);
+
+    /**
+     * Called after the last input slice to emit output which is still held
+     * back.
+     *
+     * @param output receives the output slices
+     */
+    default void finish(Consumer<List<VaultEntry>> output) {
+        // nothing held back
+    }
+
+    /**
+     * Streams the given slices through the container.
+     *
+     * @param inputData input slices
+     * @return output slices
+     */
+    @Override
+    default List<List<VaultEntry>> processData(List<List<VaultEntry>> inputData) {
+        List<List<VaultEntry>> result = new ArrayList<>();
+        for (List<VaultEntry> slice : inputData) {
+            processSlice(slice, result::add);
+        }
+        finish(result::add);
+        return result;
+    }
+}
@@ -50,12 +50,11 @@ public class AndFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry vaultEntry
-    ) {
+    boolean matchesFilterParameters(VaultEntry vaultEntry, FilterContext context) {
         boolean result = true;
 
         for (Filter filter : filters) {
-            if (!filter.matchesFilterParameters(vaultEntry)) {
+            if (!filter.matchesFilterParameters(vaultEntry, context)) {
                 result = false;
                 break;
             }
@@ -66,11 +65,10 @@ public class AndFilter extends Filter {
     }
 
     @Override
-    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data
-    ) {
+    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data, FilterContext context) {
         List<VaultEntry> temp = data;
         for (Filter filter : this.filters) {
-            temp = filter.setUpBeforeFilter(temp);
+            temp = filter.setUpBeforeFilter(temp, context);
         }
         return data;
     }
@@ -87,10 +85,10 @@ public class AndFilter extends Filter {
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         
         for (Filter filter : filters) {
-            givenResult = filter.tearDownAfterFilter(givenResult);
+            givenResult = filter.tearDownAfterFilter(givenResult, context);
         }
         
         return givenResult;
@@ -18,6 +18,7 @@ package de.opendiabetes.vault.processing.filter;
 
 import de.opendiabetes.vault.data.container.VaultEntry;
 import de.opendiabetes.vault.data.container.VaultEntryType;
+import de.opendiabetes.vault.data.container.VaultEntryTypeIndex;
 import de.opendiabetes.vault.processing.filter.options.ClusterFilterOption;
 import de.opendiabetes.vault.processing.filter.options.FilterOption;
 import de.opendiabetes.vault.util.VaultEntryUtils;
@@ -60,32 +61,36 @@ public class ClusterFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         return true;
     }
 
     @Override
     Filter update(VaultEntry vaultEntry) {
-        option = new ClusterFilterOption(vaultEntry.getType());
-        return new ClusterFilter(option);
+        return new ClusterFilter(new ClusterFilterOption(vaultEntry.getType()));
     }
 
     @Override
-    protected FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    protected FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
 
-        List<VaultEntry> listToCluster = new ArrayList<>();
-
-        for (VaultEntry vaultEntry : givenResult.filteredData) {
-
-            if (vaultEntry.getType().equals(vaultEntryType)) {
-                listToCluster.add(vaultEntry);
+        List<VaultEntry> listToCluster;
+        VaultEntryTypeIndex index = VaultEntryTypeIndex.of(givenResult.filteredData);
+        if (index != null) {
+            listToCluster = index.entriesOf(givenResult.filteredData, vaultEntryType);
+        } else {
+            listToCluster = new ArrayList<>();
+            for (VaultEntry vaultEntry : givenResult.filteredData) {
+
+                if (vaultEntry.getType().equals(vaultEntryType)) {
+                    listToCluster.add(vaultEntry);
+                }
+
+                /**
+                 * if
+                 * (vaultEntry.getType().name().contains(vaultEntryClusterString)) {
+                 * listToCluster.add(vaultEntry); }*
+                 */
             }
-
-            /**
-             * if
-             * (vaultEntry.getType().name().contains(vaultEntryClusterString)) {
-             * listToCluster.add(vaultEntry); }*
-             */
         }
 
         double avgValue1 = 0;
@@ -97,10 +102,12 @@ public class ClusterFilter extends Filter {
         }
 
         for (VaultEntry vaultEntry : listToCluster) {
-            givenResult.filteredData.remove(vaultEntry);
             avgValue1 += vaultEntry.getValue();
             timeMillis += vaultEntry.getTimestamp().getTime();
         }
+        // remove the clustered entries in one pass; remove(Object) would hit
+        // arbitrary entries since VaultEntry.equals does not compare content
+        givenResult.filteredData.removeIf(vaultEntry -> vaultEntry.getType() == vaultEntryType);
 
         VaultEntry vaultEntry = new VaultEntry(vaultEntryType,
                 new Date(timeMillis / divider),
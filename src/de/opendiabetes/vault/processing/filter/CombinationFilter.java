@@ -18,7 +18,13 @@ package de.opendiabetes.vault.processing.filter;
 
 import de.opendiabetes.vault.data.container.VaultEntry;
 import de.opendiabetes.vault.processing.filter.options.CombinationFilterOption;
+import de.opendiabetes.vault.processing.filter.options.DateTimePointFilterOption;
+import de.opendiabetes.vault.processing.filter.options.DateTimeSpanFilterOption;
 import de.opendiabetes.vault.processing.filter.options.FilterOption;
+import de.opendiabetes.vault.processing.filter.options.TimeSpanFilterOption;
+import de.opendiabetes.vault.util.IntervalSet;
+import de.opendiabetes.vault.util.TimestampUtils;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
@@ -32,13 +38,23 @@ import java.util.logging.Logger;
  * the Constructor, this set is the basicData. The Second list is only used
  * during the filter. In the Constructor there will also be set two Filter
  * (firstFilter and secondFilter).
+ * <p>
+ * If the secondFilter is a DateTimeSpanFilter, DateTimePointFilter or
+ * TimeSpanFilter, the generated Filters are compiled into merged interval sets
+ * instead, so every entry is checked with a single lookup. Other generated
+ * Filters are all evaluated for every entry, unless they are free of side
+ * effects (see {@link FilterOptimizer#isPure(Filter)}) and the check can stop at
+ * the first match.
  *
  * @author Daniel
  */
 public class CombinationFilter extends Filter {
 
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final long MILLIS_PER_DAY = 86400000L;
+
     private CombinationFilterOption option;
-    private List<Filter> filters;
+    private boolean pureSecondFilter;
 
     /**
      *
@@ -49,6 +65,7 @@ public class CombinationFilter extends Filter {
         super(option);
         if (option instanceof CombinationFilterOption) {
             this.option = (CombinationFilterOption) option;
+            this.pureSecondFilter = FilterOptimizer.isPure(this.option.getSecondFilter());
         } else {
             String msg = "Option has to be an instance of CombinationFilterOption";
             Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, msg);
@@ -57,21 +74,86 @@ public class CombinationFilter extends Filter {
     }
 
     @Override
-    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data) {
-        List<VaultEntry> firstResult = option.getFirstFilter().filter(data).filteredData;
+    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data, FilterContext context) {
+        List<VaultEntry> firstResult = option.getFirstFilter().filterNested(data, context).filteredData;
 
-        Filter tempFilter;
-        // generates an List of Filters from the first found dataset. The secondFilter will be used as Mask.
-        filters = new ArrayList<>();
-        for (VaultEntry vaultEntry : firstResult) {
-            tempFilter = option.getSecondFilter().update(vaultEntry);
-            filters.add(tempFilter);
-            //this can potentially slow down the process, if the setUp is complex and the dataset is big
-            tempFilter.setUpBeforeFilter(firstResult);
+        if (isTimeWindowFilter(option.getSecondFilter())) {
+            context.setState(this, compileTimeWindows(firstResult));
+        } else {
+            Filter tempFilter;
+            // generates an List of Filters from the first found dataset. The secondFilter will be used as Mask.
+            List<Filter> filters = new ArrayList<>();
+            for (VaultEntry vaultEntry : firstResult) {
+                tempFilter = option.getSecondFilter().update(vaultEntry);
+                filters.add(tempFilter);
+                //this can potentially slow down the process, if the setUp is complex and the dataset is big
+                tempFilter.setUpBeforeFilter(firstResult, context);
+            }
+            context.setState(this, filters);
         }
 
         //filters with the basic method
-        return option.getDataPointer() != null ? option.getDataPointer().getDataset() : data;
+        return option.getDataPointer() != null ? option.getDataPointer().getDataset(context) : data;
+    }
+
+    /**
+     * Filters which match a time window only and need no setUp. Subclasses are
+     * excluded, since they could override the matching.
+     */
+    private static boolean isTimeWindowFilter(Filter filter) {
+        return filter.getClass() == DateTimeSpanFilter.class
+                || filter.getClass() == DateTimePointFilter.class
+                || filter.getClass() == TimeSpanFilter.class;
+    }
+
+    /**
+     * Compiles the Filters generated from the hits of the firstFilter into
+     * interval sets. Matches the same entries as the generated Filters.
+     */
+    private TimeWindows compileTimeWindows(List<VaultEntry> firstResult) {
+        IntervalSet.Builder dateTimeWindows = IntervalSet.builder();
+        IntervalSet.Builder timeOfDayWindows = IntervalSet.builder();
+        for (VaultEntry vaultEntry : firstResult) {
+            Filter tempFilter = option.getSecondFilter().update(vaultEntry);
+            if (tempFilter.option instanceof DateTimeSpanFilterOption) {
+                DateTimeSpanFilterOption spanOption = (DateTimeSpanFilterOption) tempFilter.option;
+                addDateTimeWindow(dateTimeWindows,
+                        spanOption.getStartTime().getTime(), spanOption.getEndTime().getTime());
+            } else if (tempFilter.option instanceof DateTimePointFilterOption) {
+                DateTimePointFilterOption pointOption = (DateTimePointFilterOption) tempFilter.option;
+                long point = pointOption.getDateTimePoint().getTime();
+                addDateTimeWindow(dateTimeWindows,
+                        TimestampUtils.addMinutesToTimestamp(point, -1 * pointOption.getMarginBeforeInMinutes()),
+                        TimestampUtils.addMinutesToTimestamp(point, pointOption.getAfterBeforeInMinutes()));
+            } else {
+                TimeSpanFilterOption timeOption = (TimeSpanFilterOption) tempFilter.option;
+                addTimeOfDayWindow(timeOfDayWindows, timeOption.getStartTime(), timeOption.getEndTime());
+            }
+        }
+        return new TimeWindows(dateTimeWindows.build(), timeOfDayWindows.build());
+    }
+
+    private static void addDateTimeWindow(IntervalSet.Builder windows, long start, long end) {
+        if (start <= end) {
+            windows.add(start, end);
+        } else {
+            // withinDateTimeSpan matches only the bounds of a reversed span
+            windows.add(start, start);
+            windows.add(end, end);
+        }
+    }
+
+    private static void addTimeOfDayWindow(IntervalSet.Builder windows, LocalTime startTime, LocalTime endTime) {
+        // entries have millisecond precision, so round the bounds inwards
+        long start = (startTime.toNanoOfDay() + NANOS_PER_MILLI - 1) / NANOS_PER_MILLI;
+        long end = endTime.toNanoOfDay() / NANOS_PER_MILLI;
+        if (startTime.isBefore(endTime)) {
+            windows.add(start, end);
+        } else {
+            // timespan is not within a day (through midnight, e.g.  23:30 - 0:15)
+            windows.add(start, MILLIS_PER_DAY - 1);
+            windows.add(0, end);
+        }
     }
 
     @Override
@@ -80,14 +162,23 @@ public class CombinationFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry
-    ) {
-        boolean result = false;
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
+        Object state = context.getState(this, ArrayList<Filter>::new);
+        if (state instanceof TimeWindows) {
+            return ((TimeWindows) state).matches(entry);
+        }
 
+        @SuppressWarnings("unchecked")
+        List<Filter> filters = (List<Filter>) state;
+        boolean result = false;
         //Checks if one of the new generated Filters is True
         for (Filter filter : filters) {
-            if (filter.matchesFilterParameters(entry)) {
+            if (filter.matchesFilterParameters(entry, context)) {
                 result = true;
+                if (pureSecondFilter) {
+                    // no side effects to keep up
+                    break;
+                }
             }
         }
 
@@ -100,8 +191,31 @@ public class CombinationFilter extends Filter {
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         return givenResult;
     }
 
+    /**
+     * Compiled time windows of one filter run. Absolute windows are looked up
+     * with a cursor, so a sweep over sorted data is linear.
+     */
+    private static final class TimeWindows {
+
+        private final IntervalSet.Cursor dateTimeCursor;
+        private final IntervalSet timeOfDayWindows;
+
+        TimeWindows(IntervalSet dateTimeWindows, IntervalSet timeOfDayWindows) {
+            this.dateTimeCursor = dateTimeWindows.cursor();
+            this.timeOfDayWindows = timeOfDayWindows;
+        }
+
+        boolean matches(VaultEntry entry) {
+            if (dateTimeCursor.contains(entry.getTimestamp().getTime())) {
+                return true;
+            }
+            return !timeOfDayWindows.isEmpty() && timeOfDayWindows.contains(
+                    TimestampUtils.dateToLocalTime(entry.getTimestamp()).toNanoOfDay() / NANOS_PER_MILLI);
+        }
+    }
+
 }
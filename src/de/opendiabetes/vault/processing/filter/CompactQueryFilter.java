@@ -31,22 +31,14 @@ import java.util.logging.Logger;
 public class CompactQueryFilter extends Filter {
 
     List<Filter> filters;
-    boolean[] boolForFilters;
+    private final boolean skipSatisfiedFilters;
 
     public CompactQueryFilter(FilterOption option) {
         super(option);
         if (option instanceof CompactQueryFilterOption) {
 
             filters = ((CompactQueryFilterOption) option).getFilters();
-
-            if(filters != null)
-                boolForFilters = new boolean[filters.size()];
-            else
-                boolForFilters = new boolean[0];
-
-            for (int i = 0; i < boolForFilters.length; i++) {
-                boolForFilters[i] = false;
-            }
+            skipSatisfiedFilters = ((CompactQueryFilterOption) option).isSkipSatisfiedFilters();
 
         } else {
             String msg = "Option has to be an instance of CompactQueryFilter";
@@ -61,12 +53,17 @@ public class CompactQueryFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         boolean result = true;
+        boolean[] boolForFilters = context.getState(this, this::createFilterFlags);
 
         int counter = 0;
         for (Filter filter : filters) {
-            if (filter.matchesFilterParameters(entry)) {
+            if (skipSatisfiedFilters && boolForFilters[counter]) {
+                counter++;
+                continue;
+            }
+            if (filter.matchesFilterParameters(entry, context)) {
                 boolForFilters[counter] = true;
             }
             counter++;
@@ -77,13 +74,14 @@ public class CompactQueryFilter extends Filter {
 
     @Override
     Filter update(VaultEntry vaultEntry) {
-        option = new CompactQueryFilterOption(filters);
-        return new CompactQueryFilter(option);
+        return new CompactQueryFilter(new CompactQueryFilterOption(filters, skipSatisfiedFilters));
     }
 
     @Override
-    protected FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    protected FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         boolean allTrue = true;
+        boolean[] boolForFilters = context.getState(this, this::createFilterFlags);
+        context.clearState(this);
 
         for (boolean boolForFilter : boolForFilters) {
             if (boolForFilter == false) {
@@ -98,4 +96,8 @@ public class CompactQueryFilter extends Filter {
         return givenResult;
     }
 
+    private boolean[] createFilterFlags() {
+        return new boolean[filters != null ? filters.size() : 0];
+    }
+
 }
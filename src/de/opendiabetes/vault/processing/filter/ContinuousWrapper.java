@@ -19,10 +19,9 @@ package de.opendiabetes.vault.processing.filter;
 import de.opendiabetes.vault.data.container.VaultEntry;
 import de.opendiabetes.vault.processing.filter.options.ContinuousWrapperOption;
 import de.opendiabetes.vault.processing.filter.options.FilterOption;
+import de.opendiabetes.vault.util.IntervalSet;
 import de.opendiabetes.vault.util.TimestampUtils;
-import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,7 +34,6 @@ public class ContinuousWrapper extends Filter {
     List<VaultEntry> baseData;
     protected int marginBefore;
     protected int marginAfter;
-    List<Map.Entry<Date, Date>> timeSpansForContinuousData;
 
     /**
      * Filter subclass, uses the <code>timeSeries</code> of the previous
@@ -65,26 +63,16 @@ public class ContinuousWrapper extends Filter {
         return FilterType.COMBINATION_FILTER;
     }
 
-    //maybe put this in TimestampUtils class?
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
-        boolean result = false;
-        for (Map.Entry<Date, Date> p : timeSpansForContinuousData) {
-            if (TimestampUtils.withinDateTimeSpan(p.getKey(), p.getValue(), entry.getTimestamp())) {
-                result = true;
-                break;
-            }
-            if (entry.getTimestamp().before(p.getKey())) {
-                //breaks if entry's Timestamp is located before every TimeSpan that will follow now
-                break;
-            }
-        }
-        return result;
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
+        IntervalSet.Cursor timeSpansForContinuousData = context.getState(this, () -> IntervalSet.empty().cursor());
+        //the cursor moves along with the entries, so sorted data is checked in a single sweep
+        return timeSpansForContinuousData.contains(entry.getTimestamp().getTime());
     }
 
     @Override
-    public List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data) {
-        timeSpansForContinuousData = TimestampUtils.getNormalizedTimeSeries(data, marginBefore, marginAfter);
+    public List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data, FilterContext context) {
+        context.setState(this, TimestampUtils.getNormalizedTimeIntervals(data, marginBefore, marginAfter).cursor());
         return baseData;
     }
 
@@ -94,7 +82,12 @@ public class ContinuousWrapper extends Filter {
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         return givenResult;
     }
+
+    @Override
+    public int getMarginInMinutes() {
+        return Math.max(super.getMarginInMinutes(), Math.max(marginBefore, marginAfter));
+    }
 }
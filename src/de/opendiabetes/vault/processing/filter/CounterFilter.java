@@ -31,7 +31,6 @@ import java.util.logging.Logger;
 public class CounterFilter extends Filter {
 
     private Filter filter;
-    private int currentHit;
     private int hitCounter;
     private final boolean onlyOneResult;
 
@@ -40,7 +39,6 @@ public class CounterFilter extends Filter {
         if (option instanceof CounterFilterOption) {
             this.filter = ((CounterFilterOption) option).getFilter();
             this.hitCounter = ((CounterFilterOption) option).getHitCounter();
-            currentHit = 0;
             this.onlyOneResult = ((CounterFilterOption) option).isOnlyOneResult();
         } else {
             String msg = "Option has to be an instance of CounterFilterOption";
@@ -55,14 +53,15 @@ public class CounterFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         boolean result = false;
-        if (filter.matchesFilterParameters(entry)) {
-            currentHit++;
-            if (currentHit == hitCounter) {
+        if (filter.matchesFilterParameters(entry, context)) {
+            int[] currentHit = context.getState(this, () -> new int[1]);
+            currentHit[0]++;
+            if (currentHit[0] == hitCounter) {
                 result = true;
                 if (!onlyOneResult) {
-                    currentHit = 0;
+                    currentHit[0] = 0;
                 }
             }
         }
@@ -76,7 +75,8 @@ public class CounterFilter extends Filter {
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
+        context.clearState(this);
         return givenResult;
     }
 }
@@ -24,12 +24,19 @@ import java.util.List;
  * Filters Nothing. Used as a pointer to a specific state of the VaultEntry
  * Dataset given via filter. Use instances of this class in other Filters, which
  * need to have access to specific previous states.
+ * <p>
+ * Like the state of other filters, the dataset is kept in the
+ * {@link FilterContext} of the run, so trees with markers can be shared
+ * between concurrent runs. To access the dataset in a separate run, use the
+ * same context for both runs. Runs with a context in which the marker did not
+ * run fall back to the dataset of the marker's latest run, as before.
  *
  * @author tiweGH
  */
 public class DatasetMarker extends Filter {
 
-    private List<VaultEntry> basedata;
+    // fallback for runs which did not pass the marker themselves
+    private volatile List<VaultEntry> lastDataset = new ArrayList<>();
 
     /**
      * Filters Nothing. Used as a pointer to a specific state of the VaultEntry
@@ -39,7 +46,6 @@ public class DatasetMarker extends Filter {
      */
     public DatasetMarker() {
         super(null);
-        basedata = new ArrayList<>();
     }
 
     @Override
@@ -48,13 +54,14 @@ public class DatasetMarker extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         return true;
     }
 
     @Override
-    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data) {
-        this.basedata = data;
+    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data, FilterContext context) {
+        context.setMarkedData(this, data);
+        lastDataset = data;
         return data;
     }
 
@@ -67,14 +74,30 @@ public class DatasetMarker extends Filter {
      * Returns the state of the input VaultEntry dataset, depending on where in
      * the filter-chain this instance is located
      *
+     * @param context context of the run, which passed the marker
+     * @return a previous state of the entry dataset. The dataset of the latest
+     * run of the marker, if it did not run with the given context.
+     */
+    public List<VaultEntry> getDataset(FilterContext context) {
+        List<VaultEntry> result = context.getMarkedData(this);
+        return result != null ? result : lastDataset;
+    }
+
+    /**
+     * Returns the state of the input VaultEntry dataset of the latest run of
+     * this marker.
+     *
      * @return a previous state of the entry dataset.
+     * @deprecated not defined if the filter tree runs concurrently, use
+     * {@link #getDataset(de.opendiabetes.vault.processing.filter.FilterContext)}
      */
+    @Deprecated
     public List<VaultEntry> getDataset() {
-        return basedata;
+        return lastDataset;
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         return givenResult;
     }
 
@@ -60,20 +60,23 @@ public class DateTimePointFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         return TimestampUtils.withinDateTimeSpan(startTime, endTime, entry.getTimestamp());
 
     }
 
     @Override
     Filter update(VaultEntry vaultEntry) {
-        option = new DateTimePointFilterOption(vaultEntry.getTimestamp(), (int) marginBeforeInMinutes, (int) marginAfterInMinutes);
-        return new DateTimePointFilter(option);
+        return new DateTimePointFilter(new DateTimePointFilterOption(vaultEntry.getTimestamp(), (int) marginBeforeInMinutes, (int) marginAfterInMinutes));
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         return givenResult;
     }
 
+    @Override
+    public int getMarginInMinutes() {
+        return (int) Math.max(super.getMarginInMinutes(), Math.max(marginBeforeInMinutes, marginAfterInMinutes));
+    }
 }
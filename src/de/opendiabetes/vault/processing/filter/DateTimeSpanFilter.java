@@ -54,7 +54,7 @@ public class DateTimeSpanFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         return TimestampUtils.withinDateTimeSpan(startTime, endTime, entry.getTimestamp());
     }
 
@@ -72,13 +72,11 @@ public class DateTimeSpanFilter extends Filter {
         } else {
             tempEnd = TimestampUtils.setDayOfDate(endTime, vaultEntry.getTimestamp());
         }
-        option = new DateTimeSpanFilterOption(tempStart, tempEnd);
-
-        return new DateTimeSpanFilter(option);
+        return new DateTimeSpanFilter(new DateTimeSpanFilterOption(tempStart, tempEnd));
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         return givenResult;
     }
     
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2017 juehv
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing.filter;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Sliding window rate-of-change detector used by the ElevationFilter and the
+ * ElevationPointFilter.
+ * <p>
+ * Every entry is paired with the first entry which lies more than
+ * <code>minutesBetweenEntries</code> after it. The pair is an elevation if the
+ * rise of the value divided by <code>minutesBetweenEntries</code> reaches the
+ * threshold. Since the partner of a later entry never lies before the partner
+ * of an earlier one, both are found with two pointers in a single pass over
+ * the entries.
+ * <p>
+ * The filters only ask for the first elevation. {@link #detect(java.util.List)}
+ * lists all elevations with their start and end times, e.g. for analyses of
+ * the elevation episodes.
+ *
+ * @author juehv
+ */
+public final class ElevationDetector {
+
+    private final long windowInMillis;
+    private final int minutesBetweenEntries;
+    private final double threshold;
+
+    /**
+     * @param minutesBetweenEntries minimal distance between the entries of a
+     * pair in minutes
+     * @param threshold minimal rise divided by minutesBetweenEntries
+     */
+    public ElevationDetector(int minutesBetweenEntries, double threshold) {
+        this.minutesBetweenEntries = minutesBetweenEntries;
+        this.windowInMillis = minutesBetweenEntries * 60000L;
+        this.threshold = threshold;
+    }
+
+    /**
+     * @param entries entries sorted by timestamp
+     * @return position of the first entry which starts an elevation or -1
+     */
+    int firstElevation(List<VaultEntry> entries) {
+        Scan scan = new Scan(entries);
+        while (scan.next()) {
+            if (scan.isElevation()) {
+                return scan.start;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param entries entries sorted by timestamp
+     * @return all elevations in the order of their start entries
+     */
+    public List<ElevationEvent> detect(List<VaultEntry> entries) {
+        List<ElevationEvent> result = new ArrayList<>();
+        Scan scan = new Scan(entries);
+        while (scan.next()) {
+            if (scan.isElevation()) {
+                result.add(new ElevationEvent(entries.get(scan.start), entries.get(scan.end),
+                        scan.risePerMinute()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Two pointer scan over the timestamps and values of the entries.
+     */
+    private final class Scan {
+
+        private final long[] timestamps;
+        private final double[] values;
+        private int start = -1;
+        private int end = 0;
+
+        Scan(List<VaultEntry> entries) {
+            timestamps = new long[entries.size()];
+            values = new double[entries.size()];
+            int i = 0;
+            for (VaultEntry entry : entries) {
+                timestamps[i] = entry.getTimestamp().getTime();
+                values[i] = entry.getValue();
+                i++;
+            }
+        }
+
+        /**
+         * Moves to the next start entry and its partner.
+         *
+         * @return false if no later start entry has a partner
+         */
+        boolean next() {
+            start++;
+            if (start >= timestamps.length) {
+                return false;
+            }
+            long limit = timestamps[start] + windowInMillis;
+            while (end < timestamps.length && timestamps[end] <= limit) {
+                end++;
+            }
+            // the partners of all later entries are even further away
+            return end < timestamps.length;
+        }
+
+        double risePerMinute() {
+            return (values[end] - values[start]) / minutesBetweenEntries;
+        }
+
+        boolean isElevation() {
+            return threshold <= risePerMinute();
+        }
+    }
+
+    /**
+     * Pair of entries with a rise above the threshold.
+     */
+    public static final class ElevationEvent {
+
+        private final VaultEntry startEntry;
+        private final VaultEntry endEntry;
+        private final double risePerMinute;
+
+        ElevationEvent(VaultEntry startEntry, VaultEntry endEntry, double risePerMinute) {
+            this.startEntry = startEntry;
+            this.endEntry = endEntry;
+            this.risePerMinute = risePerMinute;
+        }
+
+        public VaultEntry getStartEntry() {
+            return startEntry;
+        }
+
+        public VaultEntry getEndEntry() {
+            return endEntry;
+        }
+
+        public Date getStartTime() {
+            return startEntry.getTimestamp();
+        }
+
+        public Date getEndTime() {
+            return endEntry.getTimestamp();
+        }
+
+        public double getRisePerMinute() {
+            return risePerMinute;
+        }
+    }
+}
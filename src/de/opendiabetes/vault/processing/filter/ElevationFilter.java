@@ -18,10 +18,10 @@ package de.opendiabetes.vault.processing.filter;
 
 import de.opendiabetes.vault.data.container.VaultEntry;
 import de.opendiabetes.vault.data.container.VaultEntryType;
+import de.opendiabetes.vault.data.container.VaultEntryTypeIndex;
 import de.opendiabetes.vault.processing.filter.options.ElevationFilterOption;
 import de.opendiabetes.vault.processing.filter.options.FilterOption;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -37,7 +37,6 @@ public class ElevationFilter extends Filter {
     double minElevationPerMinute;
     int minutesBetweenEntries;
     double elevation;
-    List<VaultEntry> positiveVaultEntrys = new ArrayList<>();
 
     public ElevationFilter(FilterOption option) {
 
@@ -64,52 +63,43 @@ public class ElevationFilter extends Filter {
 
     @Override
     Filter update(VaultEntry vaultEntry) {
-        option = new ElevationFilterOption(vaultEntry.getType(), minElevationPerMinute, minutesBetweenEntries);
-        return new CompactQueryFilter(option);
+        return new ElevationFilter(new ElevationFilterOption(vaultEntry.getType(), minElevationPerMinute, minutesBetweenEntries));
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         if (vaultEntryType == entry.getType()) {
-            positiveVaultEntrys.add(entry);
+            context.getState(this, ArrayList<VaultEntry>::new).add(entry);
         }
 
         return true;
     }
 
     @Override
-    protected FilterResult tearDownAfterFilter(FilterResult givenResult) {
-        boolean elevationExist = false;
+    protected FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
+        List<VaultEntry> positiveVaultEntrys = context.getState(this, ArrayList<VaultEntry>::new);
+        context.clearState(this);
 
-        if (positiveVaultEntrys != null && positiveVaultEntrys.size() > 0) {
-            Calendar cal = Calendar.getInstance();
-
-            for (VaultEntry vaultEntry : positiveVaultEntrys) {
-                cal.setTime(vaultEntry.getTimestamp());
-                cal.add(Calendar.MINUTE, minutesBetweenEntries);
-
-                for (VaultEntry vaultEntry1 : positiveVaultEntrys) {
-
-                    if (vaultEntry1.getTimestamp().after(cal.getTime())) {
-
-                        double tempElevation = (vaultEntry1.getValue() - vaultEntry.getValue()) / (minutesBetweenEntries - 0);
-
-                        if (elevation <= tempElevation) {
-                            elevationExist = true;
-                        }
-                        break;
-                    }
-                }
-                if (elevationExist) {
-                    break;
-                }
-            }
-        }
-        if (!elevationExist) {
+        if (new ElevationDetector(minutesBetweenEntries, elevation).firstElevation(positiveVaultEntrys) < 0) {
             givenResult = new FilterResult();
         }
 
         return givenResult;
     }
 
+    @Override
+    public FilterResult filter(List<VaultEntry> data, FilterContext context) {
+        VaultEntryTypeIndex index = VaultEntryTypeIndex.of(data);
+        if (index == null) {
+            return super.filter(data, context);
+        }
+        // every entry matches, the entries to check come straight from the index
+        context.setState(this, index.entriesOf(data, vaultEntryType));
+        return tearDownAfterFilter(acceptAll(data), context);
+    }
+
+    @Override
+    public int getMarginInMinutes() {
+        return Math.max(super.getMarginInMinutes(), minutesBetweenEntries);
+    }
 }
@@ -18,11 +18,14 @@ package de.opendiabetes.vault.processing.filter;
 
 import de.opendiabetes.vault.data.container.VaultEntry;
 import de.opendiabetes.vault.data.container.VaultEntryType;
+import de.opendiabetes.vault.data.container.VaultEntryTypeIndex;
 import de.opendiabetes.vault.processing.filter.options.ElevationPointFilterOption;
 import de.opendiabetes.vault.processing.filter.options.FilterOption;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,7 +40,6 @@ public class ElevationPointFilter extends Filter {
     double minElevationPerMinute;
     int minutesBetweenEntries;
     double elevation;
-    List<VaultEntry> positiveVaultEntrys = new ArrayList<>();
 
     public ElevationPointFilter(FilterOption option) {
 
@@ -64,16 +66,15 @@ public class ElevationPointFilter extends Filter {
 
     @Override
     Filter update(VaultEntry vaultEntry) {
-        option = new ElevationPointFilterOption(vaultEntry.getType(), minElevationPerMinute, minutesBetweenEntries);
-        return new CompactQueryFilter(option);
+        return new ElevationPointFilter(new ElevationPointFilterOption(vaultEntry.getType(), minElevationPerMinute, minutesBetweenEntries));
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         boolean result = false;
 
         if (vaultEntryType == entry.getType()) {
-            positiveVaultEntrys.add(entry);
+            context.getState(this, ArrayList<VaultEntry>::new).add(entry);
             result = true;
         }
 
@@ -81,41 +82,38 @@ public class ElevationPointFilter extends Filter {
     }
 
     @Override
-    protected FilterResult tearDownAfterFilter(FilterResult givenResult) {
-        boolean elevationExist = false;
-
-        List<VaultEntry> negativeEntrys = new ArrayList<>();
-
-        if (positiveVaultEntrys != null && positiveVaultEntrys.size() > 0) {
-            Calendar cal = Calendar.getInstance();
-
-            for (VaultEntry vaultEntry : positiveVaultEntrys) {
-                cal.setTime(vaultEntry.getTimestamp());
-                cal.add(Calendar.MINUTE, minutesBetweenEntries);
-
-                for (VaultEntry vaultEntry1 : positiveVaultEntrys) {
-
-                    if (vaultEntry1.getTimestamp().after(cal.getTime())) {
-
-                        double tempElevation = (vaultEntry1.getValue() - vaultEntry.getValue()) / (minutesBetweenEntries - 0);
-
-                        if (elevation <= tempElevation) {
-                            elevationExist = true;
-                        }
-                        break;
-                    }
-                }
-                if (!elevationExist) {
-                    negativeEntrys.add(vaultEntry);
-                }
-            }
-        }
-
-        for (VaultEntry negativeEntry : negativeEntrys) {
-            givenResult.filteredData.remove(negativeEntry);
+    protected FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
+        List<VaultEntry> positiveVaultEntrys = context.getState(this, ArrayList<VaultEntry>::new);
+        context.clearState(this);
+
+        // all entries before the first elevation are negative
+        int firstElevation = new ElevationDetector(minutesBetweenEntries, elevation).firstElevation(positiveVaultEntrys);
+        List<VaultEntry> negativeEntrys = positiveVaultEntrys.subList(0,
+                firstElevation < 0 ? positiveVaultEntrys.size() : firstElevation);
+
+        if (!negativeEntrys.isEmpty()) {
+            Set<VaultEntry> negativeSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            negativeSet.addAll(negativeEntrys);
+            givenResult.filteredData.removeIf(negativeSet::contains);
         }
 
         return givenResult;
     }
 
+    @Override
+    public FilterResult filter(List<VaultEntry> data, FilterContext context) {
+        VaultEntryTypeIndex index = VaultEntryTypeIndex.of(data);
+        if (index == null) {
+            return super.filter(data, context);
+        }
+        // exactly the entries of the type match
+        int[] positions = index.positionsOf(vaultEntryType);
+        context.setState(this, index.entriesOf(data, vaultEntryType));
+        return tearDownAfterFilter(acceptPositions(data, positions), context);
+    }
+
+    @Override
+    public int getMarginInMinutes() {
+        return Math.max(super.getMarginInMinutes(), minutesBetweenEntries);
+    }
 }
@@ -17,7 +17,12 @@
 package de.opendiabetes.vault.processing.filter;
 
 import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.data.container.VaultEntryDataset;
 import de.opendiabetes.vault.processing.filter.options.FilterOption;
+import de.opendiabetes.vault.util.MetricsRegistry;
+import de.opendiabetes.vault.util.PipelineEvent;
+import de.opendiabetes.vault.util.PipelineEvents;
+import de.opendiabetes.vault.util.PipelineStage;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Date;
@@ -27,6 +32,10 @@ import java.util.Map;
 /**
  * abstract Filter implements filter method for all Filters. All other Filter
  * have to extend this Filter.
+ * <p>
+ * A Filter only holds its definition. Everything a Filter collects during a
+ * run is kept in the {@link FilterContext} of this run, so one instance can be
+ * reused and evaluated concurrently on different datasets.
  *
  * @author Daniel
  */
@@ -50,21 +59,63 @@ public abstract class Filter {
      * implemented. Is used in Method filter.
      *
      * @param entry
+     * @param context state of the current filter run
      * @return boolean
      */
-    abstract boolean matchesFilterParameters(VaultEntry entry);
+    abstract boolean matchesFilterParameters(VaultEntry entry, FilterContext context);
 
     /**
      * Check if the given List of VaultEntrys matches the criteria of the
-     * Filter.
+     * Filter. Uses a new {@link FilterContext} for this run. Records time and
+     * selectivity of the run if metrics are enabled or a Flight Recorder
+     * recording is running.
      *
      * @param data
      * @return Filterresult
      */
     public FilterResult filter(List<VaultEntry> data) {
+        return filterRecorded(data, new FilterContext());
+    }
+
+    /**
+     * Runs this Filter nested into the run of another Filter, e.g. as first
+     * Filter of a {@link CombinationFilter}. The nested run has its own state,
+     * but sees the datasets of the {@link DatasetMarker}s of the outer run.
+     *
+     * @param data
+     * @param outer context of the outer run
+     * @return Filterresult
+     */
+    FilterResult filterNested(List<VaultEntry> data, FilterContext outer) {
+        return filterRecorded(data, outer.newNestedContext());
+    }
+
+    private FilterResult filterRecorded(List<VaultEntry> data, FilterContext context) {
+        PipelineEvent event = PipelineEvents.begin(PipelineStage.FILTER, getType(), null);
+        if (!MetricsRegistry.isEnabled() && !event.isRecording()) {
+            return filter(data, context);
+        }
+        long start = MetricsRegistry.start();
+        FilterResult result = filter(data, context);
+        int sizeOut = result.filteredData != null ? result.filteredData.size() : 0;
+        event.commit(data.size(), sizeOut, -1);
+        MetricsRegistry.stop("filter." + getType(), start, data.size(), sizeOut);
+        return result;
+    }
+
+    /**
+     * Check if the given List of VaultEntrys matches the criteria of the
+     * Filter.
+     *
+     * @param data
+     * @param context state of the current filter run, must not be shared with
+     * concurrent runs
+     * @return Filterresult
+     */
+    public FilterResult filter(List<VaultEntry> data, FilterContext context) {
         FilterResult filterResult;
         List<Map.Entry<Date, Date>> timeSeries = new ArrayList<>();
-        List<VaultEntry> preprocessedData = setUpBeforeFilter(data);
+        List<VaultEntry> preprocessedData = setUpBeforeFilter(data, context);
 
         if (this.getType() == FilterType.NONE || this.getType() == FilterType.MARKER) {
             //Bypass, since nothing has to be filtered
@@ -74,12 +125,12 @@ public abstract class Filter {
             filterResult = new FilterResult(preprocessedData, timeSeries);
         } else {
             //standard Filter process
-            List<VaultEntry> entryResult = new ArrayList<>();
+            List<VaultEntry> entryResult = new VaultEntryDataset();
             Date startOfCurentTimeSeries = null;
             Date lastTimeStamp = null;
 
             for (VaultEntry entry : preprocessedData) {
-                if (matchesFilterParameters(entry)) {
+                if (matchesFilterParameters(entry, context)) {
                     entryResult.add(entry);
                     if (startOfCurentTimeSeries == null) {
                         startOfCurentTimeSeries = entry.getTimestamp();
@@ -97,10 +148,73 @@ public abstract class Filter {
 
             filterResult = new FilterResult(entryResult, timeSeries);
         }
-        filterResult = tearDownAfterFilter(filterResult);
+        filterResult = tearDownAfterFilter(filterResult, context);
         return filterResult;
     }
 
+    /**
+     * Builds the result of a filter run in which every entry matched. Used by
+     * filters which accept all entries and take the entries they need from
+     * the type index instead of collecting them while matching.
+     *
+     * @param data the given entry data
+     * @return FilterResult containing all entries as one time series
+     */
+    FilterResult acceptAll(List<VaultEntry> data) {
+        List<Map.Entry<Date, Date>> timeSeries = new ArrayList<>();
+        if (!data.isEmpty()) {
+            timeSeries.add(new AbstractMap.SimpleEntry<>(data.get(0).getTimestamp(),
+                    data.get(data.size() - 1).getTimestamp()));
+        }
+        return new FilterResult(new VaultEntryDataset(data), timeSeries);
+    }
+
+    /**
+     * Builds the result of a filter run in which exactly the entries at the
+     * given positions matched, e.g. the positions of one type taken from the
+     * type index.
+     *
+     * @param data the given entry data
+     * @param positions ascending positions of the matching entries
+     * @return FilterResult with the same entries and time series the standard
+     * filter process would produce
+     */
+    FilterResult acceptPositions(List<VaultEntry> data, int[] positions) {
+        List<VaultEntry> entryResult = new VaultEntryDataset(positions.length);
+        List<Map.Entry<Date, Date>> timeSeries = new ArrayList<>();
+        int seriesStart = 0;
+        for (int i = 0; i < positions.length; i++) {
+            entryResult.add(data.get(positions[i]));
+            // a time series ends at the first entry which did not match
+            if (i == positions.length - 1 || positions[i + 1] != positions[i] + 1) {
+                timeSeries.add(new AbstractMap.SimpleEntry<>(
+                        data.get(positions[seriesStart]).getTimestamp(),
+                        data.get(positions[i]).getTimestamp()));
+                seriesStart = i + 1;
+            }
+        }
+        return new FilterResult(entryResult, timeSeries);
+    }
+
+    /**
+     * Time range in minutes this Filter looks around an entry to decide on it,
+     * e.g. the margin of a ContinuousWrapper. Used to re-evaluate only newly
+     * arrived data: entries within this margin before the new data are
+     * evaluated again. Combining Filters return the largest margin of their
+     * inner Filters.
+     *
+     * @return margin in minutes, 0 if every entry is decided on its own
+     */
+    public int getMarginInMinutes() {
+        int margin = 0;
+        for (Filter child : FilterOptimizer.childrenOf(this)) {
+            if (child != null) {
+                margin = Math.max(margin, child.getMarginInMinutes());
+            }
+        }
+        return margin;
+    }
+
     /**
      * This Method returns a new Filter from extended Filter. The Filter is
      * constructucted with the Data from the vaultEntry. Example: TimeFilter
@@ -119,9 +233,10 @@ public abstract class Filter {
      * data, just return it as it is.
      *
      * @param data the given initial entry data
+     * @param context state of the current filter run
      * @return modified or unmodified entry data
      */
-    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data) {
+    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data, FilterContext context) {
         return data;
     }
 
@@ -133,8 +248,9 @@ public abstract class Filter {
      * given FilterResult , just return it as it is.
      *
      * @param givenResult data after the filter process was executed
+     * @param context state of the current filter run
      * @return modified or unmodified FilterResult
      */
-    abstract FilterResult tearDownAfterFilter(FilterResult givenResult);
+    abstract FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context);
 
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2017 juehv
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing.filter;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Holds the mutable state of one filter run. Filters keep only their
+ * definition in fields and store everything they collect while filtering
+ * (hit counters, found entries, min/max values ...) in the context of the
+ * current run. This way one filter tree can be reused and evaluated
+ * concurrently, as long as every run uses its own context.
+ * <p>
+ * The datasets recorded by {@link DatasetMarker}s are kept here as well. They
+ * are visible to nested runs and to later runs with the same context.
+ * <p>
+ * A context is not threadsafe and must not be shared between concurrent runs.
+ *
+ * @author juehv
+ */
+public class FilterContext {
+
+    private final Map<Filter, Object> states = new IdentityHashMap<>();
+    private final Map<DatasetMarker, List<VaultEntry>> markedData;
+
+    public FilterContext() {
+        this(new IdentityHashMap<>());
+    }
+
+    private FilterContext(Map<DatasetMarker, List<VaultEntry>> markedData) {
+        this.markedData = markedData;
+    }
+
+    /**
+     * Creates the context of a run nested into this run. The nested run starts
+     * without filter states, but shares the datasets of the markers.
+     *
+     * @return new context
+     */
+    public FilterContext newNestedContext() {
+        return new FilterContext(markedData);
+    }
+
+    /**
+     * @param marker marker which saw the dataset
+     * @param data state of the dataset at the marker
+     */
+    void setMarkedData(DatasetMarker marker, List<VaultEntry> data) {
+        markedData.put(marker, data);
+    }
+
+    /**
+     * @param marker marker of the dataset
+     * @return dataset the marker saw in this run or null if it was not
+     * reached yet
+     */
+    List<VaultEntry> getMarkedData(DatasetMarker marker) {
+        return markedData.get(marker);
+    }
+
+    /**
+     * Returns the run state of the given filter. Creates the state with the
+     * given factory on first access within this run.
+     *
+     * @param <T> type of the state object
+     * @param owner filter the state belongs to
+     * @param initialState factory for the initial state
+     * @return state of the filter for this run
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getState(Filter owner, Supplier<T> initialState) {
+        Object state = states.get(owner);
+        if (state == null) {
+            state = initialState.get();
+            states.put(owner, state);
+        }
+        return (T) state;
+    }
+
+    /**
+     * Replaces the run state of the given filter.
+     *
+     * @param owner filter the state belongs to
+     * @param state new state
+     */
+    public void setState(Filter owner, Object state) {
+        states.put(owner, state);
+    }
+
+    /**
+     * Removes the run state of the given filter, e.g. after a filter finished
+     * and its state must not leak into a following run.
+     *
+     * @param owner filter the state belongs to
+     */
+    public void clearState(Filter owner) {
+        states.remove(owner);
+    }
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright (C) 2017 juehv
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing.filter;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import de.opendiabetes.vault.data.container.VaultEntryType;
+import de.opendiabetes.vault.processing.filter.options.FilterOption;
+import de.opendiabetes.vault.util.TimestampUtils;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Declarative definition of a filter tree in JSON. Every node names a filter
+ * class of this package and lists the arguments of a public constructor of its
+ * option class, e.g.
+ * <pre>
+ * {"filter": "AndFilter", "args": [[
+ *     {"filter": "VaultEntryTypeFilter", "args": ["GLUCOSE_CGM"]},
+ *     {"filter": "ThresholdFilter", "args": [180, "OVER"]}]]}
+ * </pre>
+ * <ul>
+ * <li>"option" names the option class if it is not the filter name plus
+ * "Option". Nodes without "args" use the filter's no-arg constructor if it
+ * has one (NoneFilter, DatasetMarker).</li>
+ * <li>Filter arguments are nodes, lists are arrays. Numbers and booleans map
+ * to the primitive parameters, int parameters also take the name of a public
+ * int constant of the option or filter class (e.g. "OVER"). Entry types are
+ * given by name, dates as epoch milliseconds or "yyyy.MM.dd-HH:mm" and times
+ * of day as "HH:mm".</li>
+ * <li>A node with an "id" can be referenced by later nodes with
+ * {"ref": "id"}, e.g. to pass one DatasetMarker to several filters.</li>
+ * </ul>
+ * The constructor is chosen by the arguments. A definition is rejected if no
+ * or more than one constructor fits.
+ * <p>
+ * The canonical form of a definition (sorted keys, normalized numbers, no
+ * whitespace) is used as fingerprint of the filter tree.
+ *
+ * @author juehv
+ */
+public final class FilterDefinition {
+
+    private static final String FILTER_PACKAGE = Filter.class.getPackage().getName();
+    private static final String OPTION_PACKAGE = FilterOption.class.getPackage().getName();
+
+    private final Filter filter;
+    private final String fingerprint;
+
+    private FilterDefinition(Filter filter, String fingerprint) {
+        this.filter = filter;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @param reader source of the JSON definition
+     * @return parsed definition
+     * @throws JsonParseException if the definition is not valid
+     */
+    public static FilterDefinition parse(Reader reader) throws JsonParseException {
+        return parse(new JsonParser().parse(reader));
+    }
+
+    /**
+     * @param json JSON definition
+     * @return parsed definition
+     * @throws JsonParseException if the definition is not valid
+     */
+    public static FilterDefinition parse(String json) throws JsonParseException {
+        return parse(new JsonParser().parse(json));
+    }
+
+    private static FilterDefinition parse(JsonElement root) throws JsonParseException {
+        try {
+            Filter filter = new Builder().build(root, "$");
+            return new FilterDefinition(filter, canonicalize(root));
+        } catch (IllegalStateException | ClassCastException | UnsupportedOperationException
+                | NumberFormatException | DateTimeParseException ex) {
+            // thrown by gson and the parsers for values of the wrong kind
+            throw new JsonParseException("Invalid filter definition: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @return root of the filter tree
+     */
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return canonical JSON of the definition. Definitions which differ only
+     * in formatting or key order have the same fingerprint.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Writes the element with sorted keys, normalized numbers and without
+     * whitespace.
+     *
+     * @param element JSON element
+     * @return canonical JSON
+     */
+    static String canonicalize(JsonElement element) {
+        StringBuilder sb = new StringBuilder();
+        appendCanonical(element, sb);
+        return sb.toString();
+    }
+
+    private static void appendCanonical(JsonElement element, StringBuilder sb) {
+        if (element == null || element.isJsonNull()) {
+            sb.append("null");
+        } else if (element.isJsonObject()) {
+            Map<String, JsonElement> sorted = new TreeMap<>();
+            for (Map.Entry<String, JsonElement> item : element.getAsJsonObject().entrySet()) {
+                sorted.put(item.getKey(), item.getValue());
+            }
+            sb.append('{');
+            String separator = "";
+            for (Map.Entry<String, JsonElement> item : sorted.entrySet()) {
+                sb.append(separator).append(new JsonPrimitive(item.getKey())).append(':');
+                appendCanonical(item.getValue(), sb);
+                separator = ",";
+            }
+            sb.append('}');
+        } else if (element.isJsonArray()) {
+            sb.append('[');
+            String separator = "";
+            for (JsonElement item : element.getAsJsonArray()) {
+                sb.append(separator);
+                appendCanonical(item, sb);
+                separator = ",";
+            }
+            sb.append(']');
+        } else if (element.getAsJsonPrimitive().isNumber()) {
+            BigDecimal number = new BigDecimal(element.getAsString()).stripTrailingZeros();
+            sb.append(number.signum() == 0 ? "0" : number.toPlainString());
+        } else {
+            // strings are quoted and escaped, booleans stay as they are
+            sb.append(element);
+        }
+    }
+
+    /**
+     * Builds the filters of one definition. Keeps the filters with an id for
+     * later references.
+     */
+    private static final class Builder {
+
+        private final Map<String, Filter> ids = new HashMap<>();
+
+        Filter build(JsonElement element, String path) {
+            if (element == null || !element.isJsonObject()) {
+                throw new JsonParseException(path + ": filter definition has to be an object.");
+            }
+            JsonObject node = element.getAsJsonObject();
+            if (node.has("ref")) {
+                Filter referenced = ids.get(node.get("ref").getAsString());
+                if (referenced == null) {
+                    throw new JsonParseException(path + ": unknown ref " + node.get("ref")
+                            + ". Refs have to follow the node with the id.");
+                }
+                return referenced;
+            }
+            if (!node.has("filter")) {
+                throw new JsonParseException(path + ": missing \"filter\".");
+            }
+
+            String name = node.get("filter").getAsString();
+            Class<? extends Filter> filterClass = resolve(name, FILTER_PACKAGE, Filter.class, path);
+            JsonArray args = node.has("args") ? node.getAsJsonArray("args") : new JsonArray();
+            Filter result;
+            if (!node.has("args") && !node.has("option") && hasNoArgConstructor(filterClass)) {
+                result = newInstance(filterClass, new Class<?>[0], new Object[0], path);
+            } else {
+                String optionName = node.has("option")
+                        ? node.get("option").getAsString() : filterClass.getSimpleName() + "Option";
+                Class<? extends FilterOption> optionClass = resolve(optionName, OPTION_PACKAGE,
+                        FilterOption.class, path);
+                Constructor<?> constructor = choose(optionClass, filterClass, args, path);
+                Type[] types = constructor.getGenericParameterTypes();
+                Object[] values = new Object[types.length];
+                for (int i = 0; i < types.length; i++) {
+                    values[i] = convert(args.get(i), types[i], filterClass, optionClass,
+                            path + ".args[" + i + "]");
+                }
+                FilterOption option = newInstance(optionClass, constructor.getParameterTypes(),
+                        values, path);
+                result = newInstance(filterClass, new Class<?>[]{FilterOption.class},
+                        new Object[]{option}, path);
+            }
+
+            if (node.has("id")) {
+                String id = node.get("id").getAsString();
+                if (ids.put(id, result) != null) {
+                    throw new JsonParseException(path + ": duplicate id \"" + id + "\".");
+                }
+            }
+            return result;
+        }
+
+        private Constructor<?> choose(Class<?> optionClass, Class<?> filterClass, JsonArray args, String path) {
+            Constructor<?>[] constructors = optionClass.getConstructors();
+            // declaration order is not specified, sort for stable results
+            Arrays.sort(constructors, Comparator.comparing(Constructor::toGenericString));
+            List<Constructor<?>> fitting = new ArrayList<>();
+            for (Constructor<?> constructor : constructors) {
+                Type[] types = constructor.getGenericParameterTypes();
+                if (types.length != args.size()) {
+                    continue;
+                }
+                boolean fits = true;
+                for (int i = 0; i < types.length && fits; i++) {
+                    fits = fits(args.get(i), types[i], filterClass, optionClass);
+                }
+                if (fits) {
+                    fitting.add(constructor);
+                }
+            }
+            if (fitting.size() == 1) {
+                return fitting.get(0);
+            }
+            StringBuilder sb = new StringBuilder(path).append(": ")
+                    .append(fitting.isEmpty() ? "no" : "more than one")
+                    .append(" constructor of ").append(optionClass.getSimpleName())
+                    .append(" fits the args. Available:");
+            for (Constructor<?> constructor : constructors) {
+                sb.append("\n  ").append(constructor.toGenericString());
+            }
+            throw new JsonParseException(sb.toString());
+        }
+
+        private Object convert(JsonElement arg, Type type, Class<?> filterClass, Class<?> optionClass, String path) {
+            Class<?> raw = rawClassOf(type);
+            if (Filter.class.isAssignableFrom(raw)) {
+                Filter result = build(arg, path);
+                if (!raw.isInstance(result)) {
+                    throw new JsonParseException(path + ": expected a " + raw.getSimpleName()
+                            + " but got a " + result.getClass().getSimpleName() + ".");
+                }
+                return result;
+            } else if (Collection.class.isAssignableFrom(raw)) {
+                Type elementType = elementTypeOf(type);
+                List<Object> result = new ArrayList<>();
+                JsonArray array = arg.getAsJsonArray();
+                for (int i = 0; i < array.size(); i++) {
+                    result.add(convert(array.get(i), elementType, filterClass, optionClass,
+                            path + "[" + i + "]"));
+                }
+                return result;
+            } else if (raw == int.class || raw == Integer.class) {
+                JsonPrimitive primitive = arg.getAsJsonPrimitive();
+                return primitive.isNumber() ? primitive.getAsInt()
+                        : constantOf(primitive.getAsString(), filterClass, optionClass);
+            } else if (raw == long.class || raw == Long.class) {
+                return arg.getAsLong();
+            } else if (raw == double.class || raw == Double.class) {
+                return arg.getAsDouble();
+            } else if (raw == boolean.class || raw == Boolean.class) {
+                return arg.getAsBoolean();
+            } else if (raw == String.class) {
+                return arg.getAsString();
+            } else if (raw == VaultEntryType.class) {
+                return VaultEntryType.valueOfIgnoreCase(arg.getAsString());
+            } else if (raw == Date.class) {
+                return dateOf(arg.getAsJsonPrimitive());
+            } else if (raw == LocalTime.class) {
+                return LocalTime.parse(arg.getAsString());
+            }
+            throw new JsonParseException(path + ": unsupported parameter type " + type.getTypeName());
+        }
+
+        private static boolean fits(JsonElement arg, Type type, Class<?> filterClass, Class<?> optionClass) {
+            Class<?> raw = rawClassOf(type);
+            if (Filter.class.isAssignableFrom(raw)) {
+                if (!arg.isJsonObject()) {
+                    return false;
+                }
+                JsonObject node = arg.getAsJsonObject();
+                if (node.has("ref")) {
+                    return true; // type is checked when the reference is resolved
+                }
+                Class<?> nodeClass = node.has("filter")
+                        ? classOrNull(node.get("filter").getAsString(), FILTER_PACKAGE) : null;
+                return nodeClass != null && raw.isAssignableFrom(nodeClass);
+            } else if (Collection.class.isAssignableFrom(raw)) {
+                if (!arg.isJsonArray()) {
+                    return false;
+                }
+                Type elementType = elementTypeOf(type);
+                for (JsonElement item : arg.getAsJsonArray()) {
+                    if (!fits(item, elementType, filterClass, optionClass)) {
+                        return false;
+                    }
+                }
+                return true;
+            } else if (!arg.isJsonPrimitive()) {
+                return false;
+            }
+
+            JsonPrimitive primitive = arg.getAsJsonPrimitive();
+            if (raw == int.class || raw == Integer.class) {
+                return primitive.isNumber() ? isIntegral(primitive)
+                        : primitive.isString() && constantOf(primitive.getAsString(), filterClass, optionClass) != null;
+            } else if (raw == long.class || raw == Long.class) {
+                return primitive.isNumber() && isIntegral(primitive);
+            } else if (raw == double.class || raw == Double.class) {
+                return primitive.isNumber();
+            } else if (raw == boolean.class || raw == Boolean.class) {
+                return primitive.isBoolean();
+            } else if (raw == String.class) {
+                return primitive.isString();
+            } else if (raw == VaultEntryType.class) {
+                return primitive.isString() && VaultEntryType.valueOfIgnoreCase(primitive.getAsString()) != null;
+            } else if (raw == Date.class) {
+                try {
+                    return dateOf(primitive) != null;
+                } catch (JsonParseException ex) {
+                    return false;
+                }
+            } else if (raw == LocalTime.class) {
+                try {
+                    return primitive.isString() && LocalTime.parse(primitive.getAsString()) != null;
+                } catch (DateTimeParseException ex) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isIntegral(JsonPrimitive primitive) {
+            BigDecimal value = new BigDecimal(primitive.getAsString());
+            return value.signum() == 0 || value.stripTrailingZeros().scale() <= 0;
+        }
+
+        private static Date dateOf(JsonPrimitive primitive) {
+            if (primitive.isNumber() && isIntegral(primitive)) {
+                return new Date(primitive.getAsLong());
+            } else if (primitive.isString()) {
+                try {
+                    return TimestampUtils.createCleanTimestamp(primitive.getAsString(),
+                            TimestampUtils.TIME_FORMAT_DATASETS);
+                } catch (ParseException ex) {
+                    throw new JsonParseException("Can't parse date " + primitive
+                            + ", expected " + TimestampUtils.TIME_FORMAT_DATASETS + ".", ex);
+                }
+            }
+            throw new JsonParseException("Can't parse date " + primitive + ".");
+        }
+
+        /**
+         * @return value of the public static int constant with the given name
+         * or null if there is none
+         */
+        private static Integer constantOf(String name, Class<?>... owners) {
+            for (Class<?> owner : owners) {
+                try {
+                    Field field = owner.getField(name);
+                    if (Modifier.isStatic(field.getModifiers()) && field.getType() == int.class) {
+                        return field.getInt(null);
+                    }
+                } catch (NoSuchFieldException | IllegalAccessException ex) {
+                    // try next owner
+                }
+            }
+            return null;
+        }
+
+        private static Class<?> rawClassOf(Type type) {
+            if (type instanceof Class) {
+                return (Class<?>) type;
+            } else if (type instanceof ParameterizedType) {
+                return (Class<?>) ((ParameterizedType) type).getRawType();
+            }
+            return Object.class;
+        }
+
+        private static Type elementTypeOf(Type collectionType) {
+            if (collectionType instanceof ParameterizedType) {
+                return ((ParameterizedType) collectionType).getActualTypeArguments()[0];
+            }
+            return Object.class;
+        }
+
+        private static boolean hasNoArgConstructor(Class<?> cls) {
+            try {
+                cls.getConstructor();
+                return true;
+            } catch (NoSuchMethodException ex) {
+                return false;
+            }
+        }
+
+        private static Class<?> classOrNull(String name, String defaultPackage) {
+            try {
+                return Class.forName(name.indexOf('.') < 0 ? defaultPackage + "." + name : name);
+            } catch (ClassNotFoundException ex) {
+                return null;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Class<? extends T> resolve(String name, String defaultPackage,
+                Class<T> base, String path) {
+            Class<?> cls = classOrNull(name, defaultPackage);
+            if (cls == null || !base.isAssignableFrom(cls) || Modifier.isAbstract(cls.getModifiers())) {
+                throw new JsonParseException(path + ": " + name + " is not a "
+                        + base.getSimpleName() + ".");
+            }
+            return (Class<? extends T>) cls;
+        }
+
+        private static <T> T newInstance(Class<T> cls, Class<?>[] parameterTypes, Object[] values, String path) {
+            try {
+                return cls.getConstructor(parameterTypes).newInstance(values);
+            } catch (InvocationTargetException ex) {
+                throw new JsonParseException(path + ": can't create " + cls.getSimpleName()
+                        + ": " + ex.getCause(), ex.getCause());
+            } catch (ReflectiveOperationException ex) {
+                throw new JsonParseException(path + ": can't create " + cls.getSimpleName() + ".", ex);
+            }
+        }
+    }
+}
@@ -34,7 +34,6 @@ public class FilterHitCounterFilter extends Filter {
     private int maxHits;
     private int minHits;
     private boolean noneHits;
-    private int currentHit;
 
     public FilterHitCounterFilter(FilterOption option) {
         super(option);
@@ -44,8 +43,6 @@ public class FilterHitCounterFilter extends Filter {
             this.minHits = ((FilterHitCounterFilterOption) option).getMinHits();
             this.noneHits = ((FilterHitCounterFilterOption) option).getNoneHits();
 
-            currentHit = 0;
-
         } else {
             String msg = "Option has to be an instance of FilterHitCounterFilterOption";
             Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, msg);
@@ -59,10 +56,10 @@ public class FilterHitCounterFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         boolean result = true;
-        if (filter.matchesFilterParameters(entry)) {
-            currentHit++;
+        if (filter.matchesFilterParameters(entry, context)) {
+            context.getState(this, () -> new int[1])[0]++;
         }
 
         return result;
@@ -74,15 +71,16 @@ public class FilterHitCounterFilter extends Filter {
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         FilterResult result;
+        int currentHit = context.getState(this, () -> new int[1])[0];
 
         if ((currentHit >= minHits && currentHit <= maxHits) || (noneHits && currentHit == 0)) {
             result = givenResult;
         } else {
             result = new FilterResult();
         }
-        currentHit = 0;
+        context.clearState(this);
 
         return result;
     }
@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2017 juehv
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing.filter;
+
+import de.opendiabetes.vault.processing.filter.options.AndFilterOption;
+import de.opendiabetes.vault.processing.filter.options.CombinationFilterOption;
+import de.opendiabetes.vault.processing.filter.options.CompactQueryFilterOption;
+import de.opendiabetes.vault.processing.filter.options.FilterOption;
+import de.opendiabetes.vault.processing.filter.options.NegateFilterOption;
+import de.opendiabetes.vault.processing.filter.options.OrFilterOption;
+import de.opendiabetes.vault.processing.filter.options.QueryFilterOption;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Rewrites a filter tree into an equivalent tree which is cheaper to evaluate.
+ * <p>
+ * The optimizer only touches filters it knows to be free of side effects while
+ * matching:
+ * <ul>
+ * <li>children of And- and OrFilters are ordered by estimated cost and
+ * selectivity, so cheap type and time predicates run before expensive
+ * setup-heavy filters (CombinationFilter, QueryFilter, TimeClusterFilter),</li>
+ * <li>identical side-effect free siblings are evaluated only once,</li>
+ * <li>CompactQueryFilters stop evaluating a child after its first hit.</li>
+ * </ul>
+ * Filters with side effects (counters, filters collecting entries, filters
+ * changing the data in their setup) act as barriers: they keep their position
+ * and only the side-effect free filters between two barriers are reordered.
+ * <p>
+ * Use {@link #explain(Filter)} to render the estimates of a (optimized) tree.
+ *
+ * @author juehv
+ */
+public class FilterOptimizer {
+
+    /**
+     * Side effect classes of filters, ordered from harmless to barrier.
+     */
+    enum Purity {
+        /**
+         * Stateless matching, identity setup and tear down.
+         */
+        PURE,
+        /**
+         * Matching only reads state built in the setup, setup returns the given
+         * data and tear down is the identity.
+         */
+        READ_ONLY,
+        /**
+         * Anything else. Never moved, duplicated or skipped.
+         */
+        BARRIER
+    }
+
+    private static final double DEFAULT_COST = 10;
+    private static final double DEFAULT_SELECTIVITY = 0.5;
+    private static final double LOOKUP_COST = 20;
+
+    private FilterOptimizer() {
+    }
+
+    /**
+     * Returns an optimized version of the given filter tree. The given tree is
+     * not modified; unchanged subtrees are shared with the result.
+     *
+     * @param filter root of the filter tree
+     * @return optimized filter tree, evaluates to the same result
+     */
+    public static Filter optimize(Filter filter) {
+        if (filter instanceof AndFilter) {
+            List<Filter> children = optimizeAll(((AndFilterOption) filter.option).getFilters());
+            return new AndFilter(new AndFilterOption(reorder(children, true)));
+        } else if (filter instanceof OrFilter) {
+            List<Filter> children = optimizeAll(((OrFilterOption) filter.option).getFilters());
+            return new OrFilter(new OrFilterOption(reorder(children, false)));
+        } else if (filter instanceof NegateFilter) {
+            Filter child = ((NegateFilterOption) filter.option).getFilter();
+            return new NegateFilter(new NegateFilterOption(optimize(child)));
+        } else if (filter instanceof QueryFilter) {
+            QueryFilterOption option = (QueryFilterOption) filter.option;
+            return new QueryFilter(new QueryFilterOption(optimize(option.getMainFilter()),
+                    optimize(option.getInnerFilter()), option.getMinSize(), option.getMaxSize()));
+        } else if (filter instanceof CompactQueryFilter) {
+            CompactQueryFilterOption option = (CompactQueryFilterOption) filter.option;
+            if (option.getFilters() == null) {
+                return filter;
+            }
+            List<Filter> children = optimizeAll(option.getFilters());
+            boolean sideEffectFree = true;
+            for (Filter child : children) {
+                sideEffectFree &= purityOf(child) != Purity.BARRIER;
+            }
+            return new CompactQueryFilter(new CompactQueryFilterOption(children,
+                    option.isSkipSatisfiedFilters() || sideEffectFree));
+        }
+        return filter;
+    }
+
+    /**
+     * Renders the filter tree with the estimates the optimizer works with.
+     * One line per filter, children are indented.
+     *
+     * @param filter root of the filter tree
+     * @return human readable plan
+     */
+    public static String explain(Filter filter) {
+        StringBuilder builder = new StringBuilder();
+        explain(filter, 0, builder);
+        return builder.toString();
+    }
+
+    private static void explain(Filter filter, int depth, StringBuilder builder) {
+        for (int i = 0; i < depth; i++) {
+            builder.append("  ");
+        }
+        builder.append(filter.getClass().getSimpleName());
+        builder.append(String.format(Locale.ENGLISH, " [cost=%.2f, selectivity=%.2f, %s",
+                estimateCost(filter), estimateSelectivity(filter),
+                purityOf(filter).name().toLowerCase(Locale.ENGLISH)));
+        if (filter instanceof CompactQueryFilter
+                && ((CompactQueryFilterOption) filter.option).isSkipSatisfiedFilters()) {
+            builder.append(", short-circuit");
+        }
+        builder.append("]\n");
+        for (Filter child : childrenOf(filter)) {
+            explain(child, depth + 1, builder);
+        }
+    }
+
+    private static List<Filter> optimizeAll(List<Filter> filters) {
+        List<Filter> result = new ArrayList<>(filters.size());
+        for (Filter filter : filters) {
+            result.add(optimize(filter));
+        }
+        return result;
+    }
+
+    /**
+     * Sorts every run of side-effect free filters between two barriers and
+     * removes identical pure duplicates within that run.
+     */
+    private static List<Filter> reorder(List<Filter> children, boolean conjunction) {
+        List<Filter> result = new ArrayList<>(children.size());
+        List<Filter> run = new ArrayList<>();
+        for (Filter child : children) {
+            if (purityOf(child) == Purity.BARRIER) {
+                result.addAll(sortRun(run, conjunction));
+                run.clear();
+                result.add(child);
+            } else {
+                run.add(child);
+            }
+        }
+        result.addAll(sortRun(run, conjunction));
+        return result;
+    }
+
+    private static List<Filter> sortRun(List<Filter> run, boolean conjunction) {
+        List<Filter> unique = new ArrayList<>(run.size());
+        Set<String> seen = new HashSet<>();
+        for (Filter filter : run) {
+            if (purityOf(filter) == Purity.PURE) {
+                String key = structuralKey(filter);
+                if (key != null && !seen.add(key)) {
+                    continue;
+                }
+            }
+            unique.add(filter);
+        }
+        // classic predicate ordering: AND by cost per rejected entry, OR by cost per accepted entry
+        unique.sort(Comparator.comparingDouble(filter -> {
+            double selectivity = estimateSelectivity(filter);
+            double decisive = conjunction ? 1 - selectivity : selectivity;
+            return decisive <= 0 ? Double.MAX_VALUE : estimateCost(filter) / decisive;
+        }));
+        return unique;
+    }
+
+    /**
+     * @param filter root of the filter tree
+     * @return true if every filter of the tree decides on each entry alone,
+     * so the tree gives the same result on any superset of its matches
+     */
+    public static boolean isPure(Filter filter) {
+        return purityOf(filter) == Purity.PURE;
+    }
+
+    static Purity purityOf(Filter filter) {
+        if (filter instanceof VaultEntryTypeFilter
+                || filter instanceof DateTimeSpanFilter
+                || filter instanceof DateTimePointFilter
+                || filter instanceof TimeSpanFilter
+                || filter instanceof TimePointFilter
+                || filter instanceof ThresholdFilter
+                || filter instanceof NoneFilter) {
+            return Purity.PURE;
+        } else if (filter instanceof AndFilter || filter instanceof OrFilter
+                || filter instanceof NegateFilter) {
+            Purity result = Purity.PURE;
+            for (Filter child : childrenOf(filter)) {
+                Purity childPurity = purityOf(child);
+                if (childPurity.compareTo(result) > 0) {
+                    result = childPurity;
+                }
+            }
+            return result;
+        } else if (filter instanceof QueryFilter || filter instanceof TimeClusterFilter) {
+            return Purity.READ_ONLY;
+        } else if (filter instanceof CombinationFilter) {
+            CombinationFilterOption option = (CombinationFilterOption) filter.option;
+            if (option.getDataPointer() == null
+                    && purityOf(option.getSecondFilter()) == Purity.PURE) {
+                return Purity.READ_ONLY;
+            }
+        }
+        return Purity.BARRIER;
+    }
+
+    /**
+     * Estimated relative cost of matching one entry.
+     */
+    static double estimateCost(Filter filter) {
+        if (filter instanceof NoneFilter) {
+            return 0.5;
+        } else if (filter instanceof VaultEntryTypeFilter || filter instanceof ThresholdFilter) {
+            return 1;
+        } else if (filter instanceof DateTimeSpanFilter || filter instanceof DateTimePointFilter) {
+            return 2;
+        } else if (filter instanceof TimeSpanFilter || filter instanceof TimePointFilter) {
+            return 4;
+        } else if (filter instanceof NegateFilter) {
+            return estimateCost(childrenOf(filter).get(0)) + 0.5;
+        } else if (filter instanceof AndFilter || filter instanceof OrFilter) {
+            boolean conjunction = filter instanceof AndFilter;
+            double cost = 0;
+            double reached = 1;
+            for (Filter child : childrenOf(filter)) {
+                cost += reached * estimateCost(child);
+                double selectivity = estimateSelectivity(child);
+                reached *= conjunction ? selectivity : 1 - selectivity;
+            }
+            return cost;
+        } else if (filter instanceof QueryFilter || filter instanceof TimeClusterFilter
+                || filter instanceof CombinationFilter) {
+            return LOOKUP_COST;
+        }
+        return DEFAULT_COST;
+    }
+
+    /**
+     * Estimated share of entries accepted by the filter.
+     */
+    static double estimateSelectivity(Filter filter) {
+        if (filter instanceof NoneFilter) {
+            return 1;
+        } else if (filter instanceof VaultEntryTypeFilter) {
+            return 0.15;
+        } else if (filter instanceof DateTimeSpanFilter || filter instanceof DateTimePointFilter) {
+            return 0.3;
+        } else if (filter instanceof TimeSpanFilter || filter instanceof TimePointFilter) {
+            return 0.4;
+        } else if (filter instanceof NegateFilter) {
+            return 1 - estimateSelectivity(childrenOf(filter).get(0));
+        } else if (filter instanceof AndFilter) {
+            double selectivity = 1;
+            for (Filter child : childrenOf(filter)) {
+                selectivity *= estimateSelectivity(child);
+            }
+            return selectivity;
+        } else if (filter instanceof OrFilter) {
+            double rejected = 1;
+            for (Filter child : childrenOf(filter)) {
+                rejected *= 1 - estimateSelectivity(child);
+            }
+            return 1 - rejected;
+        }
+        return DEFAULT_SELECTIVITY;
+    }
+
+    static List<Filter> childrenOf(Filter filter) {
+        List<Filter> result = new ArrayList<>();
+        FilterOption option = filter.option;
+        if (option instanceof AndFilterOption) {
+            result.addAll(((AndFilterOption) option).getFilters());
+        } else if (option instanceof OrFilterOption) {
+            result.addAll(((OrFilterOption) option).getFilters());
+        } else if (option instanceof NegateFilterOption) {
+            result.add(((NegateFilterOption) option).getFilter());
+        } else if (option instanceof CompactQueryFilterOption
+                && ((CompactQueryFilterOption) option).getFilters() != null) {
+            result.addAll(((CompactQueryFilterOption) option).getFilters());
+        } else if (option instanceof QueryFilterOption) {
+            result.add(((QueryFilterOption) option).getMainFilter());
+            result.add(((QueryFilterOption) option).getInnerFilter());
+        } else if (option instanceof CombinationFilterOption) {
+            result.add(((CombinationFilterOption) option).getFirstFilter());
+            result.add(((CombinationFilterOption) option).getSecondFilter());
+        }
+        return result;
+    }
+
+    /**
+     * Describes a filter tree, e.g. to detect if a cached result was computed
+     * with the same filters. Trees with the same filter classes and option
+     * values have the same fingerprint.
+     *
+     * @param filter root of the filter tree
+     * @return fingerprint or null if an option can not be described
+     */
+    public static String fingerprint(Filter filter) {
+        return structuralKey(filter);
+    }
+
+    /**
+     * Builds a key which is equal for filters with the same class and the same
+     * option values.
+     *
+     * @return key or null if the option can not be described
+     */
+    static String structuralKey(Filter filter) {
+        if (filter == null) {
+            return "null";
+        }
+        StringBuilder builder = new StringBuilder(filter.getClass().getName()).append('(');
+        FilterOption option = filter.option;
+        if (option != null) {
+            for (Field field : option.getClass().getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                    String value = describeValue(field.get(option));
+                    if (value == null) {
+                        return null;
+                    }
+                    builder.append(field.getName()).append('=').append(value).append(',');
+                } catch (IllegalAccessException | RuntimeException ex) {
+                    return null;
+                }
+            }
+        }
+        return builder.append(')').toString();
+    }
+
+    private static String describeValue(Object value) {
+        if (value instanceof Filter) {
+            return structuralKey((Filter) value);
+        } else if (value instanceof Collection) {
+            StringBuilder builder = new StringBuilder("[");
+            for (Object item : (Collection<?>) value) {
+                String itemValue = describeValue(item);
+                if (itemValue == null) {
+                    return null;
+                }
+                builder.append(itemValue).append(',');
+            }
+            return builder.append(']').toString();
+        } else if (value instanceof Date) {
+            return Long.toString(((Date) value).getTime());
+        } else if (value == null || value instanceof Number || value instanceof Boolean
+                || value instanceof CharSequence || value instanceof Enum
+                || value instanceof java.time.temporal.TemporalAccessor) {
+            return String.valueOf(value);
+        }
+        // unknown (e.g. data pointers): never treat as identical
+        return null;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2017 juehv
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing.filter;
+
+import de.opendiabetes.vault.importer.ReadPredicate;
+import de.opendiabetes.vault.processing.filter.options.DateTimeSpanFilterOption;
+import de.opendiabetes.vault.processing.filter.options.VaultEntryTypeFilterOption;
+import java.util.Collections;
+
+/**
+ * Derives a {@link ReadPredicate} from the outermost filters of a filter tree.
+ * The predicate is a necessary condition: every entry matched by the filter
+ * tree also matches the predicate, so the repository reader can skip all
+ * other entries.
+ * <p>
+ * Only VaultEntryTypeFilters and DateTimeSpanFilters, combined with And- and
+ * OrFilters, contribute to the predicate. Every other filter is treated as
+ * "may match anything".
+ *
+ * @author juehv
+ */
+public class FilterPushdown {
+
+    private FilterPushdown() {
+    }
+
+    /**
+     * @param filter root of the filter tree, may be null
+     * @return predicate covering all entries the filter tree can match
+     */
+    public static ReadPredicate derive(Filter filter) {
+        if (filter instanceof VaultEntryTypeFilter) {
+            VaultEntryTypeFilterOption option = (VaultEntryTypeFilterOption) filter.option;
+            return ReadPredicate.ofTypes(Collections.singleton(option.getVaultEntryType()));
+        } else if (filter instanceof DateTimeSpanFilter) {
+            DateTimeSpanFilterOption option = (DateTimeSpanFilterOption) filter.option;
+            return ReadPredicate.between(option.getStartTime(), option.getEndTime());
+        } else if (filter instanceof AndFilter) {
+            ReadPredicate result = ReadPredicate.all();
+            for (Filter child : FilterOptimizer.childrenOf(filter)) {
+                result = result.intersect(derive(child));
+            }
+            return result;
+        } else if (filter instanceof OrFilter) {
+            ReadPredicate result = null;
+            for (Filter child : FilterOptimizer.childrenOf(filter)) {
+                ReadPredicate childPredicate = derive(child);
+                if (childPredicate.isAll()) {
+                    return childPredicate;
+                }
+                result = result == null ? childPredicate : result.union(childPredicate);
+            }
+            return result != null ? result : ReadPredicate.all();
+        }
+        return ReadPredicate.all();
+    }
+}
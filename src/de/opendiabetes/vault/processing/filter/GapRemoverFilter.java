@@ -19,6 +19,7 @@ package de.opendiabetes.vault.processing.filter;
 import de.opendiabetes.vault.processing.filter.options.GapRemoverFilterOption;
 import de.opendiabetes.vault.data.container.VaultEntry;
 import de.opendiabetes.vault.data.container.VaultEntryType;
+import de.opendiabetes.vault.data.container.VaultEntryTypeIndex;
 import de.opendiabetes.vault.processing.filter.options.FilterOption;
 import de.opendiabetes.vault.util.TimestampUtils;
 import java.util.ArrayList;
@@ -57,18 +58,17 @@ public class GapRemoverFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         return true;
     }
 
     @Override
     Filter update(VaultEntry vaultEntry) {
-        option = new GapRemoverFilterOption(vaultEntry.getType(), gapTimeInMinutes);
-        return new GapRemoverFilter(option);
+        return new GapRemoverFilter(new GapRemoverFilterOption(vaultEntry.getType(), gapTimeInMinutes));
     }
 
     @Override
-    protected FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    protected FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
 
         FilterResult result = new FilterResult(removeGap(givenResult.filteredData), givenResult.timeSeries);
 
@@ -84,7 +84,14 @@ public class GapRemoverFilter extends Filter {
         Date currentFoundEndDate = null;
         VaultEntry subListEntry = null;
 
-        if (data != null && vaultEntryType != null && gapTimeInMinutes > 0) {
+        VaultEntryTypeIndex typeIndex = VaultEntryTypeIndex.of(data);
+        if (data != null && vaultEntryType != null && gapTimeInMinutes > 0
+                && typeIndex != null && typeIndex.isSorted()) {
+            System.out.println("Removing Gaps");
+            result = removeGapIndexed(data, typeIndex.positionsOf(vaultEntryType));
+            System.out.println("Removed " + (data.size() - result.size()) + " entries");
+            System.out.println("");
+        } else if (data != null && vaultEntryType != null && gapTimeInMinutes > 0) {
 
             int dataSize = data.size();
             //          double tenthCounter = 1.0;
@@ -163,4 +170,73 @@ public class GapRemoverFilter extends Filter {
         return result;
     }
 
+    /**
+     * Same as the scan in removeGap, but works on the positions of the gap
+     * type only and copies the kept ranges in bulk. Requires sorted data.
+     */
+    private List<VaultEntry> removeGapIndexed(List<VaultEntry> data, int[] typePositions) {
+        List<VaultEntry> result = new ArrayList<>();
+        int dataSize = data.size();
+        if (typePositions.length == 0) {
+            result.addAll(data);
+            return result;
+        }
+
+        // entries in front of the first gap type entry are kept
+        result.addAll(data.subList(0, typePositions[0]));
+        long startTime = data.get(typePositions[0]).getTimestamp().getTime();
+        int segmentStart = typePositions[0];
+        int next = 1;
+        while (next < typePositions.length) {
+            long foundEndDate = data.get(typePositions[next]).getTimestamp().getTime();
+            // the found entry is handled at the first later timestamp
+            int resolve = firstIndexAfter(data, typePositions[next] + 1, foundEndDate);
+            if (resolve == dataSize) {
+                break;
+            }
+            while (next < typePositions.length && typePositions[next] < resolve) {
+                next++;
+            }
+
+            if (foundEndDate <= TimestampUtils.addMinutesToTimestamp(startTime, gapTimeInMinutes)) {
+                result.addAll(data.subList(segmentStart, resolve));
+                segmentStart = resolve;
+            } else {
+                // entries with the same timestamp as the found entry belong to the next series
+                int keep = resolve;
+                while (keep > segmentStart && data.get(keep - 1).getTimestamp().getTime() == foundEndDate) {
+                    keep--;
+                }
+                segmentStart = keep;
+            }
+            startTime = foundEndDate;
+        }
+
+        //add last temp List if in time span
+        long lastTimestamp = data.get(dataSize - 1).getTimestamp().getTime();
+        if (lastTimestamp >= startTime
+                && lastTimestamp <= TimestampUtils.addMinutesToTimestamp(startTime, gapTimeInMinutes)) {
+            result.addAll(data.subList(segmentStart, dataSize));
+        }
+        return result;
+    }
+
+    private static int firstIndexAfter(List<VaultEntry> sortedData, int fromIndex, long timestamp) {
+        int low = fromIndex;
+        int high = sortedData.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedData.get(mid).getTimestamp().getTime() > timestamp) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public int getMarginInMinutes() {
+        return (int) Math.max(super.getMarginInMinutes(), gapTimeInMinutes);
+    }
 }
@@ -33,7 +33,6 @@ public class InBetweenFilter extends Filter {
     int minValue;
     int maxValue;
     VaultEntryType vaultEntryType;
-    boolean wrongEntry = false;
     boolean normalize = false;
 
     public InBetweenFilter(FilterOption option) {
@@ -58,12 +57,12 @@ public class InBetweenFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         boolean result = true;
 
         if (entry.getType().equals(vaultEntryType)) {
             if (entry.getValue() > maxValue || entry.getValue() < minValue) {
-                wrongEntry = true;
+                context.setState(this, Boolean.TRUE);
             }
         }
 
@@ -72,12 +71,13 @@ public class InBetweenFilter extends Filter {
 
     @Override
     Filter update(VaultEntry vaultEntry) {
-        option = new InBetweenFilterOption(vaultEntry.getType(), minValue, maxValue, normalize);
-        return new InBetweenFilter(option);
+        return new InBetweenFilter(new InBetweenFilterOption(vaultEntry.getType(), minValue, maxValue, normalize));
     }
 
     @Override
-    protected FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    protected FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
+        boolean wrongEntry = context.getState(this, () -> Boolean.FALSE);
+        context.clearState(this);
         if (wrongEntry) {
             givenResult = new FilterResult();
         } else if (normalize) {
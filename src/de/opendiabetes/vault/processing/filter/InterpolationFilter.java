@@ -17,16 +17,16 @@
 package de.opendiabetes.vault.processing.filter;
 
 import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.data.container.VaultEntryDataset;
 import de.opendiabetes.vault.data.container.VaultEntryType;
+import de.opendiabetes.vault.data.container.VaultEntryTypeIndex;
 import de.opendiabetes.vault.processing.filter.options.FilterOption;
 import de.opendiabetes.vault.processing.filter.options.InterpolationFilterOption;
 import de.opendiabetes.vault.util.SplineInterpolator;
 import de.opendiabetes.vault.util.VaultEntryUtils;
-import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,9 +38,7 @@ import java.util.logging.Logger;
 public class InterpolationFilter extends Filter {
 
     private VaultEntryType vaultEntryType;
-    List<Map.Entry<Long, Double>> pairsForInterpolation = new ArrayList<>();
     int entriesBetweenTimeStamps = 0;
-    SplineInterpolator splineInterpolator;
 
     /**
      * Sets the vaultEntryType which will later be used in the filter mechanism.
@@ -66,13 +64,9 @@ public class InterpolationFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
-
-        double counter = 0;
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         if (entry.getType().equals(vaultEntryType)) {
-            Map.Entry<Long, Double> pair = new AbstractMap.SimpleEntry<>(entry.getTimestamp().getTime(), entry.getValue());
-            pairsForInterpolation.add(pair);
-            counter++;
+            context.getState(this, ArrayList<VaultEntry>::new).add(entry);
         }
 
         return true;
@@ -84,18 +78,36 @@ public class InterpolationFilter extends Filter {
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
-        splineInterpolator = new SplineInterpolator(pairsForInterpolation);
-
-        List<VaultEntry> vaultEntrys = new ArrayList<>();
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
+        List<VaultEntry> entriesForInterpolation = context.getState(this, ArrayList<VaultEntry>::new);
+        context.clearState(this);
+
+        int numberOfPoints = entriesForInterpolation.size();
+        long[] xValues = new long[numberOfPoints];
+        double[] yValues = new double[numberOfPoints];
+        for (int i = 0; i < numberOfPoints; i++) {
+            xValues[i] = entriesForInterpolation.get(i).getTimestamp().getTime();
+            yValues[i] = entriesForInterpolation.get(i).getValue();
+        }
+        SplineInterpolator splineInterpolator = new SplineInterpolator(xValues, yValues);
 
-        for (int i = 0; i < pairsForInterpolation.size() - 1; i++) {
-            long timeStepBetweenEntries = (pairsForInterpolation.get(i + 1).getKey() - pairsForInterpolation.get(i).getKey()) / entriesBetweenTimeStamps;
+        // generates all interpolation timestamps first and interpolates them as one batch
+        long[] timestamps = new long[Math.max(numberOfPoints - 1, 0) * entriesBetweenTimeStamps];
+        int k = 0;
+        for (int i = 0; i < numberOfPoints - 1; i++) {
+            long timeStepBetweenEntries = (xValues[i + 1] - xValues[i]) / entriesBetweenTimeStamps;
 
             for (int j = 0; j < entriesBetweenTimeStamps; j++) {
-                vaultEntrys.add(new VaultEntry(vaultEntryType, new Date(Long.parseLong((pairsForInterpolation.get(i).getKey() + (j * timeStepBetweenEntries)) + "")), splineInterpolator.interpolate(pairsForInterpolation.get(i).getKey() + (j * timeStepBetweenEntries))));
+                timestamps[k++] = xValues[i] + (j * timeStepBetweenEntries);
             }
         }
+        double[] values = new double[timestamps.length];
+        splineInterpolator.interpolate(timestamps, values);
+
+        List<VaultEntry> vaultEntrys = new VaultEntryDataset(timestamps.length + givenResult.filteredData.size());
+        for (int i = 0; i < timestamps.length; i++) {
+            vaultEntrys.add(new VaultEntry(vaultEntryType, new Date(timestamps[i]), values[i]));
+        }
         /**
          * for (VaultEntry vaultEntry : givenResult.filteredData) { if
          * (vaultEntry.getType().equals(vaultEntryType)) {
@@ -108,4 +120,15 @@ public class InterpolationFilter extends Filter {
 
         return new FilterResult(vaultEntrys, givenResult.timeSeries);
     }
+
+    @Override
+    public FilterResult filter(List<VaultEntry> data, FilterContext context) {
+        VaultEntryTypeIndex index = VaultEntryTypeIndex.of(data);
+        if (index == null) {
+            return super.filter(data, context);
+        }
+        // every entry matches, the interpolation points come straight from the index
+        context.setState(this, index.entriesOf(data, vaultEntryType));
+        return tearDownAfterFilter(acceptAll(data), context);
+    }
 }
@@ -33,13 +33,10 @@ public class LogicFilter extends Filter {
 
     private LogicFilterOption option;
 
-    private int currentFilter;
-
     public LogicFilter(FilterOption option) {
         super(option);
         if (option instanceof LogicFilterOption) {
             this.option = (LogicFilterOption) option;
-            currentFilter = 0;
         } else {
             String msg = "Option has to be an instance of LogicFilterOption";
             Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, msg);
@@ -53,28 +50,29 @@ public class LogicFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         boolean result = false;
+        int[] currentFilter = context.getState(this, () -> new int[1]);
 
-        if (option.getFilters().size() - 1 >= currentFilter && option.getFilters().get(currentFilter).matchesFilterParameters(entry) == true) {
+        if (option.getFilters().size() - 1 >= currentFilter[0] && option.getFilters().get(currentFilter[0]).matchesFilterParameters(entry, context) == true) {
 
-            if (option.getFilters().size() - 1 == currentFilter) {
+            if (option.getFilters().size() - 1 == currentFilter[0]) {
                 result = true;
 
                 if (!option.isOnlyOneResult()) {
-                    currentFilter = -1;
+                    currentFilter[0] = -1;
                 }
             }
-            currentFilter++;
+            currentFilter[0]++;
         }
 
         return result;
     }
 
     @Override
-    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data) {
+    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data, FilterContext context) {
         for (Filter filter : option.getFilters()) {
-            filter.setUpBeforeFilter(data);
+            filter.setUpBeforeFilter(data, context);
         }
         return data;
     }
@@ -86,7 +84,8 @@ public class LogicFilter extends Filter {
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
+        context.clearState(this);
         return givenResult;
     }
 }
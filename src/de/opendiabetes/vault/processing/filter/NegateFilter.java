@@ -50,8 +50,8 @@ public class NegateFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
-        return !filter.matchesFilterParameters(entry);
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
+        return !filter.matchesFilterParameters(entry, context);
     }
 
     @Override
@@ -60,13 +60,13 @@ public class NegateFilter extends Filter {
     }
 
     @Override
-    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data) {
-        return filter.setUpBeforeFilter(data);
+    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data, FilterContext context) {
+        return filter.setUpBeforeFilter(data, context);
     }
 
     @Override
-    protected FilterResult tearDownAfterFilter(FilterResult givenResult) {
-        return filter.tearDownAfterFilter(givenResult);
+    protected FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
+        return filter.tearDownAfterFilter(givenResult, context);
     }
 
 }
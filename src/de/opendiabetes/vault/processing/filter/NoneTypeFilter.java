@@ -31,7 +31,6 @@ import java.util.logging.Logger;
 public class NoneTypeFilter extends Filter {
 
     VaultEntryType vaultEntryType;
-    boolean containsType = false;
 
     public NoneTypeFilter(FilterOption option) {
         super(option);
@@ -52,9 +51,9 @@ public class NoneTypeFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         if (entry.getType().equals(vaultEntryType)) {
-            containsType = true;
+            context.setState(this, Boolean.TRUE);
         }
 
         return true;
@@ -62,19 +61,18 @@ public class NoneTypeFilter extends Filter {
 
     @Override
     Filter update(VaultEntry vaultEntry) {
-        option = new NoneTypeFilterOption(vaultEntry.getType());
-        return new NoneTypeFilter(option);
+        return new NoneTypeFilter(new NoneTypeFilterOption(vaultEntry.getType()));
     }
 
     @Override
-    protected FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    protected FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
+        boolean containsType = context.getState(this, () -> Boolean.FALSE);
+        context.clearState(this);
 
         if (containsType) {
             givenResult = new FilterResult();
         }
 
-        containsType = false;
-
         return givenResult;
     }
 
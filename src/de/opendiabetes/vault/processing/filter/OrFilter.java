@@ -52,11 +52,11 @@ public class OrFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry vaultEntry) {
+    boolean matchesFilterParameters(VaultEntry vaultEntry, FilterContext context) {
         boolean result = false;
 
         for (Filter filter : filters) {
-            if (filter.matchesFilterParameters(vaultEntry)) {
+            if (filter.matchesFilterParameters(vaultEntry, context)) {
                 result = true;
                 break;
             }
@@ -67,9 +67,9 @@ public class OrFilter extends Filter {
     }
 
     @Override
-    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data) {
+    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data, FilterContext context) {
         for (Filter filter : filters) {
-            filter.setUpBeforeFilter(data);
+            filter.setUpBeforeFilter(data, context);
         }
         return data;
     }
@@ -85,9 +85,9 @@ public class OrFilter extends Filter {
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         for (Filter filter : filters) {
-            givenResult = filter.tearDownAfterFilter(givenResult);
+            givenResult = filter.tearDownAfterFilter(givenResult, context);
         }
 
         return givenResult;
@@ -35,7 +35,6 @@ public class PositionFilter extends Filter {
 
     private Filter filter;
     private final int filterMode;
-    private VaultEntry positionResult = null;
     private VaultEntryType weightedType;
 
     /**
@@ -81,8 +80,9 @@ public class PositionFilter extends Filter {
     }
 
     @Override
-    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data) {
-        List<VaultEntry> tempData = filter.filter(data).filteredData;
+    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data, FilterContext context) {
+        List<VaultEntry> tempData = filter.filterNested(data, context).filteredData;
+        VaultEntry positionResult = null;
         switch (filterMode) {
             case (FIRST):
                 positionResult = tempData.get(0);
@@ -102,14 +102,16 @@ public class PositionFilter extends Filter {
             default:
                 break;
         }
+        context.setState(this, positionResult);
 
         return tempData;
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
 
-        return this.positionResult != null && entry.equals(this.positionResult);
+        VaultEntry positionResult = context.getState(this, () -> null);
+        return positionResult != null && entry.equals(positionResult);
     }
 
     @Override
@@ -118,7 +120,7 @@ public class PositionFilter extends Filter {
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         return givenResult;
     }
 
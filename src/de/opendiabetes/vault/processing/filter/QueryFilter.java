@@ -36,9 +36,7 @@ public class QueryFilter extends Filter {
 //    private DatasetMarker dataPointer;
     private Filter mainFilter;
     private Filter innerFilter;
-    private boolean resultValid;
     private int minSize, maxSize;
-    private List<VaultEntry> mainFilterResult;
 
     public final static int DONT_CARE = -1;
 
@@ -57,12 +55,13 @@ public class QueryFilter extends Filter {
     }
 
     @Override
-    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data) {
-        mainFilterResult = mainFilter.filter(data).filteredData;
-        List<VaultEntry> innerResult = innerFilter.filter(mainFilterResult).filteredData;
+    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data, FilterContext context) {
+        List<VaultEntry> mainFilterResult = mainFilter.filterNested(data, context).filteredData;
+        List<VaultEntry> innerResult = innerFilter.filterNested(mainFilterResult, context).filteredData;
 
-        resultValid = (minSize == DONT_CARE || innerResult.size() >= minSize)
+        boolean resultValid = (minSize == DONT_CARE || innerResult.size() >= minSize)
                 && (maxSize == DONT_CARE || innerResult.size() <= maxSize);
+        context.setState(this, resultValid ? mainFilterResult : null);
 
         //filters with the basic method
         //result = (dataPointer != null) ? dataPointer.getDataset() : innerFilterResult;
@@ -75,8 +74,9 @@ public class QueryFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
-        return (resultValid && mainFilterResult.contains(entry));
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
+        List<VaultEntry> mainFilterResult = context.getState(this, () -> null);
+        return (mainFilterResult != null && mainFilterResult.contains(entry));
     }
 
     @Override
@@ -85,7 +85,7 @@ public class QueryFilter extends Filter {
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         return givenResult;
     }
 
@@ -30,9 +30,6 @@ import java.util.logging.Logger;
  */
 public class StandardizeFilter extends Filter {
 
-    double minValue;
-    double maxValue;
-    boolean initialized = false;
     boolean betweenZeroAndOne;
     VaultEntryType vaultEntryType;
 
@@ -57,24 +54,24 @@ public class StandardizeFilter extends Filter {
 
     @Override
     Filter update(VaultEntry vaultEntry) {
-        option = new StandardizeFilterOption(vaultEntry.getType(), betweenZeroAndOne);
-        return new StandardizeFilter(option);
+        return new StandardizeFilter(new StandardizeFilterOption(vaultEntry.getType(), betweenZeroAndOne));
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         boolean result = true;
 
         if (entry.getType().equals(vaultEntryType)) {
-
-            if (!initialized) {
-                minValue = entry.getValue();
-                maxValue = entry.getValue();
-                initialized = true;
-            } else if (entry.getValue() < minValue) {
-                minValue = entry.getValue();
-            } else if (entry.getValue() > maxValue) {
-                maxValue = entry.getValue();
+            ValueRange range = context.getState(this, ValueRange::new);
+
+            if (!range.initialized) {
+                range.minValue = entry.getValue();
+                range.maxValue = entry.getValue();
+                range.initialized = true;
+            } else if (entry.getValue() < range.minValue) {
+                range.minValue = entry.getValue();
+            } else if (entry.getValue() > range.maxValue) {
+                range.maxValue = entry.getValue();
             }
 
         }
@@ -83,7 +80,11 @@ public class StandardizeFilter extends Filter {
     }
 
     @Override
-    protected FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    protected FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
+        ValueRange range = context.getState(this, ValueRange::new);
+        context.clearState(this);
+        double minValue = range.minValue;
+        double maxValue = range.maxValue;
 
         for (VaultEntry vaultEntry : givenResult.filteredData) {
             double newValue = 0;
@@ -100,4 +101,14 @@ public class StandardizeFilter extends Filter {
         return givenResult;
     }
 
+    /**
+     * Min and max value found during one filter run.
+     */
+    private static class ValueRange {
+
+        double minValue;
+        double maxValue;
+        boolean initialized = false;
+    }
+
 }
@@ -61,7 +61,7 @@ public class ThresholdFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
 
         return (mode == UNDER && (entry.getValue() < maxThreshold))
                 || (mode == OVER && (entry.getValue() > minThreshold))
@@ -74,7 +74,7 @@ public class ThresholdFilter extends Filter {
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         return givenResult;
     }
 
@@ -44,7 +44,6 @@ import java.util.logging.Logger;
 public class TimeClusterFilter extends Filter {
 
 //    private DatasetMarker dataPointer;
-    private List<VaultEntry> clusterFilterResult;
     private List<Filter> filters;
     private final LocalTime startTime;
     private final long clusterTimeInMinutes;
@@ -76,7 +75,7 @@ public class TimeClusterFilter extends Filter {
     }
 
     @Override
-    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data) {
+    protected List<VaultEntry> setUpBeforeFilter(List<VaultEntry> data, FilterContext context) {
         List<VaultEntry> result = data;
         if (clusterTimeInMinutes > 0 && filters != null && data != null) {
             List<VaultEntry> clusteredList = new ArrayList<>();
@@ -122,7 +121,7 @@ public class TimeClusterFilter extends Filter {
 
             }
             //result = clusterResult;
-            this.clusterFilterResult = clusterResult;
+            context.setState(this, clusterResult);
             //result = VaultEntryUtils.sort(result);
         }
         return data;
@@ -134,7 +133,8 @@ public class TimeClusterFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
+        List<VaultEntry> clusterFilterResult = context.getState(this, () -> null);
         return clusterFilterResult.contains(entry);
     }
 
@@ -144,8 +144,12 @@ public class TimeClusterFilter extends Filter {
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         return givenResult;
     }
 
+    @Override
+    public int getMarginInMinutes() {
+        return (int) Math.max(super.getMarginInMinutes(), clusterTimeInMinutes);
+    }
 }
@@ -68,18 +68,17 @@ public class TimePointFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         return TimestampUtils.withinTimeSpan(startTime, endTime, entry.getTimestamp());
     }
 
     @Override
     Filter update(VaultEntry vaultEntry) {
-        option = new TimePointFilterOption(TimestampUtils.dateToLocalTime(vaultEntry.getTimestamp()), marginBeforeInMinutes, marginAfterInMinutes);
-        return new TimePointFilter(option);
+        return new TimePointFilter(new TimePointFilterOption(TimestampUtils.dateToLocalTime(vaultEntry.getTimestamp()), marginBeforeInMinutes, marginAfterInMinutes));
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         return givenResult;
     }
 
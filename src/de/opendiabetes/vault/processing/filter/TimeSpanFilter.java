@@ -58,18 +58,17 @@ public class TimeSpanFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         return TimestampUtils.withinTimeSpan(startTime, endTime, entry.getTimestamp());
     }
 
     @Override
     Filter update(VaultEntry vaultEntry) {
-        option = new TimeSpanFilterOption(TimestampUtils.dateToLocalTime(vaultEntry.getTimestamp()), endTime);
-        return new TimeSpanFilter(option);
+        return new TimeSpanFilter(new TimeSpanFilterOption(TimestampUtils.dateToLocalTime(vaultEntry.getTimestamp()), endTime));
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         return givenResult;
     }
 
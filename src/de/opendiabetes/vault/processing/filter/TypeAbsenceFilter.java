@@ -18,10 +18,13 @@ package de.opendiabetes.vault.processing.filter;
 
 import de.opendiabetes.vault.data.container.VaultEntry;
 import de.opendiabetes.vault.data.container.VaultEntryType;
+import de.opendiabetes.vault.data.container.VaultEntryTypeIndex;
 import de.opendiabetes.vault.processing.filter.options.FilterOption;
 import de.opendiabetes.vault.processing.filter.options.TypeAbsenceFilterOption;
 import de.opendiabetes.vault.util.TimestampUtils;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,8 +37,6 @@ public class TypeAbsenceFilter extends Filter {
     private final long marginAfterTrigger; // minutes after a trigger until data becomes interesting again.
     private final VaultEntryType type;
 
-    Date lastEntryTimeFound = null;
-
     public TypeAbsenceFilter(FilterOption option) {
         super(option);
         if (option instanceof TypeAbsenceFilterOption) {
@@ -49,12 +50,13 @@ public class TypeAbsenceFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         boolean result = true;
+        Date lastEntryTimeFound = context.getState(this, () -> null);
 
         //maybe buggy behaviour. Whole class better be refactored in separate filter, e.g. TypeFilter, groupFilter and ExclusionFilter
         if ((type != null && type == entry.getType()) ) {
-            lastEntryTimeFound = entry.getTimestamp();
+            context.setState(this, entry.getTimestamp());
             result = false;
         } else if ((lastEntryTimeFound != null
                 && !TimestampUtils
@@ -77,8 +79,43 @@ public class TypeAbsenceFilter extends Filter {
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
+        context.clearState(this);
         return givenResult;
     }
 
+    @Override
+    public FilterResult filter(List<VaultEntry> data, FilterContext context) {
+        VaultEntryTypeIndex index = VaultEntryTypeIndex.of(data);
+        if (index == null || !index.isSorted() || type == null) {
+            return super.filter(data, context);
+        }
+        // matches are the runs between two entries of the type, each run
+        // starts after the margin of the type entry in front of it
+        int[] typePositions = index.positionsOf(type);
+        int[] matching = new int[data.size() - typePositions.length];
+        int count = 0;
+        int runStart = 0;
+        for (int k = 0; k <= typePositions.length; k++) {
+            int runEnd = k < typePositions.length ? typePositions[k] : data.size();
+            int position = runStart;
+            if (k > 0) {
+                long marginEnd = TimestampUtils.addMinutesToTimestamp(
+                        data.get(typePositions[k - 1]).getTimestamp().getTime(), marginAfterTrigger);
+                while (position < runEnd && data.get(position).getTimestamp().getTime() <= marginEnd) {
+                    position++;
+                }
+            }
+            while (position < runEnd) {
+                matching[count++] = position++;
+            }
+            runStart = runEnd + 1;
+        }
+        return tearDownAfterFilter(acceptPositions(data, Arrays.copyOf(matching, count)), context);
+    }
+
+    @Override
+    public int getMarginInMinutes() {
+        return (int) Math.max(super.getMarginInMinutes(), marginAfterTrigger);
+    }
 }
@@ -55,18 +55,17 @@ public class ValueMoverFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         return true;
     }
 
     @Override
     Filter update(VaultEntry vaultEntry) {
-        option = new ValueMoverFilterOption(vaultEntry.getType(), value, isAdd);
-        return new ValueMoverFilter(option);
+        return new ValueMoverFilter(new ValueMoverFilterOption(vaultEntry.getType(), value, isAdd));
     }
 
     @Override
-    protected FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    protected FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
 
         for (VaultEntry vaultEntry : givenResult.filteredData) {
             if(vaultEntry.getType().equals(vaultEntryType))
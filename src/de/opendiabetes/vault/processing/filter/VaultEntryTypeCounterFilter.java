@@ -19,7 +19,9 @@ package de.opendiabetes.vault.processing.filter;
 import de.opendiabetes.vault.processing.filter.options.VaultEntryTypeCounterFilterOption;
 import de.opendiabetes.vault.data.container.VaultEntry;
 import de.opendiabetes.vault.data.container.VaultEntryType;
+import de.opendiabetes.vault.data.container.VaultEntryTypeIndex;
 import de.opendiabetes.vault.processing.filter.options.FilterOption;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,7 +37,6 @@ public class VaultEntryTypeCounterFilter extends Filter {
     private int maxHits;
     private int minHits;
     private boolean noneHits;
-    private int currentHit;
 
     public VaultEntryTypeCounterFilter(FilterOption option) {
         super(option);
@@ -45,8 +46,6 @@ public class VaultEntryTypeCounterFilter extends Filter {
             this.minHits = ((VaultEntryTypeCounterFilterOption) option).getMinHits();
             this.noneHits = ((VaultEntryTypeCounterFilterOption) option).getNoneHits();
 
-            currentHit = 0;
-
         } else {
             String msg = "Option has to be an instance of VaultEntryTypeCounterFilterOption";
             Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, msg);
@@ -60,10 +59,10 @@ public class VaultEntryTypeCounterFilter extends Filter {
     }
 
     @Override
-    boolean matchesFilterParameters(VaultEntry entry) {
+    boolean matchesFilterParameters(VaultEntry entry, FilterContext context) {
         boolean result = true;
         if (entry.getType() == vaultEntryType) {
-            currentHit++;
+            context.getState(this, () -> new int[1])[0]++;
         }
 
         return result;
@@ -75,16 +74,28 @@ public class VaultEntryTypeCounterFilter extends Filter {
     }
 
     @Override
-    FilterResult tearDownAfterFilter(FilterResult givenResult) {
+    FilterResult tearDownAfterFilter(FilterResult givenResult, FilterContext context) {
         FilterResult result;
+        int currentHit = context.getState(this, () -> new int[1])[0];
 
         if ((currentHit >= minHits && currentHit <= maxHits) || (noneHits && currentHit == 0)) {
             result = givenResult;
         } else {
             result = new FilterResult();
         }
-        currentHit = 0;
+        context.clearState(this);
 
         return result;
     }
+
+    @Override
+    public FilterResult filter(List<VaultEntry> data, FilterContext context) {
+        VaultEntryTypeIndex index = VaultEntryTypeIndex.of(data);
+        if (index == null) {
+            return super.filter(data, context);
+        }
+        // every entry matches, the hits come straight from the index
+        context.setState(this, new int[]{index.count(vaultEntryType)});
+        return tearDownAfterFilter(acceptAll(data), context);
+    }
 }
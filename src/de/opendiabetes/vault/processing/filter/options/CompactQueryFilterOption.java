@@ -27,16 +27,32 @@ import java.util.List;
 public class CompactQueryFilterOption extends FilterOption {
 
     List<Filter> filters;
+    private final boolean skipSatisfiedFilters;
 
     public CompactQueryFilterOption(List<Filter> filters) {
+        this(filters, false);
+    }
+
+    /**
+     *
+     * @param filters filters which must all match at least once
+     * @param skipSatisfiedFilters stop evaluating a filter after its first hit.
+     * Only valid if the filters have no side effects while matching.
+     */
+    public CompactQueryFilterOption(List<Filter> filters, boolean skipSatisfiedFilters) {
         super(new HashMap<>(), null);
         super.getParameterNameAndType().put("Filters", Filter.class);
 
         this.filters = filters;
+        this.skipSatisfiedFilters = skipSatisfiedFilters;
     }
 
     public List<Filter> getFilters() {
         return filters;
     }
 
+    public boolean isSkipSatisfiedFilters() {
+        return skipSatisfiedFilters;
+    }
+
 }
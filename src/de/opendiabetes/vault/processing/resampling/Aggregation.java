@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing.resampling;
+
+/**
+ * Defines how the samples of one entry type are mapped to the points of a
+ * {@link ResamplingGrid}.
+ *
+ * @author juehv
+ */
+public enum Aggregation {
+    /**
+     * Value of the last sample at or before the grid point (last value
+     * carried forward). Suited for CGM or basal rates.
+     */
+    LAST_VALUE,
+    /**
+     * Mean of all samples within the grid cell, i.e. from the grid point
+     * (inclusive) to the next grid point (exclusive). Empty cells are
+     * invalid.
+     */
+    MEAN,
+    /**
+     * Sum of all samples within the grid cell. Empty cells are 0, which suits
+     * events like boli or meals.
+     */
+    SUM,
+    /**
+     * Linear interpolation between the samples around the grid point.
+     */
+    LINEAR,
+    /**
+     * Monotone cubic spline interpolation, see
+     * {@link de.opendiabetes.vault.util.SplineInterpolator}.
+     */
+    SPLINE
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing.resampling;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.data.container.VaultEntryDataset;
+import de.opendiabetes.vault.data.container.VaultEntryType;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Result of a {@link Resampler} run. Holds one column of doubles per entry
+ * type, all aligned to the same {@link ResamplingGrid}. Invalid values are
+ * NaN and their bit in the validity mask of the column is cleared.
+ *
+ * @author juehv
+ */
+public class ColumnBatch {
+
+    private final ResamplingGrid grid;
+    private final VaultEntryType[] types;
+    private final Aggregation[] aggregations;
+    private final double[][] values;
+    private final BitSet[] validMasks;
+
+    ColumnBatch(ResamplingGrid grid, VaultEntryType[] types, Aggregation[] aggregations,
+            double[][] values, BitSet[] validMasks) {
+        this.grid = grid;
+        this.types = types;
+        this.aggregations = aggregations;
+        this.values = values;
+        this.validMasks = validMasks;
+    }
+
+    public ResamplingGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return number of grid points, i.e. rows
+     */
+    public int getRowCount() {
+        return grid.size();
+    }
+
+    public int getColumnCount() {
+        return types.length;
+    }
+
+    /**
+     * @param column column index
+     * @return entry type of the column
+     */
+    public VaultEntryType getType(int column) {
+        return types[column];
+    }
+
+    /**
+     * @param column column index
+     * @return aggregation used for the column
+     */
+    public Aggregation getAggregation(int column) {
+        return aggregations[column];
+    }
+
+    /**
+     * @param type entry type
+     * @return column index of the type or -1 if the type was not resampled
+     */
+    public int columnOf(VaultEntryType type) {
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param column column index
+     * @return values of the column. The array is shared and must not be
+     * modified.
+     */
+    public double[] getValues(int column) {
+        return values[column];
+    }
+
+    /**
+     * @param column column index
+     * @param row grid point index
+     * @return value or NaN if invalid
+     */
+    public double getValue(int column, int row) {
+        return values[column][row];
+    }
+
+    /**
+     * @param column column index
+     * @param row grid point index
+     * @return true if the value is valid
+     */
+    public boolean isValid(int column, int row) {
+        return validMasks[column].get(row);
+    }
+
+    /**
+     * @param column column index
+     * @return copy of the validity mask of the column
+     */
+    public BitSet getValidMask(int column) {
+        return (BitSet) validMasks[column].clone();
+    }
+
+    /**
+     * @return true if all columns are valid at the row, e.g. for selecting
+     * complete samples for training
+     */
+    public boolean isRowComplete(int row) {
+        for (BitSet mask : validMasks) {
+            if (!mask.get(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts the valid values back into entries, e.g. to store them as tag.
+     *
+     * @return entries sorted by timestamp, columns in column order
+     */
+    public List<VaultEntry> toVaultEntries() {
+        List<VaultEntry> result = new VaultEntryDataset();
+        for (int row = 0; row < grid.size(); row++) {
+            Date timestamp = new Date(grid.timestampAt(row));
+            for (int column = 0; column < types.length; column++) {
+                if (validMasks[column].get(row)) {
+                    result.add(new VaultEntry(types[column], timestamp, values[column][row]));
+                }
+            }
+        }
+        return result;
+    }
+}
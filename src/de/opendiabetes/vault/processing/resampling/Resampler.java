@@ -0,0 +1,226 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing.resampling;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import de.opendiabetes.vault.data.container.VaultEntryType;
+import de.opendiabetes.vault.data.container.VaultEntryTypeIndex;
+import de.opendiabetes.vault.processing.SliceExecutor;
+import de.opendiabetes.vault.util.SplineInterpolator;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the entries of a dataset onto a fixed {@link ResamplingGrid}, one
+ * column per configured entry type. The samples of every type are unpacked
+ * into primitive arrays and merged with the grid in a single pass per column,
+ * so the work is linear in the number of samples plus grid points.
+ * <p>
+ * Resampler instances hold no state besides their options and can be shared
+ * between threads.
+ *
+ * @author juehv
+ */
+public class Resampler {
+
+    private final ResamplerOptions options;
+    private final long maxGapInMillis;
+
+    public Resampler(ResamplerOptions options) {
+        this.options = options;
+        this.maxGapInMillis = options.getMaxGapInMinutes() > 0
+                ? options.getMaxGapInMinutes() * 60000L : Long.MAX_VALUE;
+    }
+
+    /**
+     * Resamples the data on a grid covering the data with the step of the
+     * options.
+     *
+     * @param data entries, preferably sorted by timestamp
+     * @return column batch
+     */
+    public ColumnBatch resample(List<VaultEntry> data) {
+        return resample(data, ResamplingGrid.covering(data, options.getStepInMinutes()));
+    }
+
+    /**
+     * Resamples the data on the given grid.
+     *
+     * @param data entries, preferably sorted by timestamp
+     * @param grid target grid
+     * @return column batch
+     */
+    public ColumnBatch resample(List<VaultEntry> data, ResamplingGrid grid) {
+        VaultEntryTypeIndex index = VaultEntryTypeIndex.of(data);
+        if (index == null) {
+            index = VaultEntryTypeIndex.build(data);
+        }
+        Map<VaultEntryType, Aggregation> columns = options.getColumns();
+        VaultEntryType[] types = new VaultEntryType[columns.size()];
+        Aggregation[] aggregations = new Aggregation[columns.size()];
+        double[][] values = new double[columns.size()][];
+        BitSet[] validMasks = new BitSet[columns.size()];
+
+        long[] gridTimestamps = grid.timestamps();
+        int column = 0;
+        for (Map.Entry<VaultEntryType, Aggregation> item : columns.entrySet()) {
+            Samples samples = new Samples(data, index.positionsOf(item.getKey()), index.isSorted());
+            types[column] = item.getKey();
+            aggregations[column] = item.getValue();
+            values[column] = new double[gridTimestamps.length];
+            validMasks[column] = new BitSet(gridTimestamps.length);
+            switch (item.getValue()) {
+                case LAST_VALUE:
+                    lastValue(samples, gridTimestamps, values[column], validMasks[column]);
+                    break;
+                case MEAN:
+                    bucket(samples, gridTimestamps, grid.getStepInMillis(), false, values[column], validMasks[column]);
+                    break;
+                case SUM:
+                    bucket(samples, gridTimestamps, grid.getStepInMillis(), true, values[column], validMasks[column]);
+                    break;
+                case LINEAR:
+                    interpolate(samples, gridTimestamps, null, values[column], validMasks[column]);
+                    break;
+                case SPLINE:
+                    SplineInterpolator spline = samples.size >= 2
+                            ? new SplineInterpolator(samples.timestamps, samples.values) : null;
+                    interpolate(samples, gridTimestamps, spline, values[column], validMasks[column]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported aggregation " + item.getValue());
+            }
+            column++;
+        }
+        return new ColumnBatch(grid, types, aggregations, values, validMasks);
+    }
+
+    /**
+     * Resamples every slice on its own covering grid. Slices are processed in
+     * parallel by the executor.
+     *
+     * @param slices input slices, e.g. data of a tag
+     * @param executor executor for the slices
+     * @return column batches in slice order
+     */
+    public List<ColumnBatch> resample(List<List<VaultEntry>> slices, SliceExecutor executor) {
+        return executor.map(this::resample, slices);
+    }
+
+    private void lastValue(Samples samples, long[] grid, double[] out, BitSet valid) {
+        int next = 0; // first sample after the grid point
+        for (int i = 0; i < grid.length; i++) {
+            while (next < samples.size && samples.timestamps[next] <= grid[i]) {
+                next++;
+            }
+            if (next > 0 && grid[i] - samples.timestamps[next - 1] <= maxGapInMillis) {
+                out[i] = samples.values[next - 1];
+                valid.set(i);
+            } else {
+                out[i] = Double.NaN;
+            }
+        }
+    }
+
+    private static void bucket(Samples samples, long[] grid, long step, boolean sum, double[] out, BitSet valid) {
+        int next = 0;
+        if (grid.length > 0) {
+            // samples before the grid belong to no cell
+            while (next < samples.size && samples.timestamps[next] < grid[0]) {
+                next++;
+            }
+        }
+        for (int i = 0; i < grid.length; i++) {
+            long endOfCell = grid[i] + step;
+            double total = 0;
+            int count = 0;
+            while (next < samples.size && samples.timestamps[next] < endOfCell) {
+                total += samples.values[next++];
+                count++;
+            }
+            if (sum) {
+                out[i] = total;
+                valid.set(i);
+            } else if (count > 0) {
+                out[i] = total / count;
+                valid.set(i);
+            } else {
+                out[i] = Double.NaN;
+            }
+        }
+    }
+
+    private void interpolate(Samples samples, long[] grid, SplineInterpolator spline, double[] out, BitSet valid) {
+        if (spline != null) {
+            spline.interpolate(grid, out);
+        }
+        int next = 0; // first sample after the grid point
+        for (int i = 0; i < grid.length; i++) {
+            while (next < samples.size && samples.timestamps[next] <= grid[i]) {
+                next++;
+            }
+            int before = next - 1;
+            if (before >= 0 && samples.timestamps[before] == grid[i]) {
+                out[i] = samples.values[before];
+            } else if (before >= 0 && next < samples.size
+                    && samples.timestamps[next] - samples.timestamps[before] <= maxGapInMillis) {
+                if (spline == null) {
+                    double fraction = (double) (grid[i] - samples.timestamps[before])
+                            / (samples.timestamps[next] - samples.timestamps[before]);
+                    out[i] = samples.values[before]
+                            + (samples.values[next] - samples.values[before]) * fraction;
+                }
+            } else {
+                out[i] = Double.NaN;
+            }
+            if (!Double.isNaN(out[i])) {
+                valid.set(i);
+            }
+        }
+    }
+
+    /**
+     * Timestamps and values of the entries of one type, sorted by timestamp.
+     */
+    private static final class Samples {
+
+        final long[] timestamps;
+        final double[] values;
+        final int size;
+
+        Samples(List<VaultEntry> data, int[] positions, boolean sorted) {
+            size = positions.length;
+            timestamps = new long[size];
+            values = new double[size];
+            Integer[] order = null;
+            if (!sorted) {
+                order = new Integer[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = positions[i];
+                }
+                Arrays.sort(order, (a, b) -> data.get(a).getTimestamp().compareTo(data.get(b).getTimestamp()));
+            }
+            for (int i = 0; i < size; i++) {
+                VaultEntry entry = data.get(order != null ? order[i] : positions[i]);
+                timestamps[i] = entry.getTimestamp().getTime();
+                values[i] = entry.getValue();
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing.resampling;
+
+import de.opendiabetes.vault.data.container.VaultEntryType;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Options container for the {@link Resampler}.
+ *
+ * @author juehv
+ */
+public class ResamplerOptions {
+
+    private final Map<VaultEntryType, Aggregation> columns;
+    private final int stepInMinutes;
+    private final int maxGapInMinutes;
+
+    /**
+     * @param columns entry types to resample with their aggregation. The
+     * iteration order defines the column order.
+     * @param stepInMinutes distance between two grid points, used if no grid
+     * is given
+     * @param maxGapInMinutes grid points are masked as invalid if the samples
+     * they are computed from are further apart (LINEAR, SPLINE) or further
+     * away (LAST_VALUE) than this. Values below 1 disable the gap mask.
+     */
+    public ResamplerOptions(Map<VaultEntryType, Aggregation> columns, int stepInMinutes, int maxGapInMinutes) {
+        if (stepInMinutes < 1) {
+            throw new IllegalArgumentException("Step has to be at least one minute.");
+        }
+        this.columns = Collections.unmodifiableMap(new LinkedHashMap<>(columns));
+        this.stepInMinutes = stepInMinutes;
+        this.maxGapInMinutes = maxGapInMinutes;
+    }
+
+    /**
+     * @param columns entry types to resample with their aggregation
+     * @param stepInMinutes distance between two grid points
+     */
+    public ResamplerOptions(Map<VaultEntryType, Aggregation> columns, int stepInMinutes) {
+        this(columns, stepInMinutes, 0);
+    }
+
+    public Map<VaultEntryType, Aggregation> getColumns() {
+        return columns;
+    }
+
+    public int getStepInMinutes() {
+        return stepInMinutes;
+    }
+
+    public int getMaxGapInMinutes() {
+        return maxGapInMinutes;
+    }
+}
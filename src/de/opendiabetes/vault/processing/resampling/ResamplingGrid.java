@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.processing.resampling;
+
+import de.opendiabetes.vault.data.container.VaultEntry;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Equidistant time grid. Point i lies at start + i * step. Instances are
+ * immutable.
+ *
+ * @author juehv
+ */
+public final class ResamplingGrid {
+
+    private final long start;
+    private final long stepInMillis;
+    private final int size;
+
+    /**
+     * @param start timestamp of the first grid point in milliseconds
+     * @param stepInMillis distance between two grid points
+     * @param size number of grid points
+     */
+    public ResamplingGrid(long start, long stepInMillis, int size) {
+        if (stepInMillis <= 0 || size < 0) {
+            throw new IllegalArgumentException("Step has to be positive and size must not be negative.");
+        }
+        this.start = start;
+        this.stepInMillis = stepInMillis;
+        this.size = size;
+    }
+
+    /**
+     * Creates a grid from start to end (both inclusive if they lie on the
+     * grid).
+     *
+     * @param start first grid point
+     * @param end last possible grid point
+     * @param stepInMinutes distance between two grid points
+     * @return grid between start and end
+     */
+    public static ResamplingGrid between(Date start, Date end, int stepInMinutes) {
+        long step = stepInMinutes * 60000L;
+        long span = end.getTime() - start.getTime();
+        int size = span < 0 ? 0 : (int) (span / step) + 1;
+        return new ResamplingGrid(start.getTime(), step, size);
+    }
+
+    /**
+     * Creates a grid covering the given sorted data. The grid points are
+     * aligned to full multiples of the step, e.g. to 12:00, 12:05, 12:10 for a
+     * step of 5 minutes.
+     *
+     * @param data entries sorted by timestamp
+     * @param stepInMinutes distance between two grid points
+     * @return grid from the step before the first entry to the step before the
+     * last entry
+     */
+    public static ResamplingGrid covering(List<VaultEntry> data, int stepInMinutes) {
+        long step = stepInMinutes * 60000L;
+        if (data.isEmpty()) {
+            return new ResamplingGrid(0, step, 0);
+        }
+        long first = Math.floorDiv(data.get(0).getTimestamp().getTime(), step) * step;
+        long last = Math.floorDiv(data.get(data.size() - 1).getTimestamp().getTime(), step) * step;
+        return new ResamplingGrid(first, step, (int) ((last - first) / step) + 1);
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getStepInMillis() {
+        return stepInMillis;
+    }
+
+    /**
+     * @return number of grid points
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i index of the grid point
+     * @return timestamp of the grid point in milliseconds
+     */
+    public long timestampAt(int i) {
+        return start + i * stepInMillis;
+    }
+
+    /**
+     * @return timestamps of all grid points
+     */
+    public long[] timestamps() {
+        long[] result = new long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = start + i * stepInMillis;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ResamplingGrid{start=" + new Date(start) + ", step=" + (stepInMillis / 60000) + "min, size=" + size + '}';
+    }
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.util;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of disjoint, closed intervals over long values, e.g. timestamps
+ * in milliseconds. Overlapping and adjacent intervals are merged on build.
+ * Instances are immutable.
+ *
+ * @author juehv
+ */
+public final class IntervalSet {
+
+    private static final long[] NONE = new long[0];
+    private static final IntervalSet EMPTY = new IntervalSet(NONE, NONE);
+
+    private final long[] starts;
+    private final long[] ends;
+
+    private IntervalSet(long[] starts, long[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * @return set without any interval
+     */
+    public static IntervalSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return builder for a new set
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builds the set of the closed intervals [point - marginBefore, point +
+     * marginAfter] with a linear merge. Intervals are joined if the next one
+     * starts at most joinDistance after the end of the current one.
+     *
+     * @param points ascending points
+     * @param marginBefore margin before each point
+     * @param marginAfter margin after each point
+     * @param joinDistance largest distance between two intervals which are
+     * still joined
+     * @return merged intervals
+     */
+    public static IntervalSet fromSortedPoints(long[] points, long marginBefore, long marginAfter, long joinDistance) {
+        if (points.length == 0) {
+            return EMPTY;
+        }
+        long[] resultStarts = new long[points.length];
+        long[] resultEnds = new long[points.length];
+        int count = 0;
+        long currentStart = points[0] - marginBefore;
+        long currentEnd = points[0] + marginAfter;
+        for (int i = 1; i < points.length; i++) {
+            long start = points[i] - marginBefore;
+            long end = points[i] + marginAfter;
+            if (Math.min(start, points[i]) <= currentEnd + joinDistance) {
+                currentEnd = Math.max(currentEnd, end);
+            } else {
+                resultStarts[count] = currentStart;
+                resultEnds[count] = currentEnd;
+                count++;
+                currentStart = start;
+                currentEnd = end;
+            }
+        }
+        resultStarts[count] = currentStart;
+        resultEnds[count] = currentEnd;
+        count++;
+        return new IntervalSet(Arrays.copyOf(resultStarts, count), Arrays.copyOf(resultEnds, count));
+    }
+
+    /**
+     * @return number of disjoint intervals
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    /**
+     * @param i position of the interval
+     * @return first value of the interval (inclusive)
+     */
+    public long getStart(int i) {
+        return starts[i];
+    }
+
+    /**
+     * @param i position of the interval
+     * @return last value of the interval (inclusive)
+     */
+    public long getEnd(int i) {
+        return ends[i];
+    }
+
+    /**
+     * Binary search for the interval containing the value.
+     *
+     * @param value value to look up
+     * @return position of the interval containing the value or -1
+     */
+    public int indexOf(long value) {
+        int position = firstEndNotBefore(value, 0);
+        return position < ends.length && starts[position] <= value ? position : -1;
+    }
+
+    /**
+     * @param value value to look up
+     * @return true if one of the intervals contains the value
+     */
+    public boolean contains(long value) {
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * @return new cursor for lookups with ascending values
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private int firstEndNotBefore(long value, int fromIndex) {
+        int low = fromIndex;
+        int high = ends.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < starts.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(starts[i]).append('-').append(ends[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Lookup position within the set. Ascending lookups, e.g. while sweeping
+     * over sorted data, cost amortized O(1). A lookup with a smaller value
+     * than the previous one falls back to a binary search, so the result is
+     * correct for any order. Cursors are not threadsafe.
+     */
+    public final class Cursor {
+
+        // all intervals before this position end before the last value
+        private int position = 0;
+
+        private Cursor() {
+        }
+
+        /**
+         * @param value value to look up
+         * @return true if one of the intervals contains the value
+         */
+        public boolean contains(long value) {
+            if (position > 0 && ends[position - 1] >= value) {
+                position = firstEndNotBefore(value, 0);
+            } else {
+                while (position < ends.length && ends[position] < value) {
+                    position++;
+                }
+            }
+            return position < ends.length && starts[position] <= value;
+        }
+    }
+
+    /**
+     * Collects intervals in any order and merges them on build.
+     */
+    public static final class Builder {
+
+        private long[] starts = new long[16];
+        private long[] ends = new long[16];
+        private int size = 0;
+        private boolean sorted = true;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds the closed interval from start to end. Intervals with start
+         * after end are ignored.
+         *
+         * @param start first value (inclusive)
+         * @param end last value (inclusive)
+         * @return this builder
+         */
+        public Builder add(long start, long end) {
+            if (start > end) {
+                return this;
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            sorted &= size == 0 || starts[size - 1] <= start;
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+            return this;
+        }
+
+        /**
+         * @return set of the merged intervals
+         */
+        public IntervalSet build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            if (!sorted) {
+                sortByStart();
+            }
+            long[] resultStarts = new long[size];
+            long[] resultEnds = new long[size];
+            int count = 0;
+            long currentStart = starts[0];
+            long currentEnd = ends[0];
+            for (int i = 1; i < size; i++) {
+                if (currentEnd == Long.MAX_VALUE || starts[i] <= currentEnd + 1) {
+                    currentEnd = Math.max(currentEnd, ends[i]);
+                } else {
+                    resultStarts[count] = currentStart;
+                    resultEnds[count] = currentEnd;
+                    count++;
+                    currentStart = starts[i];
+                    currentEnd = ends[i];
+                }
+            }
+            resultStarts[count] = currentStart;
+            resultEnds[count] = currentEnd;
+            count++;
+            return new IntervalSet(Arrays.copyOf(resultStarts, count), Arrays.copyOf(resultEnds, count));
+        }
+
+        private void sortByStart() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(starts[a], starts[b]));
+            long[] sortedStarts = new long[size];
+            long[] sortedEnds = new long[size];
+            for (int i = 0; i < size; i++) {
+                sortedStarts[i] = starts[order[i]];
+                sortedEnds[i] = ends[order[i]];
+            }
+            starts = sortedStarts;
+            ends = sortedEnds;
+            sorted = true;
+        }
+    }
+}
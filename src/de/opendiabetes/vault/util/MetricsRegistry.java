@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lightweight registry for counters and timers of the processing stages
+ * (parsing, merging, sorting, filtering, writing, ...), to find out where the
+ * time of a run goes. Disabled by default, then every call returns right
+ * away.
+ * <p>
+ * Usage:
+ * <pre>
+ * long start = MetricsRegistry.start();
+ * data.sort(comparator);
+ * MetricsRegistry.stop("repository.sort", start, data.size());
+ * </pre> Timers sum up calls, time and processed entries. Timers of filters
+ * also sum up the entries passing the filter, see
+ * {@link #stop(java.lang.String, long, long, long)}. Counters sum up values
+ * like the number of bytes read. Threadsafe.
+ *
+ * @author juehv
+ */
+public final class MetricsRegistry {
+
+    private static final long DISABLED = Long.MIN_VALUE;
+    private static final Map<String, Metric> METRICS = new ConcurrentHashMap<>();
+    private static volatile boolean enabled;
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * @return true if metrics are recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts recording.
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * Stops recording and drops all recorded metrics.
+     */
+    public static void reset() {
+        enabled = false;
+        METRICS.clear();
+    }
+
+    /**
+     * Adds a value to a counter.
+     *
+     * @param name name of the counter, e.g. "import.bytes_read"
+     * @param value value to add
+     */
+    public static void count(String name, long value) {
+        if (enabled) {
+            metric(name, false).entries.add(value);
+        }
+    }
+
+    /**
+     * @return start time for {@link #stop(java.lang.String, long, long)}
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Adds the time since the start to a timer.
+     *
+     * @param name name of the timer, e.g. "repository.sort"
+     * @param start value of {@link #start()}
+     * @param entries number of processed entries
+     */
+    public static void stop(String name, long start, long entries) {
+        if (start != DISABLED && enabled) {
+            record(name, start, entries);
+        }
+    }
+
+    /**
+     * Adds the time since the start to a timer, which tracks its selectivity.
+     *
+     * @param name name of the timer, e.g. "filter.THRESHOLD"
+     * @param start value of {@link #start()}
+     * @param entries number of input entries
+     * @param entriesOut number of output entries
+     */
+    public static void stop(String name, long start, long entries, long entriesOut) {
+        if (start != DISABLED && enabled) {
+            Metric metric = record(name, start, entries);
+            metric.entriesOut.add(entriesOut);
+            metric.selective = true;
+        }
+    }
+
+    /**
+     * @return human readable table of all metrics or null if nothing was
+     * recorded
+     */
+    public static String summary() {
+        Map<String, Metric> metrics = new TreeMap<>(METRICS);
+        if (metrics.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-45s %8s %11s %12s %12s %8s%n",
+                "TIMER", "CALLS", "TIME ms", "ENTRIES", "ENTRIES/s", "OUT/IN"));
+        for (Map.Entry<String, Metric> item : metrics.entrySet()) {
+            Metric metric = item.getValue();
+            if (metric.timer) {
+                long entries = metric.entries.sum();
+                double millis = metric.nanos.sum() / 1e6;
+                sb.append(String.format(Locale.ROOT, "%-45s %8d %11.1f %12d %12s %8s%n",
+                        item.getKey(), metric.calls.sum(), millis, entries,
+                        millis > 0 ? String.format(Locale.ROOT, "%.0f", entries / millis * 1000) : "-",
+                        metric.selective && entries > 0
+                        ? String.format(Locale.ROOT, "%.3f", (double) metric.entriesOut.sum() / entries) : ""));
+            }
+        }
+        sb.append(String.format(Locale.ROOT, "%-45s %12s%n", "COUNTER", "VALUE"));
+        for (Map.Entry<String, Metric> item : metrics.entrySet()) {
+            if (!item.getValue().timer) {
+                sb.append(String.format(Locale.ROOT, "%-45s %12d%n", item.getKey(), item.getValue().entries.sum()));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return one line of key=value pairs per metric, e.g. for the journal
+     */
+    public static List<String> structuredLines() {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Metric> item : new TreeMap<>(METRICS).entrySet()) {
+            Metric metric = item.getValue();
+            StringBuilder sb = new StringBuilder("metric");
+            if (metric.timer) {
+                sb.append(" timer=").append(item.getKey());
+                sb.append(" calls=").append(metric.calls.sum());
+                sb.append(" time_ms=").append(String.format(Locale.ROOT, "%.1f", metric.nanos.sum() / 1e6));
+                sb.append(" entries=").append(metric.entries.sum());
+                if (metric.selective) {
+                    sb.append(" entries_out=").append(metric.entriesOut.sum());
+                }
+            } else {
+                sb.append(" counter=").append(item.getKey());
+                sb.append(" value=").append(metric.entries.sum());
+            }
+            result.add(sb.toString());
+        }
+        return result;
+    }
+
+    private static Metric record(String name, long start, long entries) {
+        long nanos = System.nanoTime() - start;
+        Metric metric = metric(name, true);
+        metric.calls.increment();
+        metric.nanos.add(nanos);
+        metric.entries.add(entries);
+        return metric;
+    }
+
+    private static Metric metric(String name, boolean timer) {
+        Metric metric = METRICS.get(name);
+        if (metric == null) {
+            metric = METRICS.computeIfAbsent(name, key -> new Metric(timer));
+        }
+        return metric;
+    }
+
+    private static final class Metric {
+
+        private final boolean timer;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        // processed entries of timers, value of counters
+        private final LongAdder entries = new LongAdder();
+        private final LongAdder entriesOut = new LongAdder();
+        private volatile boolean selective;
+
+        Metric(boolean timer) {
+            this.timer = timer;
+        }
+    }
+}
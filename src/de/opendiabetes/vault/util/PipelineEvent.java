@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.util;
+
+/**
+ * Running Java Flight Recorder event of a pipeline stage, see
+ * {@link PipelineEvents}.
+ *
+ * @author juehv
+ */
+public interface PipelineEvent {
+
+    /**
+     * Event used while no recording is running. Does nothing.
+     */
+    PipelineEvent NONE = new PipelineEvent() {
+        @Override
+        public boolean isRecording() {
+            return false;
+        }
+
+        @Override
+        public void commit(long entriesIn, long entriesOut, long bytes) {
+            // not recording
+        }
+    };
+
+    /**
+     * @return true if the event is recorded, so callers may skip computing
+     * expensive counts otherwise
+     */
+    boolean isRecording();
+
+    /**
+     * Ends the event and hands it to the recorder. Counts which don't apply
+     * to the stage are -1, see {@link PipelineStage}.
+     *
+     * @param entriesIn number of input entries
+     * @param entriesOut number of output entries
+     * @param bytes number of read or written bytes
+     */
+    void commit(long entriesIn, long entriesOut, long bytes);
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.util;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Emits Java Flight Recorder events for the pipeline stages (import, merge,
+ * deduplication, sorting, tag reads and writes, filters, export), so GC and
+ * allocation spikes of a recording can be matched with the repository
+ * operation causing them. The events are in the category "OpenDiabetesVault"
+ * and carry the entry counts, the read or written bytes and the bytes the
+ * thread allocated during the stage.
+ * <p>
+ * Usage:
+ * <pre>
+ * PipelineEvent event = PipelineEvents.begin(PipelineStage.SORT, "all", null);
+ * data.sort(comparator);
+ * event.commit(data.size(), data.size(), -1);
+ * </pre> While no recording is running, {@link #begin} returns
+ * {@link PipelineEvent#NONE} without allocating anything. The events are
+ * compiled from src-jfr if the build JDK provides jdk.jfr. Without them, or on
+ * a JVM without Flight Recorder, no events are emitted. Threadsafe.
+ *
+ * @author juehv
+ */
+public final class PipelineEvents {
+
+    private static final Logger LOG = Logger.getLogger(PipelineEvents.class.getName());
+    private static final String BACKEND_CLASS = "de.opendiabetes.vault.util.jfr.FlightRecorderBackend";
+    private static final Backend BACKEND = loadBackend();
+
+    private PipelineEvents() {
+    }
+
+    /**
+     * Creates the events. Implemented in src-jfr.
+     */
+    public interface Backend {
+
+        /**
+         * Must be cheap, it is called for every stage.
+         *
+         * @return true if a recording is running
+         */
+        boolean isRecording();
+
+        /**
+         * @param stage stage of the event
+         * @param subject see {@link PipelineStage}
+         * @param detail see {@link PipelineStage}
+         * @return started event
+         */
+        PipelineEvent begin(PipelineStage stage, Object subject, Object detail);
+    }
+
+    /**
+     * @return true if events are recorded right now
+     */
+    public static boolean isRecording() {
+        return BACKEND != null && BACKEND.isRecording();
+    }
+
+    /**
+     * Starts the event of a stage. Subjects and details are converted to text
+     * only if the event is recorded, classes are written as simple name.
+     *
+     * @param stage stage of the event
+     * @param subject see {@link PipelineStage}, may be null
+     * @param detail see {@link PipelineStage}, may be null
+     * @return started event or {@link PipelineEvent#NONE}
+     */
+    public static PipelineEvent begin(PipelineStage stage, Object subject, Object detail) {
+        if (BACKEND == null || !BACKEND.isRecording()) {
+            return PipelineEvent.NONE;
+        }
+        return BACKEND.begin(stage, subject, detail);
+    }
+
+    private static Backend loadBackend() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return Class.forName(BACKEND_CLASS).asSubclass(Backend.class)
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException ex) {
+            LOG.log(Level.FINE, "No Flight Recorder events: {0}", ex.toString());
+            return null;
+        }
+    }
+}
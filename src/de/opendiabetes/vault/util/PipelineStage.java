@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2019 Jens Heuschkel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.opendiabetes.vault.util;
+
+/**
+ * Stages of the processing pipeline which are reported as Java Flight
+ * Recorder events, see {@link PipelineEvents}. The subject and detail given
+ * on begin and the counts given on commit depend on the stage. Counts which
+ * don't apply are -1.
+ *
+ * @author juehv
+ */
+public enum PipelineStage {
+    /**
+     * One CLI command. Subject: command line.
+     */
+    COMMAND,
+    /**
+     * Import of a file or stream. Subject: importer class, detail: file.
+     * Counts: imported entries out, read bytes.
+     */
+    IMPORT_FILE,
+    /**
+     * Merge of data into the repository. Subject: target. Counts: merged
+     * entries in, entries of the repository out.
+     */
+    MERGE,
+    /**
+     * Duplicate removal. Subject: target. Counts: entries in and out.
+     */
+    DEDUP,
+    /**
+     * Sorting by timestamp. Subject: target. Counts: sorted entries in and
+     * out.
+     */
+    SORT,
+    /**
+     * Read of a tag or the complete dataset. Subject: tag, detail: read
+     * predicate. Counts: read entries out, size of the data file.
+     */
+    TAG_READ,
+    /**
+     * Write of a tag or the complete dataset. Subject: tag. Counts: written
+     * entries in, size of the data file.
+     */
+    TAG_WRITE,
+    /**
+     * Evaluation of a filter. Subject: filter type. Counts: rows in and out.
+     */
+    FILTER,
+    /**
+     * Export to a file or stream. Subject: exporter class, detail: file.
+     * Counts: exported entries in, written bytes.
+     */
+    EXPORT
+}
@@ -26,7 +26,8 @@ import java.util.Map;
  */
 public class SplineInterpolator {
 
-    private final List<Map.Entry<Long, Double>> values;
+    private final long[] xValues;
+    private final double[] yValues;
     private final double[] moments;
 
     /**
@@ -42,19 +43,34 @@ public class SplineInterpolator {
      * @param values Pairs of x and y values. Have to be null-checked!
      */
     public SplineInterpolator(List<Map.Entry<Long, Double>> values) {
+        this(xValuesOf(values), yValuesOf(values));
+    }
 
-        this.values = values;
-        if (values != null && values.size() >= 2) {
+    /**
+     * Same as {@link #SplineInterpolator(List)}, but takes the x and y values
+     * as primitive arrays. The arrays are used directly and must not be
+     * modified afterwards.
+     *
+     * @param xValues x values in ascending order
+     * @param yValues y values, same length as xValues
+     */
+    public SplineInterpolator(long[] xValues, double[] yValues) {
+        if (xValues.length != yValues.length) {
+            throw new IllegalArgumentException("Number of x and y values differs.");
+        }
+        this.xValues = xValues;
+        this.yValues = yValues;
+        if (xValues.length >= 2) {
 
-            int numOfXValues = values.size();
+            int numOfXValues = xValues.length;
             double[] d = new double[numOfXValues - 1];
             double[] moments = new double[numOfXValues];
             double a, b, hInterval, t;
 
             for (int i = 0; i < numOfXValues - 1; i++) {
-                hInterval = getXvalue(i + 1) - getXvalue(i);
+                hInterval = xValues[i + 1] - xValues[i];
 
-                d[i] = (getYvalue(i + 1) - getYvalue(i)) / hInterval;
+                d[i] = (yValues[i + 1] - yValues[i]) / hInterval;
             }
 
             moments[0] = d[0];
@@ -91,12 +107,20 @@ public class SplineInterpolator {
         }
     }
 
-    private Long getXvalue(int i) {
-        return values.get(i).getKey();
+    private static long[] xValuesOf(List<Map.Entry<Long, Double>> values) {
+        long[] result = new long[values != null ? values.size() : 0];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i).getKey();
+        }
+        return result;
     }
 
-    private Double getYvalue(int i) {
-        return values.get(i).getValue();
+    private static double[] yValuesOf(List<Map.Entry<Long, Double>> values) {
+        double[] result = new double[values != null ? values.size() : 0];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i).getValue();
+        }
+        return result;
     }
 
     /**
@@ -108,40 +132,82 @@ public class SplineInterpolator {
      * @return the interpolated y value
      */
     public double interpolate(double xValue) {
-        double result;
-
-        int numberOfXValues = values.size();
         if (Double.isNaN(xValue) || moments.length == 0) {
-            result = xValue;
-        } else {
+            return xValue;
+        }
+        return interpolate(xValue, lastIntervalStartingBefore(xValue));
+    }
 
-            //checking if x is in-bounds and not outside of the spline interpolation
-            if (xValue <= getXvalue(0)) {
-                result = getYvalue(0);
-            } else if (xValue >= getXvalue(numberOfXValues - 1)) {
-                result = getYvalue(numberOfXValues - 1);
+    /**
+     * Interpolates the y values to a batch of x values. For x values in
+     * ascending order, the intervals are found with a cursor instead of a
+     * search per value.
+     *
+     * @param xs x values, preferably in ascending order
+     * @param out receives the interpolated y values, at least as long as xs
+     */
+    public void interpolate(long[] xs, double[] out) {
+        if (moments.length == 0) {
+            for (int i = 0; i < xs.length; i++) {
+                out[i] = xs[i];
+            }
+            return;
+        }
+        int startOfInterval = 0;
+        for (int i = 0; i < xs.length; i++) {
+            double xValue = xs[i];
+            if (i > 0 && xs[i] < xs[i - 1]) {
+                startOfInterval = lastIntervalStartingBefore(xValue);
             } else {
-                double hInterval, t;
-
-                // Find interval index, meaning x lies between interval and interval+1
-                int startOfInterval = 0;
-                while (xValue >= getXvalue(startOfInterval + 1)) {
-                    if (xValue == getXvalue(startOfInterval)) {
-                        return getYvalue(startOfInterval);
-                    }
+                while (startOfInterval < xValues.length - 1 && xValue >= xValues[startOfInterval + 1]) {
                     startOfInterval++;
                 }
+            }
+            out[i] = interpolate(xValue, startOfInterval);
+        }
+    }
+
+    /**
+     * @return index of the last x value smaller than or equal to the given
+     * value, 0 if there is none
+     */
+    private int lastIntervalStartingBefore(double xValue) {
+        int low = 0;
+        int high = xValues.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (xValues[mid] <= xValue) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return Math.max(low - 1, 0);
+    }
 
-                // Cubic Hermite spline interpolation
-                hInterval = getXvalue(startOfInterval + 1) - getXvalue(startOfInterval);
-                t = (xValue - getXvalue(startOfInterval)) / hInterval;
-                result = (getYvalue(startOfInterval) * (1 + 2 * t)
-                        + hInterval * moments[startOfInterval] * t) * (1 - t) * (1 - t)
-                        + (getYvalue(startOfInterval + 1) * (3 - 2 * t)
-                        + hInterval * moments[startOfInterval + 1] * (t - 1)) * t * t;
+    private double interpolate(double xValue, int startOfInterval) {
+        int numberOfXValues = xValues.length;
+
+        //checking if x is in-bounds and not outside of the spline interpolation
+        if (xValue <= xValues[0]) {
+            return yValues[0];
+        } else if (xValue >= xValues[numberOfXValues - 1]) {
+            return yValues[numberOfXValues - 1];
+        } else if (xValue == xValues[startOfInterval]) {
+            // the first of equal x values wins
+            while (startOfInterval > 0 && xValues[startOfInterval - 1] == xValues[startOfInterval]) {
+                startOfInterval--;
             }
+            return yValues[startOfInterval];
         }
-        return result;
+
+        // Cubic Hermite spline interpolation, x lies between interval and interval+1
+        double hInterval = xValues[startOfInterval + 1] - xValues[startOfInterval];
+        double t = (xValue - xValues[startOfInterval]) / hInterval;
+        return (yValues[startOfInterval] * (1 + 2 * t)
+                + hInterval * moments[startOfInterval] * t) * (1 - t) * (1 - t)
+                + (yValues[startOfInterval + 1] * (3 - 2 * t)
+                + hInterval * moments[startOfInterval + 1] * (t - 1)) * t * t;
     }
 
 }
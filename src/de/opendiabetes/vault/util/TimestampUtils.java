@@ -29,6 +29,7 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAccessor;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -344,14 +345,43 @@ public class TimestampUtils {
      * @return merged time series
      */
     public static List<Map.Entry<Date, Date>> getNormalizedTimeSeries(List<VaultEntry> data, int marginBefore, int marginAfter) {
-        List<Map.Entry<Date, Date>> result = new ArrayList<>();
-        for (VaultEntry vaultEntry : data) {
-            result.add(new AbstractMap.SimpleEntry<>(vaultEntry.getTimestamp(), vaultEntry.getTimestamp()));
+        IntervalSet intervals = getNormalizedTimeIntervals(data, marginBefore, marginAfter);
+        List<Map.Entry<Date, Date>> result = new ArrayList<>(intervals.size());
+        for (int i = 0; i < intervals.size(); i++) {
+            result.add(new AbstractMap.SimpleEntry<>(new Date(intervals.getStart(i)), new Date(intervals.getEnd(i))));
         }
-        result = normalizeTimeSeries(result, marginBefore, marginAfter);
         return result;
     }
 
+    /**
+     * Same as {@link #getNormalizedTimeSeries(List, int, int)}, but returns
+     * the time spans as {@link IntervalSet} of millisecond timestamps, which
+     * supports binary search and cursor lookups. Unsorted data is sorted by
+     * timestamp first.
+     *
+     * @param data List of VaultEntrys, containing Timestamps
+     * @param marginBefore margin before each timespamp in minutes
+     * @param marginAfter margin after each timespamp in minutes
+     * @return merged time spans
+     */
+    public static IntervalSet getNormalizedTimeIntervals(List<VaultEntry> data, int marginBefore, int marginAfter) {
+        long[] points = new long[data.size()];
+        boolean sorted = true;
+        int i = 0;
+        for (VaultEntry vaultEntry : data) {
+            points[i] = vaultEntry.getTimestamp().getTime();
+            sorted &= i == 0 || points[i - 1] <= points[i];
+            i++;
+        }
+        if (!sorted) {
+            Arrays.sort(points);
+        }
+        //spans starting directly the minute after the last one are merged, too
+        return IntervalSet.fromSortedPoints(points,
+                addMinutesToTimestamp(0, marginBefore), addMinutesToTimestamp(0, marginAfter),
+                addMinutesToTimestamp(0, 1));
+    }
+
     /**
      * Generates a normalized TimeSeries with entry-Timestamps as input if no
      * pre-processed TimeSeries is aviable.
@@ -389,6 +419,18 @@ public class TimestampUtils {
         return result;
     }
 
+    /**
+     * Checks if the given date is within one of the given time spans. Uses a
+     * binary search.
+     *
+     * @param timeSpans
+     * @param date
+     * @return true, if the date is within one of the time spans
+     */
+    public static boolean withinTimeSeries(IntervalSet timeSpans, Date date) {
+        return timeSpans != null && timeSpans.contains(date.getTime());
+    }
+
     /**
      * Copies the specified date for secure getting and setting. This addresses
      * the possible malicious code vulnerability introduced by the mutability of